@@ -0,0 +1,70 @@
+package bench;
+
+/****************************************************************************************
+ * @file  Data.java
+ */
+
+import java.util.*;
+import src.*;
+
+/****************************************************************************************
+ * This class generates the data the benchmarks run on: part of the Student
+ * Registration Database (see TestTupleGenerator), with a fixed seed so that every run
+ * (and every version of the code being compared) sees the same tuples.
+ */
+final class Data {
+    /**
+     * The seed of the tuple generator.
+     */
+    static final long SEED = 42;
+
+    /**
+     * The attributes, domains and keys of the tables.
+     */
+    static final String STUDENT = "id name address status", STUDENT_DOM = "Integer String String String";
+    static final String TRANSCRIPT = "studId crsCode semester grade", TRANSCRIPT_DOM = "Integer String String String";
+
+    /************************************************************************************
+     * This class only has static members.
+     */
+    private Data() {
+    } // constructor
+
+    /************************************************************************************
+     * Generate the tuples of the Student, Course and Transcript tables; transcripts
+     * refer to students and courses.
+     *
+     * @param nStudents    the number of students
+     * @param nTranscripts the number of transcript entries
+     * @return the tuples of Student [0] and Transcript [1]
+     */
+    static Comparable[][][] university(int nStudents, int nTranscripts) {
+        var gen = new TupleGeneratorImpl(SEED);
+        gen.addRelSchema("Student", STUDENT, STUDENT_DOM, "id", null);
+        gen.addRelSchema("Course", "crsCode deptId crsName descr", "String String String String", "crsCode", null);
+        gen.addRelSchema("Transcript", TRANSCRIPT, TRANSCRIPT_DOM, "studId crsCode semester",
+                new String[][] { { "studId", "Student", "id" }, { "crsCode", "Course", "crsCode" } });
+        var t = gen.generate(new int[] { nStudents, Math.max(1, nStudents / 50), nTranscripts });
+        return new Comparable[][][] { t[0], t[2] };
+    } // university
+
+    /************************************************************************************
+     * Build a table holding the given tuples.
+     *
+     * @param name      the table's name
+     * @param attribute the table's attributes
+     * @param domain    the table's domains
+     * @param key       the table's primary key
+     * @param mType     the map type of the index
+     * @param sType     the storage layout
+     * @param tuples    the tuples
+     * @return the table
+     */
+    static Table table(String name, String attribute, String domain, String key,
+            Table.MapType mType, Table.StoreType sType, Comparable[][] tuples) {
+        var t = new Table(name, attribute, domain, key, mType, sType);
+        t.insertAll(Arrays.asList(tuples));
+        return t;
+    } // table
+
+} // Data class
@@ -0,0 +1,79 @@
+package bench;
+
+/****************************************************************************************
+ * @file  IndexBench.java
+ */
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import src.*;
+
+/****************************************************************************************
+ * This class benchmarks the maps a Table can index with (see Table.MapType), keyed
+ * by KeyType as in a table: lookups and replacing puts on a map of the given size,
+ * and building the map from empty.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexBench {
+
+    @Param({ "1000", "100000", "1000000" })
+    int size;
+
+    @Param({ "TreeMap", "LinHashMap", "ExtHashMap", "BPTreeMap" })
+    String map;
+
+    /**
+     * The keys in the map (in random order) and the map.
+     */
+    private KeyType[] keys;
+    private Map<KeyType, Integer> index;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var rand = new Random(Data.SEED);
+        keys = new KeyType[size];
+        for (int i = 0; i < size; i++)
+            keys[i] = KeyType.of(rand.nextInt());
+        index = build();
+    } // setup
+
+    @Benchmark
+    public Integer get() {
+        int i = next++;
+        if (next == size)
+            next = 0;
+        return index.get(keys[i]);
+    } // get
+
+    @Benchmark
+    public Integer put() {
+        int i = next++;
+        if (next == size)
+            next = 0;
+        return index.put(keys[i], i);
+    } // put
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<KeyType, Integer> build() {
+        Map<KeyType, Integer> m = switch (map) {
+            case "TreeMap" -> new TreeMap<>();
+            case "LinHashMap" -> new LinHashMap<>(KeyType.class, Integer.class);
+            case "ExtHashMap" -> new ExtHashMap<>(KeyType.class, Integer.class);
+            case "BPTreeMap" -> new BPTreeMap<>(KeyType.class, Integer.class);
+            default -> throw new IllegalArgumentException("IndexBench: unknown map " + map);
+        }; // switch
+        for (int i = 0; i < size; i++)
+            m.put(keys[i], i);
+        return m;
+    } // build
+
+} // IndexBench class
@@ -0,0 +1,55 @@
+package bench;
+
+/****************************************************************************************
+ * @file  JoinBench.java
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import src.*;
+
+/****************************************************************************************
+ * This class benchmarks the join algorithms on Transcript (studId) joined with
+ * Student (id): the index join, the hash join and the nested-loop join, whose cost
+ * grows with the product of the sizes (hence the small sizes).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JoinBench {
+
+    @Param({ "1000", "5000" })
+    int rows;
+
+    @Param({ "TREE_MAP", "LINHASH_MAP" })
+    Table.MapType mType;
+
+    private Table student, transcript;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var t = Data.university(rows, 2 * rows);
+        student = Data.table("Student", Data.STUDENT, Data.STUDENT_DOM, "id", mType, Table.StoreType.ROW, t[0]);
+        transcript = Data.table("Transcript", Data.TRANSCRIPT, Data.TRANSCRIPT_DOM, "studId crsCode semester",
+                mType, Table.StoreType.ROW, t[1]);
+    } // setup
+
+    @Benchmark
+    public Table join() {
+        return transcript.join("studId", "id", student);
+    } // join
+
+    @Benchmark
+    public Table hashJoin() {
+        return transcript.hashJoin("studId", "id", student);
+    } // hashJoin
+
+    @Benchmark
+    public Table noIndexjoin() {
+        return transcript.noIndexjoin("studId", "id", student);
+    } // noIndexjoin
+
+} // JoinBench class
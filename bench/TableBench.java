@@ -0,0 +1,109 @@
+package bench;
+
+/****************************************************************************************
+ * @file  TableBench.java
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import src.*;
+
+/****************************************************************************************
+ * This class benchmarks the single-table operators: insertion, selection by key with
+ * and without the index, selection by predicate, and saving and loading the table,
+ * for each map type and storage layout.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TableBench {
+
+    @Param({ "10000", "100000" })
+    int rows;
+
+    @Param({ "TREE_MAP", "BPTREE_MAP", "LINHASH_MAP", "EXTHASH_MAP" })
+    Table.MapType mType;
+
+    @Param({ "ROW", "COLUMN" })
+    Table.StoreType sType;
+
+    /**
+     * The tuples and the table holding them.
+     */
+    private Comparable[][] tuples;
+    private Table student;
+
+    /**
+     * The keys looked up (a power of two of them, in random order), and the next one.
+     */
+    private KeyType[] keys;
+    private int next = 0;
+
+    /**
+     * The name the table is saved and loaded under (in the store directory).
+     */
+    private String name;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tuples = Data.university(rows, 1)[0];
+        student = Data.table("Student", Data.STUDENT, Data.STUDENT_DOM, "id", mType, sType, tuples);
+
+        var rand = new Random(Data.SEED);
+        keys = new KeyType[1 << 12];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = new KeyType(tuples[rand.nextInt(rows)][0]);
+
+        name = "BenchStudent_" + mType + "_" + sType;
+        Files.createDirectories(Paths.get("store"));
+        var saved = Data.table(name, Data.STUDENT, Data.STUDENT_DOM, "id", mType, sType, tuples);
+        saved.save();
+    } // setup
+
+    @Benchmark
+    public Table insert() {
+        var t = new Table("Student", Data.STUDENT, Data.STUDENT_DOM, "id", mType, sType);
+        for (Comparable[] tup : tuples)
+            t.insert(tup);
+        return t;
+    } // insert
+
+    @Benchmark
+    public Table insertAll() {
+        var t = new Table("Student", Data.STUDENT, Data.STUDENT_DOM, "id", mType, sType);
+        t.insertAll(Arrays.asList(tuples));
+        return t;
+    } // insertAll
+
+    @Benchmark
+    public Table select() {
+        return student.select(keys[next++ & (keys.length - 1)]);
+    } // select
+
+    @Benchmark
+    public Table noIndexSelect() {
+        return student.noIndexSelect(keys[next++ & (keys.length - 1)]);
+    } // noIndexSelect
+
+    @Benchmark
+    public Table selectPredicate() {
+        return student.select(t -> (Integer) t[0] % 100 == 0);
+    } // selectPredicate
+
+    @Benchmark
+    public void save() {
+        student.save();
+    } // save
+
+    @Benchmark
+    public Table load() {
+        return Table.load(name);
+    } // load
+
+} // TableBench class
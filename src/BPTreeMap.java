@@ -0,0 +1,632 @@
+package src;
+
+/************************************************************************************
+ * @file BPTreeMap.java
+ */
+
+import java.io.*;
+import java.lang.reflect.Array;
+import static java.lang.System.out;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/************************************************************************************
+ * This class provides B+Tree maps. Keys are kept in sorted order in the leaves,
+ * which are linked left to right, so the entries are always iterated in key order.
+ * Internal nodes only hold separator keys that guide the search to a leaf.
+ * Besides point lookups, the leaf links support range scans, and a tree can be
+ * bulk loaded bottom-up from entries that are already in key order.
+ */
+public class BPTreeMap<K extends Comparable<K>, V>
+        extends AbstractMap<K, V>
+        implements Serializable, Cloneable {
+
+    /**
+     * The default maximum fan-out (number of children) of a node.
+     */
+    private static final int DEFAULT_ORDER = 32;
+
+    /**
+     * The maximum fan-out (number of children) of a node. A node holds at most
+     * order - 1 keys.
+     */
+    private final int order;
+
+    /**
+     * The class for type K.
+     */
+    private final Class<K> classK;
+
+    /**
+     * The class for type V.
+     */
+    private final Class<V> classV;
+
+    /********************************************************************************
+     * This inner class defines the nodes that make up the tree. One spare key slot
+     * (and reference slot) allows a node to overflow briefly before it is split.
+     */
+    private class Node
+            implements Serializable {
+
+        // whether this node is a leaf
+        final boolean isLeaf;
+
+        // number of keys in the node
+        int nKeys;
+
+        // array of keys (separator keys for internal nodes)
+        K[] key;
+
+        // values (leaf) or child nodes (internal, one more than keys)
+        Object[] ref;
+
+        // the next leaf to the right (leaves only)
+        Node next;
+
+        @SuppressWarnings("unchecked")
+        Node(boolean _isLeaf) {
+            isLeaf = _isLeaf;
+            nKeys = 0;
+            key = (K[]) Array.newInstance(classK, order);
+            ref = new Object[order + 1];
+        } // constructor
+
+        // binary search for k: its position if present, else (-(insertion point) - 1)
+        int search(K k) {
+            int lo = 0, hi = nKeys - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int cmp = key[mid].compareTo(k);
+                if (cmp < 0)
+                    lo = mid + 1;
+                else if (cmp > 0)
+                    hi = mid - 1;
+                else
+                    return mid;
+            } // while
+            return -(lo + 1);
+        } // search
+
+        // position of the child subtree that may contain k (internal nodes only)
+        int child(K k) {
+            int i = search(k);
+            return (i >= 0) ? i + 1 : -(i + 1);
+        } // child
+
+        // shift entries right from position i and place k and r there
+        void insertAt(int i, K k, Object r, int refOffset) {
+            System.arraycopy(key, i, key, i + 1, nKeys - i);
+            System.arraycopy(ref, i + refOffset, ref, i + refOffset + 1, nKeys + (isLeaf ? 0 : 1) - i - refOffset);
+            key[i] = k;
+            ref[i + refOffset] = r;
+            nKeys++;
+        } // insertAt
+
+    } // Node inner class
+
+    /**
+     * The root of the tree.
+     */
+    private Node root;
+
+    /**
+     * The leftmost leaf (start of the leaf-level linked list).
+     */
+    private Node firstLeaf;
+
+    /**
+     * The number of keys in the map.
+     */
+    private int keyCount = 0;
+
+    /**
+     * Counter for the number nodes accessed (for performance testing), an adder since
+     * lookups may run concurrently.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Separator key produced by the last split (scratch for put).
+     */
+    private transient K splitKey;
+
+    /**
+     * Value replaced by the last put (scratch for put).
+     */
+    private transient V oldValue;
+
+    /********************************************************************************
+     * Construct an empty B+Tree map with the default fan-out.
+     *
+     * @param _classK the class for keys (K)
+     * @param _classV the class for values (V)
+     */
+    public BPTreeMap(Class<K> _classK, Class<V> _classV) {
+        this(_classK, _classV, DEFAULT_ORDER);
+    } // constructor
+
+    /********************************************************************************
+     * Construct an empty B+Tree map with the given fan-out.
+     *
+     * @param _classK the class for keys (K)
+     * @param _classV the class for values (V)
+     * @param _order  the maximum number of children per node (at least 3)
+     */
+    public BPTreeMap(Class<K> _classK, Class<V> _classV, int _order) {
+        if (_order < 3)
+            throw new IllegalArgumentException("BPTreeMap: order must be at least 3, not " + _order);
+        classK = _classK;
+        classV = _classV;
+        order = _order;
+        root = new Node(true);
+        firstLeaf = root;
+    } // constructor
+
+    /********************************************************************************
+     * Return a set containing all the entries as pairs of keys and values, in
+     * ascending key order.
+     *
+     * @return the set view of the map
+     */
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new LeafIterator(firstLeaf, 0);
+            } // iterator
+
+            public int size() {
+                return keyCount;
+            } // size
+        };
+    } // entrySet
+
+    /********************************************************************************
+     * Return an iterator over the entries with keys in the range lo to hi
+     * (inclusive), in ascending key order. The scan descends the tree once to find
+     * lo and then follows the leaf links.
+     *
+     * @param lo the lowest key in the range (null for no lower bound)
+     * @param hi the highest key in the range (null for no upper bound)
+     * @return an iterator over the entries in the range
+     */
+    public Iterator<Map.Entry<K, V>> rangeIterator(K lo, K hi) {
+        LeafIterator it;
+        if (lo == null) {
+            it = new LeafIterator(firstLeaf, 0);
+        } else {
+            Node n = findLeaf(lo);
+            int i = n.search(lo);
+            it = new LeafIterator(n, (i >= 0) ? i : -(i + 1));
+        } // if
+        it.hi = hi;
+        it.skipEmpty();
+        return it;
+    } // rangeIterator
+
+    /********************************************************************************
+     * Return the smallest key in the B+Tree.
+     *
+     * @return the first key
+     */
+    public K firstKey() {
+        var it = new LeafIterator(firstLeaf, 0);
+        if (!it.hasNext())
+            throw new NoSuchElementException("BPTreeMap.firstKey: empty map");
+        return it.next().getKey();
+    } // firstKey
+
+    /********************************************************************************
+     * Return the largest key in the B+Tree.
+     *
+     * @return the last key
+     */
+    public K lastKey() {
+        if (keyCount == 0)
+            throw new NoSuchElementException("BPTreeMap.lastKey: empty map");
+        K last = null;
+        for (Node n = firstLeaf; n != null; n = n.next) {
+            if (n.nKeys > 0)
+                last = n.key[n.nKeys - 1];
+        } // for
+        return last;
+    } // lastKey
+
+    /********************************************************************************
+     * Load an empty B+Tree bottom-up from entries given in strictly ascending key
+     * order. Leaves are packed to the given fill factor and linked, then each
+     * level of internal nodes is built over the level below until a single root
+     * remains. This avoids the repeated descents and splits of inserting one key
+     * at a time.
+     *
+     * @param entries the entries in strictly ascending key order
+     * @param fill    the fraction of each node's capacity to use (0, 1]
+     * @throws IllegalStateException    if the map is not empty
+     * @throws IllegalArgumentException if the keys are not strictly ascending
+     */
+    public void bulkLoad(Iterator<? extends Map.Entry<K, V>> entries, double fill) {
+        if (keyCount != 0)
+            throw new IllegalStateException("BPTreeMap.bulkLoad: map is not empty");
+        if (fill <= 0.0 || fill > 1.0)
+            throw new IllegalArgumentException("BPTreeMap.bulkLoad: fill must be in (0, 1], not " + fill);
+
+        int perLeaf = Math.max(1, (int) ((order - 1) * fill));
+        int perNode = Math.max(2, (int) (order * fill));
+
+        // build the leaf level, remembering the smallest key under each node
+        List<Node> level = new ArrayList<>();
+        List<K> lowKey = new ArrayList<>();
+        Node leaf = null;
+        K prev = null;
+        while (entries.hasNext()) {
+            var e = entries.next();
+            K k = e.getKey();
+            if (k == null || (prev != null && prev.compareTo(k) >= 0)) {
+                clear();
+                throw new IllegalArgumentException("BPTreeMap.bulkLoad: keys not strictly ascending at " + k);
+            } // if
+            if (leaf == null || leaf.nKeys == perLeaf) {
+                Node nl = new Node(true);
+                if (leaf != null)
+                    leaf.next = nl;
+                leaf = nl;
+                level.add(leaf);
+                lowKey.add(k);
+            } // if
+            leaf.key[leaf.nKeys] = k;
+            leaf.ref[leaf.nKeys] = e.getValue();
+            leaf.nKeys++;
+            keyCount++;
+            prev = k;
+        } // while
+
+        if (level.isEmpty())
+            return;
+        firstLeaf = level.get(0);
+
+        // build internal levels until a single root remains
+        while (level.size() > 1) {
+            List<Node> above = new ArrayList<>();
+            List<K> aboveLow = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += perNode) {
+                int end = Math.min(level.size(), i + perNode);
+                // avoid leaving a last node with a single child
+                if (level.size() - end == 1)
+                    end += (end - i < order) ? 1 : -1;
+                Node n = new Node(false);
+                n.ref[0] = level.get(i);
+                for (int j = i + 1; j < end; j++) {
+                    n.key[n.nKeys] = lowKey.get(j);
+                    n.ref[n.nKeys + 1] = level.get(j);
+                    n.nKeys++;
+                } // for
+                above.add(n);
+                aboveLow.add(lowKey.get(i));
+                i = end - perNode;
+            } // for
+            level = above;
+            lowKey = aboveLow;
+        } // while
+
+        root = level.get(0);
+    } // bulkLoad
+
+    /********************************************************************************
+     * Given the key, look up the value in the B+Tree.
+     *
+     * @param key the key used for look up
+     * @return the value associated with the key, null if none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        K k = (K) key;
+        Node n = findLeaf(k);
+        int i = n.search(k);
+        return (i >= 0) ? (V) n.ref[i] : null;
+    } // get
+
+    /********************************************************************************
+     * Determine whether the B+Tree contains the given key.
+     *
+     * @param key the key to look for
+     * @return whether the key is present
+     */
+    @SuppressWarnings("unchecked")
+    public boolean containsKey(Object key) {
+        K k = (K) key;
+        return findLeaf(k).search(k) >= 0;
+    } // containsKey
+
+    /********************************************************************************
+     * Put the key-value pair in the B+Tree, replacing the value of an existing key.
+     * Full nodes are split on the way back up, which may grow a new root.
+     *
+     * @param key   the key to insert
+     * @param value the value to insert
+     * @return the old/previous value, null if none
+     */
+    public V put(K key, V value) {
+        if (key == null)
+            throw new NullPointerException("BPTreeMap.put: null key");
+
+        oldValue = null;
+        Node right = insert(root, key, value);
+
+        if (right != null) {
+            Node newRoot = new Node(false);
+            newRoot.key[0] = splitKey;
+            newRoot.ref[0] = root;
+            newRoot.ref[1] = right;
+            newRoot.nKeys = 1;
+            root = newRoot;
+        } // if
+
+        V prev = oldValue;
+        oldValue = null;
+        return prev;
+    } // put
+
+    /********************************************************************************
+     * Remove the key (and its value) from the B+Tree. Leaves are allowed to become
+     * sparse (or empty) rather than being merged with their siblings, so searches
+     * stay correct and removal never restructures the tree.
+     *
+     * @param key the key to remove
+     * @return the value that was associated with the key, null if none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        K k = (K) key;
+        Node n = findLeaf(k);
+        int i = n.search(k);
+        if (i < 0)
+            return null;
+
+        V prev = (V) n.ref[i];
+        System.arraycopy(n.key, i + 1, n.key, i, n.nKeys - i - 1);
+        System.arraycopy(n.ref, i + 1, n.ref, i, n.nKeys - i - 1);
+        n.nKeys--;
+        n.key[n.nKeys] = null;
+        n.ref[n.nKeys] = null;
+        keyCount--;
+        return prev;
+    } // remove
+
+    /********************************************************************************
+     * Return the number of keys in the B+Tree.
+     *
+     * @return the number of key-value pairs
+     */
+    public int size() {
+        return keyCount;
+    } // size
+
+    /********************************************************************************
+     * Remove all the entries from the B+Tree.
+     */
+    public void clear() {
+        root = new Node(true);
+        firstLeaf = root;
+        keyCount = 0;
+    } // clear
+
+    /********************************************************************************
+     * Print the B+Tree, one level per line.
+     */
+    @SuppressWarnings("unchecked")
+    public void print() {
+        out.println("BPTreeMap");
+        out.println("-------------------------------------------");
+        List<Node> level = List.of(root);
+        while (!level.isEmpty()) {
+            List<Node> below = new ArrayList<>();
+            for (Node n : level) {
+                out.print("[ ");
+                for (int i = 0; i < n.nKeys; i++)
+                    out.print(n.key[i] + " ");
+                out.print("] ");
+                if (!n.isLeaf) {
+                    for (int i = 0; i <= n.nKeys; i++)
+                        below.add((Node) n.ref[i]);
+                } // if
+            } // for
+            out.println();
+            level = below;
+        } // while
+        out.println("-------------------------------------------");
+    } // print
+
+    /********************************************************************************
+     * Recursively insert the key-value pair into the subtree rooted at n.
+     *
+     * @param n     the root of the subtree
+     * @param key   the key to insert
+     * @param value the value to insert
+     * @return the new right sibling of n if n was split (see splitKey), else null
+     */
+    private Node insert(Node n, K key, V value) {
+        if (n.isLeaf) {
+            int i = n.search(key);
+            if (i >= 0) {
+                oldValue = classV.cast(n.ref[i]);
+                n.ref[i] = value;
+                return null;
+            } // if
+            n.insertAt(-(i + 1), key, value, 0);
+            keyCount++;
+            return (n.nKeys < order) ? null : splitLeaf(n);
+        } // if
+
+        int i = n.child(key);
+        Node right = insert((Node) n.ref[i], key, value);
+        if (right == null)
+            return null;
+
+        n.insertAt(i, splitKey, right, 1);
+        return (n.nKeys < order) ? null : splitInternal(n);
+    } // insert
+
+    /********************************************************************************
+     * Split an overflowing leaf, moving its upper half into a new right sibling
+     * that is linked into the leaf-level list. The separator is the first key of
+     * the new leaf.
+     *
+     * @param n the leaf to split
+     * @return the new right sibling
+     */
+    private Node splitLeaf(Node n) {
+        Node right = new Node(true);
+        int half = n.nKeys / 2;
+        right.nKeys = n.nKeys - half;
+        System.arraycopy(n.key, half, right.key, 0, right.nKeys);
+        System.arraycopy(n.ref, half, right.ref, 0, right.nKeys);
+        Arrays.fill(n.key, half, n.nKeys, null);
+        Arrays.fill(n.ref, half, n.nKeys, null);
+        n.nKeys = half;
+
+        right.next = n.next;
+        n.next = right;
+        splitKey = right.key[0];
+        return right;
+    } // splitLeaf
+
+    /********************************************************************************
+     * Split an overflowing internal node. Its middle key moves up as the separator
+     * and the keys and children above it move into a new right sibling.
+     *
+     * @param n the internal node to split
+     * @return the new right sibling
+     */
+    private Node splitInternal(Node n) {
+        Node right = new Node(false);
+        int mid = n.nKeys / 2;
+        right.nKeys = n.nKeys - mid - 1;
+        System.arraycopy(n.key, mid + 1, right.key, 0, right.nKeys);
+        System.arraycopy(n.ref, mid + 1, right.ref, 0, right.nKeys + 1);
+        splitKey = n.key[mid];
+        Arrays.fill(n.key, mid, n.nKeys, null);
+        Arrays.fill(n.ref, mid + 1, n.nKeys + 1, null);
+        n.nKeys = mid;
+        return right;
+    } // splitInternal
+
+    /********************************************************************************
+     * Descend from the root to the leaf that may contain the given key.
+     *
+     * @param key the key to search for
+     * @return the leaf where the key is, or would be, stored
+     */
+    private Node findLeaf(K key) {
+        Node n = root;
+        count.increment();
+        while (!n.isLeaf) {
+            n = (Node) n.ref[n.child(key)];
+            count.increment();
+        } // while
+        return n;
+    } // findLeaf
+
+    /********************************************************************************
+     * This inner class iterates over the entries by walking the leaf-level list.
+     */
+    private class LeafIterator
+            implements Iterator<Map.Entry<K, V>> {
+
+        // the current leaf and the position of the next entry within it
+        Node leaf;
+        int pos;
+
+        // the key last returned (for remove)
+        K last;
+
+        // the highest key to return (null for no upper bound)
+        K hi;
+
+        LeafIterator(Node _leaf, int _pos) {
+            leaf = _leaf;
+            pos = _pos;
+            skipEmpty();
+        } // constructor
+
+        // move past exhausted (possibly empty) leaves
+        void skipEmpty() {
+            while (leaf != null && pos >= leaf.nKeys) {
+                leaf = leaf.next;
+                pos = 0;
+            } // while
+            if (leaf != null && hi != null && leaf.key[pos].compareTo(hi) > 0)
+                leaf = null;
+        } // skipEmpty
+
+        public boolean hasNext() {
+            return leaf != null;
+        } // hasNext
+
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (leaf == null)
+                throw new NoSuchElementException();
+            last = leaf.key[pos];
+            var e = new AbstractMap.SimpleEntry<>(last, (V) leaf.ref[pos]);
+            pos++;
+            skipEmpty();
+            return e;
+        } // next
+
+        public void remove() {
+            if (last == null)
+                throw new IllegalStateException();
+            Node n = leaf;
+            K resume = (n != null) ? n.key[pos] : null;
+            BPTreeMap.this.remove(last);
+            last = null;
+            // removal shifts entries within a leaf, so re-find the next key
+            if (resume != null) {
+                leaf = findLeaf(resume);
+                pos = leaf.search(resume);
+                skipEmpty();
+            } // if
+        } // remove
+
+    } // LeafIterator inner class
+
+    /********************************************************************************
+     * The main method used for testing.
+     *
+     * @param the command-line arguments (args [0] gives number of keys to insert)
+     */
+    public static void main(String[] args) {
+        var totalKeys = (args.length == 1) ? Integer.valueOf(args[0]) : 100;
+
+        BPTreeMap<Integer, Integer> bpt = new BPTreeMap<>(Integer.class, Integer.class);
+        var rng = new Random(1);
+        for (var i = 1; i <= totalKeys; i += 2) {
+            bpt.put(rng.nextInt(2 * totalKeys), i * i);
+        } // for
+
+        bpt.print();
+        for (var e : bpt.entrySet()) {
+            out.print(e.getKey() + " ");
+        } // for
+        out.println();
+
+        for (var i = 0; i <= totalKeys; i++) {
+            bpt.get(i);
+        } // for
+        out.println("size = " + bpt.size());
+        out.println("Average number of nodes accessed = " + bpt.count.sum() / (double) (totalKeys + 1));
+
+        // range scan over the middle half of the key space
+        out.print("range [" + totalKeys / 2 + ", " + totalKeys + "] = ");
+        for (var it = bpt.rangeIterator(totalKeys / 2, totalKeys); it.hasNext();) {
+            out.print(it.next().getKey() + " ");
+        } // for
+        out.println();
+
+        // bulk load a small-order tree from the sorted entries
+        BPTreeMap<Integer, Integer> bulk = new BPTreeMap<>(Integer.class, Integer.class, 4);
+        bulk.bulkLoad(bpt.entrySet().iterator(), 1.0);
+        bulk.print();
+    } // main
+
+} // BPTreeMap class
@@ -0,0 +1,168 @@
+package src;
+
+/****************************************************************************************
+ * @file  BitmapIndex.java
+ */
+
+import java.util.*;
+
+/****************************************************************************************
+ * This class provides a bitmap index on one attribute of a table: for each distinct
+ * value, a compressed bitmap (RoaringBitmap) of the numbers of the rows holding it.
+ * It suits attributes with few distinct values (e.g., a status or a grade), where
+ * comparisons on several such attributes can be answered by combining bitmaps with
+ * AND, OR and AND-NOT without reading any tuple. The values are kept in order, so a
+ * range comparison unites the bitmaps of the values in the range. Nulls are not
+ * indexed.
+ *
+ * The bitmaps returned by the lookups may be shared with the index and must not be
+ * modified (RoaringBitmap's and, or and andNot make new bitmaps).
+ */
+public class BitmapIndex {
+    /**
+     * The indexed attribute.
+     */
+    private final String attribute;
+
+    /**
+     * The position of the indexed attribute in the table's tuples.
+     */
+    private final int col;
+
+    /**
+     * The bitmap of rows for each value of the attribute.
+     */
+    private final TreeMap<Comparable, RoaringBitmap> bitmap = new TreeMap<>();
+
+    /************************************************************************************
+     * Construct an empty bitmap index.
+     *
+     * @param _attribute the indexed attribute
+     * @param _col       its position in the table's tuples
+     */
+    BitmapIndex(String _attribute, int _col) {
+        attribute = _attribute;
+        col = _col;
+    } // constructor
+
+    /************************************************************************************
+     * Return the indexed attribute.
+     *
+     * @return the attribute name
+     */
+    public String attribute() {
+        return attribute;
+    } // attribute
+
+    /************************************************************************************
+     * Return the position of the indexed attribute in the table's tuples.
+     *
+     * @return the column position
+     */
+    int col() {
+        return col;
+    } // col
+
+    /************************************************************************************
+     * Return the number of distinct values indexed.
+     *
+     * @return the number of bitmaps
+     */
+    public int cardinality() {
+        return bitmap.size();
+    } // cardinality
+
+    /************************************************************************************
+     * Return the approximate memory used by the bitmaps in bytes.
+     *
+     * @return the size in bytes
+     */
+    public long bytes() {
+        long b = 0;
+        for (RoaringBitmap r : bitmap.values())
+            b += r.bytes();
+        return b;
+    } // bytes
+
+    /************************************************************************************
+     * Return the rows whose value equals v.
+     *
+     * @param v the value
+     * @return the bitmap of rows
+     */
+    public RoaringBitmap eq(Comparable v) {
+        RoaringBitmap r = bitmap.get(v);
+        return (r == null) ? new RoaringBitmap() : r;
+    } // eq
+
+    /************************************************************************************
+     * Return the rows whose value is any of the given values.
+     *
+     * @param vs the values
+     * @return the bitmap of rows
+     */
+    public RoaringBitmap in(Comparable... vs) {
+        RoaringBitmap r = new RoaringBitmap();
+        for (Comparable v : vs)
+            r = RoaringBitmap.or(r, eq(v));
+        return r;
+    } // in
+
+    /************************************************************************************
+     * Return the rows whose value is in the given range.
+     *
+     * @param lo    the lower bound (null for none)
+     * @param loInc whether the lower bound is included
+     * @param hi    the upper bound (null for none)
+     * @param hiInc whether the upper bound is included
+     * @return the bitmap of rows
+     */
+    @SuppressWarnings("unchecked")
+    public RoaringBitmap range(Comparable lo, boolean loInc, Comparable hi, boolean hiInc) {
+        NavigableMap<Comparable, RoaringBitmap> sub = bitmap;
+        if (lo != null && hi != null && lo.compareTo(hi) > 0)
+            return new RoaringBitmap();
+        if (lo != null)
+            sub = sub.tailMap(lo, loInc);
+        if (hi != null)
+            sub = sub.headMap(hi, hiInc);
+        RoaringBitmap r = new RoaringBitmap();
+        for (RoaringBitmap b : sub.values())
+            r = RoaringBitmap.or(r, b);
+        return r;
+    } // range
+
+    /************************************************************************************
+     * Add a row holding value v.
+     *
+     * @param v   the value (ignored if null)
+     * @param row the row number
+     */
+    void add(Comparable v, int row) {
+        if (v != null)
+            bitmap.computeIfAbsent(v, k -> new RoaringBitmap()).add(row);
+    } // add
+
+    /************************************************************************************
+     * Remove a row holding value v.
+     *
+     * @param v   the value (ignored if null)
+     * @param row the row number
+     */
+    void remove(Comparable v, int row) {
+        RoaringBitmap r = (v == null) ? null : bitmap.get(v);
+        if (r == null)
+            return;
+        r.remove(row);
+        if (r.isEmpty())
+            bitmap.remove(v);
+    } // remove
+
+    /************************************************************************************
+     * Remove every row from the index.
+     */
+    void clear() {
+        bitmap.clear();
+    } // clear
+
+} // BitmapIndex class
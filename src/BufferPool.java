@@ -0,0 +1,396 @@
+package src;
+
+/****************************************************************************************
+ * @file  BufferPool.java
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import static src.Trace.Channel.*;
+
+/****************************************************************************************
+ * This class provides a buffer pool caching fixed-size pages (PageFile.PAGE_SIZE bytes)
+ * of disk-resident tables within a memory budget. A page is pinned while in use and
+ * cannot be evicted until it is unpinned; a page unpinned as dirty is written back to
+ * its file before its frame is reused (or on flush). Which unpinned page to evict is
+ * decided by a pluggable EvictionPolicy (LRU and CLOCK are provided).
+ *
+ *     BufferPool pool = new BufferPool (64 << 20, new BufferPool.Clock ());
+ *     ByteBuffer page = pool.pin (file, p);
+ *     try { ... } finally { pool.unpin (file, p, false); }
+ *
+ * The frames are slices of one direct buffer, so cached pages live off the heap. All
+ * methods are synchronized.
+ */
+public class BufferPool {
+    /**
+     * A policy choosing which unpinned frame to evict.
+     */
+    public interface EvictionPolicy {
+        /**
+         * Set up the policy for the given number of frames.
+         */
+        void init(int frames);
+
+        /**
+         * Record that frame f was pinned (whether its page was found or loaded).
+         */
+        void access(int f);
+
+        /**
+         * Choose a frame to evict among those whose pin count is zero.
+         *
+         * @return the frame number, or -1 if every frame is pinned
+         */
+        int victim(int[] pins);
+    } // EvictionPolicy
+
+    /**
+     * The frames (each PAGE_SIZE bytes of one direct buffer).
+     */
+    private final ByteBuffer[] frame;
+
+    /**
+     * The page file of the page held in each frame (null if the frame is free).
+     */
+    private final PageFile[] fileOf;
+
+    /**
+     * The page number of the page held in each frame.
+     */
+    private final int[] pageOf;
+
+    /**
+     * The pin count of each frame.
+     */
+    private final int[] pins;
+
+    /**
+     * Whether each frame's page has changed since it was read or written back.
+     */
+    private final boolean[] dirty;
+
+    /**
+     * The page table mapping (file, page) to the frame holding it.
+     */
+    private final Map<Long, Integer> table = new HashMap<>();
+
+    /**
+     * The number given to each file (used in page table keys).
+     */
+    private final Map<PageFile, Integer> fileId = new IdentityHashMap<>();
+
+    /**
+     * The number to give the next file seen.
+     */
+    private int nextId = 0;
+
+    /**
+     * The free frames.
+     */
+    private final Deque<Integer> free = new ArrayDeque<>();
+
+    /**
+     * The eviction policy.
+     */
+    private final EvictionPolicy policy;
+
+    /**
+     * The number of pins that found their page in the pool.
+     */
+    private long hits = 0;
+
+    /**
+     * The number of pins that had to read their page from its file.
+     */
+    private long misses = 0;
+
+    /**
+     * The number of pages evicted.
+     */
+    private long evictions = 0;
+
+    /**
+     * The number of dirty pages written back.
+     */
+    private long writes = 0;
+
+    /************************************************************************************
+     * Construct a buffer pool using at most the given number of bytes for pages.
+     *
+     * @param budget  the memory budget in bytes (at least one page)
+     * @param _policy the eviction policy
+     */
+    public BufferPool(long budget, EvictionPolicy _policy) {
+        int n = (int) Math.min(Integer.MAX_VALUE / PageFile.PAGE_SIZE, budget / PageFile.PAGE_SIZE);
+        if (n < 1)
+            throw new IllegalArgumentException("BufferPool: the budget must hold at least one page");
+        frame = new ByteBuffer[n];
+        fileOf = new PageFile[n];
+        pageOf = new int[n];
+        pins = new int[n];
+        dirty = new boolean[n];
+
+        ByteBuffer mem = ByteBuffer.allocateDirect(n * PageFile.PAGE_SIZE);
+        for (int f = 0; f < n; f++) {
+            frame[f] = mem.slice(f * PageFile.PAGE_SIZE, PageFile.PAGE_SIZE);
+            free.add(f);
+        } // for
+        policy = _policy;
+        policy.init(n);
+    } // constructor
+
+    /************************************************************************************
+     * Pin page p of the given file, reading it in (and evicting another page) if it
+     * is not in the pool. The page stays in the pool until it is unpinned as many
+     * times as it was pinned. Callers should only use absolute gets and puts on the
+     * returned buffer, since other threads may share it.
+     *
+     * @param file the page file
+     * @param p    the page number
+     * @return the buffer holding the page
+     * @throws UncheckedIOException if the page cannot be read or a victim written back
+     * @throws IllegalStateException if every frame is pinned
+     */
+    public synchronized ByteBuffer pin(PageFile file, int p) {
+        long k = key(file, p);
+        Integer f = table.get(k);
+        if (f != null) {
+            hits++;
+        } else {
+            misses++;
+            f = free.isEmpty() ? evict() : free.poll();
+            try {
+                file.readPage(p, frame[f]);
+            } catch (IOException ex) {
+                free.add(f);
+                throw new UncheckedIOException(ex);
+            } // try
+            fileOf[f] = file;
+            pageOf[f] = p;
+            table.put(k, f);
+        } // if
+        pins[f]++;
+        policy.access(f);
+        return frame[f];
+    } // pin
+
+    /************************************************************************************
+     * Unpin page p of the given file.
+     *
+     * @param file  the page file
+     * @param p     the page number
+     * @param dirty whether the caller changed the page
+     */
+    public synchronized void unpin(PageFile file, int p, boolean dirty) {
+        Integer f = table.get(key(file, p));
+        if (f == null || pins[f] == 0)
+            throw new IllegalStateException("BufferPool.unpin: page " + p + " is not pinned");
+        pins[f]--;
+        this.dirty[f] |= dirty;
+    } // unpin
+
+    /************************************************************************************
+     * Write back the dirty pages of the given file and force them to the device.
+     *
+     * @param file the page file
+     * @throws IOException if a page cannot be written
+     */
+    public synchronized void flush(PageFile file) throws IOException {
+        for (int f = 0; f < frame.length; f++) {
+            if (fileOf[f] == file && dirty[f])
+                writeBack(f);
+        } // for
+        file.force();
+    } // flush
+
+    /************************************************************************************
+     * Write back the dirty pages of the given file and drop all its pages from the
+     * pool (e.g., before the file is closed). None of its pages may be pinned.
+     *
+     * @param file the page file
+     * @throws IOException if a page cannot be written
+     */
+    public synchronized void release(PageFile file) throws IOException {
+        flush(file);
+        for (int f = 0; f < frame.length; f++) {
+            if (fileOf[f] != file)
+                continue;
+            if (pins[f] > 0)
+                throw new IllegalStateException("BufferPool.release: page " + pageOf[f] + " is pinned");
+            table.remove(key(file, pageOf[f]));
+            fileOf[f] = null;
+            free.add(f);
+        } // for
+        fileId.remove(file);
+    } // release
+
+    /************************************************************************************
+     * Return the number of frames in the pool.
+     *
+     * @return the capacity in pages
+     */
+    public int frames() {
+        return frame.length;
+    } // frames
+
+    /************************************************************************************
+     * Return the fraction of pins that found their page in the pool.
+     *
+     * @return the hit ratio (0 if nothing has been pinned)
+     */
+    public synchronized double hitRatio() {
+        return (hits + misses == 0) ? 0.0 : hits / (double) (hits + misses);
+    } // hitRatio
+
+    /************************************************************************************
+     * Return the pool's counters as a string.
+     *
+     * @return the hits, misses, evictions and write-backs so far
+     */
+    public synchronized String stats() {
+        return "hits = " + hits + ", misses = " + misses + ", evictions = " + evictions
+                + ", writes = " + writes;
+    } // stats
+
+    // ----------------------------------------------------------------------------------
+    // Private Methods
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Evict the page chosen by the policy, writing it back first if it is dirty.
+     *
+     * @return the frame freed
+     */
+    private int evict() {
+        int f = policy.victim(pins);
+        if (f < 0)
+            throw new IllegalStateException("BufferPool: all " + frame.length + " frames are pinned");
+        if (dirty[f]) {
+            try {
+                writeBack(f);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            } // try
+        } // if
+        if (Trace.on(INDEX))
+            Trace.log(INDEX, "BufferPool: evict page " + pageOf[f] + " from frame " + f);
+        table.remove(key(fileOf[f], pageOf[f]));
+        fileOf[f] = null;
+        evictions++;
+        return f;
+    } // evict
+
+    /************************************************************************************
+     * Write frame f's page back to its file.
+     *
+     * @param f the frame number
+     */
+    private void writeBack(int f) throws IOException {
+        fileOf[f].writePage(pageOf[f], frame[f]);
+        dirty[f] = false;
+        writes++;
+    } // writeBack
+
+    /************************************************************************************
+     * Return the page table key for page p of the given file.
+     */
+    private long key(PageFile file, int p) {
+        Integer id = fileId.get(file);
+        if (id == null)
+            fileId.put(file, id = nextId++);
+        return ((long) id << 32) | (p & 0xffffffffL);
+    } // key
+
+    // ----------------------------------------------------------------------------------
+    // Eviction policies
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Least recently used: evict the unpinned frame pinned longest ago. The frames
+     * are kept in a doubly linked list in order of last access.
+     */
+    public static class Lru
+            implements EvictionPolicy {
+
+        private int[] prev, next;
+        private int head = -1, tail = -1;
+
+        public void init(int frames) {
+            prev = new int[frames];
+            next = new int[frames];
+            Arrays.fill(prev, -2); // -2 marks a frame not in the list
+        } // init
+
+        public void access(int f) {
+            if (prev[f] != -2)
+                unlink(f);
+            prev[f] = tail;
+            next[f] = -1;
+            if (tail >= 0)
+                next[tail] = f;
+            else
+                head = f;
+            tail = f;
+        } // access
+
+        public int victim(int[] pins) {
+            for (int f = head; f >= 0; f = next[f]) {
+                if (pins[f] == 0) {
+                    unlink(f);
+                    return f;
+                } // if
+            } // for
+            return -1;
+        } // victim
+
+        private void unlink(int f) {
+            if (prev[f] >= 0)
+                next[prev[f]] = next[f];
+            else
+                head = next[f];
+            if (next[f] >= 0)
+                prev[next[f]] = prev[f];
+            else
+                tail = prev[f];
+            prev[f] = -2;
+        } // unlink
+
+    } // Lru class
+
+    /************************************************************************************
+     * CLOCK (second chance): a hand sweeps the frames, clearing reference bits and
+     * evicting the first unpinned frame whose bit is already clear.
+     */
+    public static class Clock
+            implements EvictionPolicy {
+
+        private boolean[] ref;
+        private int hand = 0;
+
+        public void init(int frames) {
+            ref = new boolean[frames];
+        } // init
+
+        public void access(int f) {
+            ref[f] = true;
+        } // access
+
+        public int victim(int[] pins) {
+            for (int i = 0; i < 2 * ref.length; i++) {
+                int f = hand;
+                hand = (hand + 1) % ref.length;
+                if (pins[f] > 0)
+                    continue;
+                if (!ref[f])
+                    return f;
+                ref[f] = false;
+            } // for
+            return -1;
+        } // victim
+
+    } // Clock class
+
+} // BufferPool class
@@ -0,0 +1,789 @@
+package src;
+
+/****************************************************************************************
+ * @file  ColumnStore.java
+ */
+
+import java.io.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This class provides columnar (column-at-a-time) storage for the tuples of a table.
+ * Integer, Short and Byte columns are stored in int arrays, Long columns in long
+ * arrays, Double and Float columns in double arrays and all other domains (e.g.,
+ * String, Character) in dictionary-encoded columns (an int code per row plus a
+ * dictionary of the distinct values). Null values are not supported.
+ *
+ * The store is a List of tuples, so it can stand in for the row-oriented tuple list
+ * of a Table: get (i) materializes row i. Operators that know about the store read
+ * single cells with value (i, j) or work directly on the column vectors.
+ */
+public class ColumnStore
+        extends AbstractList<Comparable[]>
+        implements RandomAccess, Serializable {
+
+    /**
+     * The initial capacity (rows) of the column vectors.
+     */
+    private static final int INIT_CAP = 16;
+
+    /**
+     * The attribute domains (one per column).
+     */
+    private final Class[] domain;
+
+    /**
+     * The column vectors.
+     */
+    private final Column[] column;
+
+    /**
+     * The number of rows stored.
+     */
+    private int nRows = 0;
+
+    /************************************************************************************
+     * Construct an empty column store for the given domains.
+     *
+     * @param _domain the attribute domains (data types)
+     */
+    public ColumnStore(Class[] _domain) {
+        domain = _domain;
+        column = new Column[domain.length];
+        for (int j = 0; j < domain.length; j++)
+            column[j] = Column.make(domain[j], INIT_CAP);
+    } // constructor
+
+    /************************************************************************************
+     * Construct a column store from existing column vectors holding n rows.
+     *
+     * @param _domain the attribute domains (data types)
+     * @param _column the column vectors
+     * @param n       the number of rows
+     */
+    private ColumnStore(Class[] _domain, Column[] _column, int n) {
+        domain = _domain;
+        column = _column;
+        nRows = n;
+    } // constructor
+
+    /************************************************************************************
+     * Return the number of rows in the store.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return nRows;
+    } // size
+
+    /************************************************************************************
+     * Materialize row i as a tuple.
+     *
+     * @param i the row number
+     * @return a new array holding the row's values
+     */
+    public Comparable[] get(int i) {
+        Objects.checkIndex(i, nRows);
+        Comparable[] tup = new Comparable[column.length];
+        for (int j = 0; j < column.length; j++)
+            tup[j] = column[j].get(i);
+        return tup;
+    } // get
+
+    /************************************************************************************
+     * Copy row i into the given tuple buffer (no allocation beyond boxing).
+     *
+     * @param i   the row number
+     * @param tup the buffer to fill (length at least the number of columns)
+     * @return the filled buffer
+     */
+    public Comparable[] row(int i, Comparable[] tup) {
+        for (int j = 0; j < column.length; j++)
+            tup[j] = column[j].get(i);
+        return tup;
+    } // row
+
+    /************************************************************************************
+     * Return the value in row i, column j.
+     *
+     * @param i the row number
+     * @param j the column number
+     * @return the value of the cell
+     */
+    public Comparable value(int i, int j) {
+        return column[j].get(i);
+    } // value
+
+    /************************************************************************************
+     * Form the key made of the values in row i of the given columns. A single Integer
+     * or Long column gives a specialized key read straight from its vector, without
+     * boxing the value.
+     *
+     * @param i    the row number
+     * @param cols the column numbers making up the key
+     * @return the key
+     */
+    public KeyType key(int i, int[] cols) {
+        if (cols.length == 1) {
+            Column c = column[cols[0]];
+            if (c instanceof IntColumn && c.type == Integer.class)
+                return KeyType.of(((IntColumn) c).data[i]);
+            if (c instanceof LongColumn)
+                return KeyType.of(((LongColumn) c).data[i]);
+        } // if
+        Comparable[] keyVal = new Comparable[cols.length];
+        for (int j = 0; j < cols.length; j++)
+            keyVal[j] = column[cols[j]].get(i);
+        return KeyType.of(keyVal);
+    } // key
+
+    /************************************************************************************
+     * Append a tuple to the store by splitting it into the column vectors.
+     *
+     * @param tup the tuple to append
+     * @return true (as required by Collection.add)
+     */
+    public boolean add(Comparable[] tup) {
+        if (tup.length != column.length)
+            throw new IllegalArgumentException("ColumnStore.add: tuple has " + tup.length
+                    + " values, expected " + column.length);
+        for (int j = 0; j < column.length; j++)
+            column[j].set(nRows, tup[j]);
+        nRows++;
+        modCount++;
+        return true;
+    } // add
+
+    /************************************************************************************
+     * Replace row i with the given tuple.
+     *
+     * @param i   the row number
+     * @param tup the new values for the row
+     * @return the old row (materialized)
+     */
+    public Comparable[] set(int i, Comparable[] tup) {
+        Comparable[] old = get(i);
+        for (int j = 0; j < column.length; j++)
+            column[j].set(i, tup[j]);
+        return old;
+    } // set
+
+    /************************************************************************************
+     * Remove the given rows in one pass, moving the remaining rows up (in order).
+     *
+     * @param dead the row numbers to remove
+     */
+    public void compact(BitSet dead) {
+        int[] live = new int[nRows];
+        int n = 0;
+        for (int i = dead.nextClearBit(0); i < nRows; i = dead.nextClearBit(i + 1))
+            live[n++] = i;
+        for (int j = 0; j < column.length; j++)
+            column[j] = column[j].copy(live, n);
+        nRows = n;
+        modCount++;
+    } // compact
+
+    /************************************************************************************
+     * Return the column vector for column j.
+     *
+     * @param j the column number
+     * @return the column vector
+     */
+    public Column column(int j) {
+        return column[j];
+    } // column
+
+    /************************************************************************************
+     * Make a new store holding the given rows (in the given order) of the given
+     * columns, copying whole column vectors at a time (concurrently in the
+     * parallel execution mode).
+     *
+     * @param rows the row numbers to keep (null for all rows)
+     * @param n    the number of row numbers in rows to use
+     * @param cols the column numbers to keep (null for all columns)
+     * @return the new column store
+     */
+    public ColumnStore gather(int[] rows, int n, int[] cols) {
+        int nc = (cols == null) ? column.length : cols.length;
+        Class[] dom = new Class[nc];
+        Column[] vec = new Column[nc];
+        int m = (rows == null) ? nRows : n;
+
+        // the columns are independent, so they are copied in parallel (see Parallel)
+        List<Runnable> copies = new ArrayList<>(nc);
+        for (int j = 0; j < nc; j++) {
+            int c = (cols == null) ? j : cols[j];
+            int k = j;
+            dom[j] = domain[c];
+            copies.add(() -> vec[k] = column[c].copy(rows, m));
+        } // for
+        Parallel.all(copies);
+        return new ColumnStore(dom, vec, m);
+    } // gather
+
+    /************************************************************************************
+     * Return the positions of the rows that are distinct on the given columns (the
+     * first occurrence of each distinct combination of values, in row order). Rows
+     * are compared cell by cell in the column vectors, so no values are boxed.
+     *
+     * @param cols the column numbers to compare on
+     * @param skip the row numbers to leave out (e.g., deleted rows)
+     * @return the row numbers of the distinct rows
+     */
+    public int[] distinct(int[] cols, BitSet skip) {
+        int cap = 16;
+        while (cap < 2 * nRows)
+            cap <<= 1;
+        int[] slot = new int[cap];
+        Arrays.fill(slot, -1);
+        int mask = cap - 1;
+
+        int[] sel = new int[nRows];
+        int n = 0;
+        rows: for (int i = skip.nextClearBit(0); i < nRows; i = skip.nextClearBit(i + 1)) {
+            int h = 0;
+            for (int c : cols)
+                h = 31 * h + column[c].hash(i);
+            int s = (h ^ (h >>> 16)) & mask;
+            for (int k; (k = slot[s]) >= 0; s = (s + 1) & mask) {
+                if (sameRow(i, k, cols))
+                    continue rows;
+            } // for
+            slot[s] = i;
+            sel[n++] = i;
+        } // for
+        return Arrays.copyOf(sel, n);
+    } // distinct
+
+    /************************************************************************************
+     * Determine whether rows i and k agree on the given columns.
+     *
+     * @param i    the first row number
+     * @param k    the second row number
+     * @param cols the column numbers to compare on
+     * @return whether the rows have equal values in all the columns
+     */
+    private boolean sameRow(int i, int k, int[] cols) {
+        for (int c : cols) {
+            if (!column[c].same(i, k))
+                return false;
+        } // for
+        return true;
+    } // sameRow
+
+    /************************************************************************************
+     * Return the approximate number of bytes used by the column vectors.
+     *
+     * @return the approximate heap footprint in bytes
+     */
+    public long bytes() {
+        long sum = 0;
+        for (Column c : column)
+            sum += c.bytes();
+        return sum;
+    } // bytes
+
+    // ----------------------------------------------------------------------------------
+    // Column vectors
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * A column vector holding the values of one attribute.
+     */
+    public static abstract class Column
+            implements Serializable {
+
+        /**
+         * The domain (boxed type) of the column's values.
+         */
+        final Class type;
+
+        Column(Class _type) {
+            type = _type;
+        } // constructor
+
+        /**
+         * Return the (boxed) value in row i.
+         */
+        abstract Comparable get(int i);
+
+        /**
+         * Store value v in row i, growing the vector if i is past its capacity.
+         */
+        abstract void set(int i, Comparable v);
+
+        /**
+         * Copy the given n rows (all of the first n rows if rows is null).
+         */
+        abstract Column copy(int[] rows, int n);
+
+        /**
+         * Return the approximate number of bytes used.
+         */
+        abstract long bytes();
+
+        /**
+         * Return a hash code for the value in row i (without boxing it).
+         */
+        abstract int hash(int i);
+
+        /**
+         * Determine whether rows i and k hold equal values (as Object.equals would).
+         */
+        abstract boolean same(int i, int k);
+
+        /**
+         * Make an empty column vector for the given domain.
+         */
+        static Column make(Class type, int cap) {
+            if (type == Integer.class || type == Short.class || type == Byte.class)
+                return new IntColumn(type, new int[cap]);
+            if (type == Long.class)
+                return new LongColumn(type, new long[cap]);
+            if (type == Double.class || type == Float.class)
+                return new DoubleColumn(type, new double[cap]);
+            return new DictColumn(type, new int[cap], new ArrayList<>(), new HashMap<>());
+        } // make
+
+        /**
+         * Capacity to grow to so that row i fits.
+         */
+        static int grow(int cap, int i) {
+            return Math.max(i + 1, cap + (cap >> 1) + 1);
+        } // grow
+
+        /**
+         * Reject nulls, which the primitive vectors cannot represent.
+         */
+        static Comparable nonNull(Comparable v) {
+            if (v == null)
+                throw new IllegalArgumentException("ColumnStore: null values are not supported");
+            return v;
+        } // nonNull
+
+    } // Column class
+
+    /************************************************************************************
+     * A column of Integer, Short or Byte values stored as ints.
+     */
+    public static final class IntColumn
+            extends Column {
+
+        int[] data;
+
+        IntColumn(Class _type, int[] _data) {
+            super(_type);
+            data = _data;
+        } // constructor
+
+        /**
+         * Return the underlying vector (valid for the store's first size () rows).
+         */
+        public int[] data() {
+            return data;
+        } // data
+
+        Comparable get(int i) {
+            if (type == Integer.class)
+                return data[i];
+            if (type == Short.class)
+                return (short) data[i];
+            return (byte) data[i];
+        } // get
+
+        void set(int i, Comparable v) {
+            if (i >= data.length)
+                data = Arrays.copyOf(data, grow(data.length, i));
+            data[i] = ((Number) nonNull(v)).intValue();
+        } // set
+
+        Column copy(int[] rows, int n) {
+            int[] d = new int[Math.max(n, INIT_CAP)];
+            if (rows == null)
+                System.arraycopy(data, 0, d, 0, n);
+            else
+                for (int i = 0; i < n; i++)
+                    d[i] = data[rows[i]];
+            return new IntColumn(type, d);
+        } // copy
+
+        long bytes() {
+            return 16L + 4L * data.length;
+        } // bytes
+
+        int hash(int i) {
+            return data[i];
+        } // hash
+
+        boolean same(int i, int k) {
+            return data[i] == data[k];
+        } // same
+
+
+    } // IntColumn class
+
+    /************************************************************************************
+     * A column of Long values stored as longs.
+     */
+    public static final class LongColumn
+            extends Column {
+
+        long[] data;
+
+        LongColumn(Class _type, long[] _data) {
+            super(_type);
+            data = _data;
+        } // constructor
+
+        /**
+         * Return the underlying vector (valid for the store's first size () rows).
+         */
+        public long[] data() {
+            return data;
+        } // data
+
+        Comparable get(int i) {
+            return data[i];
+        } // get
+
+        void set(int i, Comparable v) {
+            if (i >= data.length)
+                data = Arrays.copyOf(data, grow(data.length, i));
+            data[i] = ((Number) nonNull(v)).longValue();
+        } // set
+
+        Column copy(int[] rows, int n) {
+            long[] d = new long[Math.max(n, INIT_CAP)];
+            if (rows == null)
+                System.arraycopy(data, 0, d, 0, n);
+            else
+                for (int i = 0; i < n; i++)
+                    d[i] = data[rows[i]];
+            return new LongColumn(type, d);
+        } // copy
+
+        long bytes() {
+            return 16L + 8L * data.length;
+        } // bytes
+
+        int hash(int i) {
+            return Long.hashCode(data[i]);
+        } // hash
+
+        boolean same(int i, int k) {
+            return data[i] == data[k];
+        } // same
+
+
+    } // LongColumn class
+
+    /************************************************************************************
+     * A column of Double or Float values stored as doubles.
+     */
+    public static final class DoubleColumn
+            extends Column {
+
+        double[] data;
+
+        DoubleColumn(Class _type, double[] _data) {
+            super(_type);
+            data = _data;
+        } // constructor
+
+        /**
+         * Return the underlying vector (valid for the store's first size () rows).
+         */
+        public double[] data() {
+            return data;
+        } // data
+
+        Comparable get(int i) {
+            if (type == Double.class)
+                return data[i];
+            return (float) data[i];
+        } // get
+
+        void set(int i, Comparable v) {
+            if (i >= data.length)
+                data = Arrays.copyOf(data, grow(data.length, i));
+            data[i] = ((Number) nonNull(v)).doubleValue();
+        } // set
+
+        Column copy(int[] rows, int n) {
+            double[] d = new double[Math.max(n, INIT_CAP)];
+            if (rows == null)
+                System.arraycopy(data, 0, d, 0, n);
+            else
+                for (int i = 0; i < n; i++)
+                    d[i] = data[rows[i]];
+            return new DoubleColumn(type, d);
+        } // copy
+
+        long bytes() {
+            return 16L + 8L * data.length;
+        } // bytes
+
+        int hash(int i) {
+            return Double.hashCode(data[i]);
+        } // hash
+
+        boolean same(int i, int k) {
+            return Double.compare(data[i], data[k]) == 0;
+        } // same
+
+
+    } // DoubleColumn class
+
+    /************************************************************************************
+     * A dictionary-encoded column: each row stores the int code of its value, and the
+     * dictionary maps codes to the distinct values (and back). A copy shares the
+     * dictionary, which either column copies before adding a new value to it.
+     */
+    public static final class DictColumn
+            extends Column {
+
+        int[] code;
+        List<Comparable> dict;
+        Map<Comparable, Integer> codeOf;
+
+        // whether the dictionary may be shared with another column
+        boolean shared = false;
+
+        DictColumn(Class _type, int[] _code, List<Comparable> _dict, Map<Comparable, Integer> _codeOf) {
+            super(_type);
+            code = _code;
+            dict = _dict;
+            codeOf = _codeOf;
+        } // constructor
+
+        /**
+         * Return the underlying code vector (valid for the store's first size () rows).
+         */
+        public int[] codes() {
+            return code;
+        } // codes
+
+        /**
+         * Return the code of the given value, or -1 if it does not occur.
+         */
+        public int codeOf(Comparable v) {
+            Integer c = codeOf.get(v);
+            return (c == null) ? -1 : c;
+        } // codeOf
+
+        /**
+         * Return the value with the given code.
+         */
+        public Comparable decode(int c) {
+            return dict.get(c);
+        } // decode
+
+        /**
+         * Return the number of distinct values in the dictionary.
+         */
+        public int cardinality() {
+            return dict.size();
+        } // cardinality
+
+        Comparable get(int i) {
+            return dict.get(code[i]);
+        } // get
+
+        void set(int i, Comparable v) {
+            if (i >= code.length)
+                code = Arrays.copyOf(code, grow(code.length, i));
+            Integer c = codeOf.get(nonNull(v));
+            if (c == null) {
+                if (shared) {
+                    dict = new ArrayList<>(dict);
+                    codeOf = new HashMap<>(codeOf);
+                    shared = false;
+                } // if
+                c = dict.size();
+                dict.add(v);
+                codeOf.put(v, c);
+            } // if
+            code[i] = c;
+        } // set
+
+        Column copy(int[] rows, int n) {
+            int[] d = new int[Math.max(n, INIT_CAP)];
+            if (rows == null)
+                System.arraycopy(code, 0, d, 0, n);
+            else
+                for (int i = 0; i < n; i++)
+                    d[i] = code[rows[i]];
+            // the codes stay valid, so the dictionary is shared until either column grows it
+            shared = true;
+            DictColumn col = new DictColumn(type, d, dict, codeOf);
+            col.shared = true;
+            return col;
+        } // copy
+
+        long bytes() {
+            return 16L + 4L * code.length + 48L * dict.size();
+        } // bytes
+
+        int hash(int i) {
+            return code[i];
+        } // hash
+
+        boolean same(int i, int k) {
+            return code[i] == code[k];
+        } // same
+
+
+    } // DictColumn class
+
+    // ----------------------------------------------------------------------------------
+    // Row-id index
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * A primary-key index for a column store. It keeps only row numbers in the
+     * underlying map (so no tuple arrays are kept alive) and materializes the tuple
+     * from the store when a value is read. Entries are added with putRow. Over a
+     * TreeMap or BPTreeMap it iterates in key order and answers range scans (see
+     * isOrdered and rangeIterator).
+     */
+    public static class RowIndex
+            extends AbstractMap<KeyType, Comparable[]>
+            implements Serializable {
+
+        /**
+         * The map from keys to row numbers.
+         */
+        private final Map<KeyType, Integer> rowOf;
+
+        /**
+         * The column store the row numbers refer to.
+         */
+        private final ColumnStore store;
+
+        /********************************************************************************
+         * Construct a row-id index over the given store.
+         *
+         * @param _rowOf the (empty) map to keep the key to row number mappings in
+         * @param _store the column store
+         */
+        public RowIndex(Map<KeyType, Integer> _rowOf, ColumnStore _store) {
+            rowOf = _rowOf;
+            store = _store;
+        } // constructor
+
+        /********************************************************************************
+         * Map the key to the given row number.
+         *
+         * @param k   the key
+         * @param row the row number in the store
+         * @return the previous row number for the key, null if none
+         */
+        public Integer putRow(KeyType k, int row) {
+            return rowOf.put(k, row);
+        } // putRow
+
+        /********************************************************************************
+         * Return the row number for the key.
+         *
+         * @param k the key
+         * @return the row number, null if the key is absent
+         */
+        public Integer rowOf(Object k) {
+            return rowOf.get(k);
+        } // rowOf
+
+        /********************************************************************************
+         * Determine whether the underlying map keeps its keys in order, so that this
+         * index iterates in key order and supports rangeIterator.
+         *
+         * @return whether the index is ordered
+         */
+        public boolean isOrdered() {
+            return rowOf instanceof NavigableMap || rowOf instanceof BPTreeMap;
+        } // isOrdered
+
+        /********************************************************************************
+         * Return an iterator over the entries with keys in the range lo to hi
+         * (inclusive), in ascending key order, materializing each tuple as it is
+         * reached. The index must be ordered (see isOrdered).
+         *
+         * @param lo the lowest key in the range (null for no lower bound)
+         * @param hi the highest key in the range (null for no upper bound)
+         * @return an iterator over the entries in the range
+         */
+        @SuppressWarnings("unchecked")
+        public Iterator<Map.Entry<KeyType, Comparable[]>> rangeIterator(KeyType lo, KeyType hi) {
+            Iterator<Map.Entry<KeyType, Integer>> it;
+            if (rowOf instanceof NavigableMap) {
+                var map = (NavigableMap<KeyType, Integer>) rowOf;
+                if (lo != null)
+                    map = map.tailMap(lo, true);
+                if (hi != null)
+                    map = map.headMap(hi, true);
+                it = map.entrySet().iterator();
+            } else if (rowOf instanceof BPTreeMap) {
+                it = ((BPTreeMap<KeyType, Integer>) rowOf).rangeIterator(lo, hi);
+            } else {
+                throw new UnsupportedOperationException("rangeIterator: the index is not ordered");
+            } // if
+            return materialize(it);
+        } // rangeIterator
+
+        public Comparable[] get(Object k) {
+            Integer row = rowOf.get(k);
+            return (row == null) ? null : store.get(row);
+        } // get
+
+        public boolean containsKey(Object k) {
+            return rowOf.containsKey(k);
+        } // containsKey
+
+        public Comparable[] remove(Object k) {
+            Integer row = rowOf.remove(k);
+            return (row == null) ? null : store.get(row);
+        } // remove
+
+        public int size() {
+            return rowOf.size();
+        } // size
+
+        public void clear() {
+            rowOf.clear();
+        } // clear
+
+        public Set<Map.Entry<KeyType, Comparable[]>> entrySet() {
+            return new AbstractSet<Map.Entry<KeyType, Comparable[]>>() {
+                public Iterator<Map.Entry<KeyType, Comparable[]>> iterator() {
+                    return materialize(rowOf.entrySet().iterator());
+                } // iterator
+
+                public int size() {
+                    return rowOf.size();
+                } // size
+            };
+        } // entrySet
+
+        /********************************************************************************
+         * Wrap an iterator over key to row number entries so that it returns the
+         * tuples in the rows instead.
+         *
+         * @param it the iterator over key to row number entries
+         * @return an iterator over key to tuple entries
+         */
+        private Iterator<Map.Entry<KeyType, Comparable[]>> materialize(Iterator<Map.Entry<KeyType, Integer>> it) {
+            return new Iterator<Map.Entry<KeyType, Comparable[]>>() {
+                public boolean hasNext() {
+                    return it.hasNext();
+                } // hasNext
+
+                public Map.Entry<KeyType, Comparable[]> next() {
+                    var e = it.next();
+                    return new AbstractMap.SimpleEntry<>(e.getKey(), store.get(e.getValue()));
+                } // next
+            };
+        } // materialize
+
+    } // RowIndex class
+
+} // ColumnStore class
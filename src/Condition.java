@@ -0,0 +1,513 @@
+package src;
+
+/****************************************************************************************
+ * @file  Condition.java
+ */
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Predicate;
+
+import src.ColumnStore.*;
+
+/****************************************************************************************
+ * This class provides typed selection conditions that a Table can inspect, e.g., to
+ * answer them through an index, and evaluate a whole batch of tuples at a time.
+ * Conditions are built from comparisons of an attribute with constants (==, !=, <,
+ * <=, >, >=, between, in) combined with and, or and not:
+ *
+ *     student.select (Condition.eq ("status", "FR").and (Condition.ge ("gpa", 3.5)))
+ *
+ * Evaluation produces a selection bitmap (bit i set when tuple i satisfies the
+ * condition). Over a ColumnStore, comparisons run as tight loops over the primitive
+ * column vectors; a dictionary-encoded column is compared once per distinct value.
+ * A comparison with a null value is false. Constants must belong to the domain of
+ * the attribute they are compared with.
+ */
+public final class Condition
+        implements Serializable {
+
+    /**
+     * The kinds of condition.
+     */
+    public enum Op {
+        EQ, NE, LT, LE, GT, GE, BETWEEN, IN, AND, OR, NOT
+    } // Op
+
+    /**
+     * The kind of this condition.
+     */
+    private final Op op;
+
+    /**
+     * The attribute compared (comparisons only).
+     */
+    private final String attr;
+
+    /**
+     * The constants compared with (one, two for BETWEEN, any number for IN).
+     */
+    private final Comparable[] value;
+
+    /**
+     * The operands (AND, OR, NOT only).
+     */
+    private final Condition[] child;
+
+    /************************************************************************************
+     * Construct a condition (use the static factory methods).
+     */
+    private Condition(Op _op, String _attr, Comparable[] _value, Condition[] _child) {
+        op = _op;
+        attr = _attr;
+        value = _value;
+        child = _child;
+    } // constructor
+
+    // ----------------------------------------------------------------------------------
+    // Factory methods
+    // ----------------------------------------------------------------------------------
+
+    /** attr == v */
+    public static Condition eq(String attr, Comparable v) {
+        return compare(Op.EQ, attr, v);
+    } // eq
+
+    /** attr != v */
+    public static Condition ne(String attr, Comparable v) {
+        return compare(Op.NE, attr, v);
+    } // ne
+
+    /** attr < v */
+    public static Condition lt(String attr, Comparable v) {
+        return compare(Op.LT, attr, v);
+    } // lt
+
+    /** attr <= v */
+    public static Condition le(String attr, Comparable v) {
+        return compare(Op.LE, attr, v);
+    } // le
+
+    /** attr > v */
+    public static Condition gt(String attr, Comparable v) {
+        return compare(Op.GT, attr, v);
+    } // gt
+
+    /** attr >= v */
+    public static Condition ge(String attr, Comparable v) {
+        return compare(Op.GE, attr, v);
+    } // ge
+
+    /** lo <= attr <= hi */
+    @SuppressWarnings("unchecked")
+    public static Condition between(String attr, Comparable lo, Comparable hi) {
+        if (lo == null || hi == null)
+            throw new IllegalArgumentException("Condition.between: null bound");
+        return new Condition(Op.BETWEEN, attr, new Comparable[] { lo, hi }, null);
+    } // between
+
+    /** attr in (vs) */
+    public static Condition in(String attr, Comparable... vs) {
+        for (Comparable v : vs) {
+            if (v == null)
+                throw new IllegalArgumentException("Condition.in: null value");
+        } // for
+        return new Condition(Op.IN, attr, vs.clone(), null);
+    } // in
+
+    /** this and c */
+    public Condition and(Condition c) {
+        return new Condition(Op.AND, null, null, new Condition[] { this, c });
+    } // and
+
+    /** this or c */
+    public Condition or(Condition c) {
+        return new Condition(Op.OR, null, null, new Condition[] { this, c });
+    } // or
+
+    /** not this */
+    public Condition not() {
+        return new Condition(Op.NOT, null, null, new Condition[] { this });
+    } // not
+
+    /************************************************************************************
+     * Make a single-constant comparison.
+     */
+    private static Condition compare(Op op, String attr, Comparable v) {
+        if (v == null)
+            throw new IllegalArgumentException("Condition." + op.name().toLowerCase() + ": null value");
+        return new Condition(op, attr, new Comparable[] { v }, null);
+    } // compare
+
+    // ----------------------------------------------------------------------------------
+    // Inspection
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return the kind of this condition.
+     *
+     * @return the operator
+     */
+    public Op op() {
+        return op;
+    } // op
+
+    /************************************************************************************
+     * Return the attribute compared (null for AND, OR, NOT).
+     *
+     * @return the attribute name
+     */
+    public String attribute() {
+        return attr;
+    } // attribute
+
+    /************************************************************************************
+     * Return the constants compared with (null for AND, OR, NOT).
+     *
+     * @return a copy of the constants
+     */
+    public Comparable[] values() {
+        return (value == null) ? null : value.clone();
+    } // values
+
+    /************************************************************************************
+     * Return the operands (empty for comparisons).
+     *
+     * @return a copy of the operands
+     */
+    public Condition[] children() {
+        return (child == null) ? new Condition[0] : child.clone();
+    } // children
+
+    /************************************************************************************
+     * Return the conjuncts of this condition: the operands of nested ANDs, or just
+     * this condition.
+     *
+     * @return the list of conjuncts
+     */
+    public List<Condition> conjuncts() {
+        List<Condition> cs = new ArrayList<>();
+        addConjuncts(cs);
+        return cs;
+    } // conjuncts
+
+    private void addConjuncts(List<Condition> cs) {
+        if (op == Op.AND) {
+            for (Condition c : child)
+                c.addConjuncts(cs);
+        } else {
+            cs.add(this);
+        } // if
+    } // addConjuncts
+
+    /************************************************************************************
+     * Convert the condition to a string.
+     *
+     * @return the string representation of the condition
+     */
+    public String toString() {
+        return switch (op) {
+            case EQ -> attr + " == " + value[0];
+            case NE -> attr + " != " + value[0];
+            case LT -> attr + " < " + value[0];
+            case LE -> attr + " <= " + value[0];
+            case GT -> attr + " > " + value[0];
+            case GE -> attr + " >= " + value[0];
+            case BETWEEN -> attr + " between " + value[0] + " and " + value[1];
+            case IN -> attr + " in " + Arrays.toString(value);
+            case AND -> "(" + child[0] + " and " + child[1] + ")";
+            case OR -> "(" + child[0] + " or " + child[1] + ")";
+            case NOT -> "not " + child[0];
+        }; // switch
+    } // toString
+
+    // ----------------------------------------------------------------------------------
+    // Evaluation
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Bind the condition to the given attributes, giving a predicate on tuples.
+     *
+     * @param attribute the attribute names of the tuples to test
+     * @param domain    the attribute domains of the tuples to test
+     * @return a predicate equivalent to this condition
+     */
+    public Predicate<Comparable[]> toPredicate(String[] attribute, Class[] domain) {
+        check(attribute, domain);
+        return t -> test(t, attribute);
+    } // toPredicate
+
+    /************************************************************************************
+     * Evaluate the condition over the given tuples.
+     *
+     * @param attribute the attribute names of the tuples
+     * @param domain    the attribute domains of the tuples
+     * @param tuples    the tuples (possibly a ColumnStore)
+     * @return the selection bitmap: bit i is set if tuple i satisfies the condition
+     */
+    public long[] evaluate(String[] attribute, Class[] domain, List<Comparable[]> tuples) {
+        check(attribute, domain);
+        return eval(attribute, tuples, tuples.size());
+    } // evaluate
+
+    /************************************************************************************
+     * Check that every attribute exists and every constant is of its domain.
+     */
+    private void check(String[] attribute, Class[] domain) {
+        if (child != null) {
+            for (Condition c : child)
+                c.check(attribute, domain);
+            return;
+        } // if
+        int j = colOf(attr, attribute);
+        for (Comparable v : value) {
+            if (!domain[j].isInstance(v))
+                throw new IllegalArgumentException("Condition: " + v + " is not in the domain "
+                        + domain[j].getSimpleName() + " of " + attr);
+        } // for
+    } // check
+
+    /************************************************************************************
+     * Test a single tuple (used for residual checks and predicates).
+     */
+    boolean test(Comparable[] t, String[] attribute) {
+        return switch (op) {
+            case AND -> child[0].test(t, attribute) && child[1].test(t, attribute);
+            case OR -> child[0].test(t, attribute) || child[1].test(t, attribute);
+            case NOT -> !child[0].test(t, attribute);
+            default -> matches(t[colOf(attr, attribute)]);
+        }; // switch
+    } // test
+
+    /************************************************************************************
+     * Determine whether the value x satisfies this comparison.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean matches(Comparable x) {
+        if (x == null)
+            return false;
+        switch (op) {
+            case IN:
+                for (Comparable v : value) {
+                    if (x.compareTo(v) == 0)
+                        return true;
+                } // for
+                return false;
+            case BETWEEN:
+                return x.compareTo(value[0]) >= 0 && x.compareTo(value[1]) <= 0;
+            default:
+                int cmp = x.compareTo(value[0]);
+                return switch (op) {
+                    case EQ -> cmp == 0;
+                    case NE -> cmp != 0;
+                    case LT -> cmp < 0;
+                    case LE -> cmp <= 0;
+                    case GT -> cmp > 0;
+                    default -> cmp >= 0;
+                }; // switch
+        } // switch
+    } // matches
+
+    /************************************************************************************
+     * Evaluate the condition over the first n tuples, producing a bitmap.
+     */
+    private long[] eval(String[] attribute, List<Comparable[]> tuples, int n) {
+        switch (op) {
+            case AND:
+                return and(child[0].eval(attribute, tuples, n), child[1].eval(attribute, tuples, n));
+            case OR:
+                return or(child[0].eval(attribute, tuples, n), child[1].eval(attribute, tuples, n));
+            case NOT:
+                return not(child[0].eval(attribute, tuples, n), n);
+            case NE:
+                return not(compare(Op.EQ, attr, value[0]).eval(attribute, tuples, n), n);
+            default:
+                break;
+        } // switch
+
+        int j = colOf(attr, attribute);
+        long[] bits = new long[words(n)];
+
+        if (tuples instanceof ColumnStore) {
+            Column c = ((ColumnStore) tuples).column(j);
+            if (c instanceof IntColumn)
+                evalInts(((IntColumn) c).data(), n, bits);
+            else if (c instanceof LongColumn)
+                evalLongs(((LongColumn) c).data(), n, bits);
+            else if (c instanceof DoubleColumn)
+                evalDoubles(((DoubleColumn) c).data(), n, bits);
+            else
+                evalCodes((DictColumn) c, n, bits);
+        } else {
+            for (int i = 0; i < n; i++)
+                bits[i >>> 6] |= (matches(tuples.get(i)[j]) ? 1L : 0L) << i;
+        } // if
+        return bits;
+    } // eval
+
+    /************************************************************************************
+     * Evaluate this comparison over an int column vector.
+     */
+    private void evalInts(int[] d, int n, long[] bits) {
+        if (op == Op.IN) {
+            int[] vs = new int[value.length];
+            for (int k = 0; k < vs.length; k++)
+                vs[k] = ((Number) value[k]).intValue();
+            Arrays.sort(vs);
+            for (int i = 0; i < n; i++)
+                bits[i >>> 6] |= (Arrays.binarySearch(vs, d[i]) >= 0 ? 1L : 0L) << i;
+            return;
+        } // if
+
+        // every other comparison is a closed range lo <= x <= hi
+        long lo = Long.MIN_VALUE, hi = Long.MAX_VALUE;
+        long v = ((Number) value[0]).longValue();
+        switch (op) {
+            case EQ -> { lo = v; hi = v; }
+            case LT -> hi = v - 1;
+            case LE -> hi = v;
+            case GT -> lo = v + 1;
+            case GE -> lo = v;
+            default -> { lo = v; hi = ((Number) value[1]).longValue(); }
+        } // switch
+        int ilo = (int) Math.max(lo, Integer.MIN_VALUE), ihi = (int) Math.min(hi, Integer.MAX_VALUE);
+        if (lo > Integer.MAX_VALUE || hi < Integer.MIN_VALUE || lo > hi)
+            return;
+        for (int i = 0; i < n; i++)
+            bits[i >>> 6] |= (d[i] >= ilo & d[i] <= ihi ? 1L : 0L) << i;
+    } // evalInts
+
+    /************************************************************************************
+     * Evaluate this comparison over a long column vector.
+     */
+    private void evalLongs(long[] d, int n, long[] bits) {
+        if (op == Op.IN) {
+            long[] vs = new long[value.length];
+            for (int k = 0; k < vs.length; k++)
+                vs[k] = (Long) value[k];
+            Arrays.sort(vs);
+            for (int i = 0; i < n; i++)
+                bits[i >>> 6] |= (Arrays.binarySearch(vs, d[i]) >= 0 ? 1L : 0L) << i;
+            return;
+        } // if
+
+        long lo = Long.MIN_VALUE, hi = Long.MAX_VALUE;
+        long v = (Long) value[0];
+        switch (op) {
+            case EQ -> { lo = v; hi = v; }
+            case LT -> { if (v == Long.MIN_VALUE) return; hi = v - 1; }
+            case LE -> hi = v;
+            case GT -> { if (v == Long.MAX_VALUE) return; lo = v + 1; }
+            case GE -> lo = v;
+            default -> { lo = v; hi = (Long) value[1]; }
+        } // switch
+        for (int i = 0; i < n; i++)
+            bits[i >>> 6] |= (d[i] >= lo & d[i] <= hi ? 1L : 0L) << i;
+    } // evalLongs
+
+    /************************************************************************************
+     * Evaluate this comparison over a double column vector.
+     */
+    private void evalDoubles(double[] d, int n, long[] bits) {
+        if (op == Op.IN) {
+            for (int i = 0; i < n; i++) {
+                boolean hit = false;
+                for (Comparable v : value)
+                    hit |= Double.compare(d[i], ((Number) v).doubleValue()) == 0;
+                bits[i >>> 6] |= (hit ? 1L : 0L) << i;
+            } // for
+            return;
+        } // if
+
+        // compare as Double.compare does (-0.0 below 0.0, NaN above +Infinity), like
+        // the row path: a row is in range when compare (d, lo) > loOff and
+        // compare (d, hi) < hiOff, the offsets making each bound strict or not
+        double lo = Double.NEGATIVE_INFINITY, hi = Double.NaN;
+        int loOff = -1, hiOff = 1;
+        double v = ((Number) value[0]).doubleValue();
+        switch (op) {
+            case EQ -> { lo = v; hi = v; }
+            case LT -> { hi = v; hiOff = 0; }
+            case LE -> hi = v;
+            case GT -> { lo = v; loOff = 0; }
+            case GE -> lo = v;
+            default -> { lo = v; hi = ((Number) value[1]).doubleValue(); }
+        } // switch
+        for (int i = 0; i < n; i++)
+            bits[i >>> 6] |= (Double.compare(d[i], lo) > loOff & Double.compare(d[i], hi) < hiOff ? 1L : 0L) << i;
+    } // evalDoubles
+
+    /************************************************************************************
+     * Evaluate this comparison over a dictionary-encoded column: the comparison is
+     * made once per distinct value and the rows then just look up their code.
+     */
+    private void evalCodes(DictColumn c, int n, long[] bits) {
+        boolean[] hit = new boolean[c.cardinality()];
+        for (int k = 0; k < hit.length; k++)
+            hit[k] = matches(c.decode(k));
+        int[] code = c.codes();
+        for (int i = 0; i < n; i++)
+            bits[i >>> 6] |= (hit[code[i]] ? 1L : 0L) << i;
+    } // evalCodes
+
+    // ----------------------------------------------------------------------------------
+    // Bitmap helpers
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return the number of 64-bit words needed for a bitmap of n bits.
+     *
+     * @param n the number of bits
+     * @return the number of words
+     */
+    static int words(int n) {
+        return (n + 63) >>> 6;
+    } // words
+
+    /************************************************************************************
+     * Intersect bitmap b into bitmap a.
+     *
+     * @return a
+     */
+    static long[] and(long[] a, long[] b) {
+        for (int w = 0; w < a.length; w++)
+            a[w] &= b[w];
+        return a;
+    } // and
+
+    /************************************************************************************
+     * Unite bitmap b into bitmap a.
+     *
+     * @return a
+     */
+    static long[] or(long[] a, long[] b) {
+        for (int w = 0; w < a.length; w++)
+            a[w] |= b[w];
+        return a;
+    } // or
+
+    /************************************************************************************
+     * Complement the first n bits of bitmap a (bits past n stay clear).
+     *
+     * @return a
+     */
+    static long[] not(long[] a, int n) {
+        for (int w = 0; w < a.length; w++)
+            a[w] = ~a[w];
+        if ((n & 63) != 0)
+            a[a.length - 1] &= (1L << n) - 1;
+        return a;
+    } // not
+
+    /************************************************************************************
+     * Return the column position of the attribute.
+     */
+    private static int colOf(String attr, String[] attribute) {
+        for (int j = 0; j < attribute.length; j++) {
+            if (attribute[j].equals(attr))
+                return j;
+        } // for
+        throw new IllegalArgumentException("Condition: unknown attribute " + attr);
+    } // colOf
+
+} // Condition class
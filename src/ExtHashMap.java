@@ -0,0 +1,428 @@
+package src;
+
+/************************************************************************************
+ * @file ExtHashMap.java
+ */
+
+import java.io.*;
+import java.lang.reflect.Array;
+import static java.lang.System.out;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/************************************************************************************
+ * This class provides hash maps that use the Extendible Hashing algorithm.
+ * A directory of 2^globalDepth entries refers to buckets; a bucket with local
+ * depth d is shared by all directory entries that agree on the low d hash bits.
+ * A full bucket is split in two (doubling the directory when its local depth
+ * reaches the global depth), so a lookup usually reads exactly one bucket. Keys
+ * whose hashes agree on the next few bits cannot be separated by splitting, so
+ * their bucket chains overflow buckets instead of growing the directory.
+ */
+public class ExtHashMap<K, V>
+        extends AbstractMap<K, V>
+        implements Serializable, Cloneable {
+
+    /**
+     * The number of slots (for key-value pairs) per bucket.
+     */
+    private static final int SLOTS = 4;
+
+    /**
+     * The maximum depth of the directory. Buckets that cannot be split further
+     * (their keys share every hash bit) chain overflow buckets instead.
+     */
+    private static final int MAX_DEPTH = 24;
+
+    /**
+     * The number of hash bits past a bucket's local depth on which some of its keys
+     * must differ for a split to be worthwhile. Keys colliding on all of them would
+     * otherwise double the directory on every split, up to 2^MAX_DEPTH entries.
+     */
+    private static final int SPLIT_BITS = 2;
+
+    /**
+     * The class for type K.
+     */
+    private final Class<K> classK;
+
+    /**
+     * The class for type V.
+     */
+    private final Class<V> classV;
+
+    /********************************************************************************
+     * This inner class defines buckets that are referenced by the directory.
+     */
+    private class Bucket
+            implements Serializable {
+
+        // number of keys in the bucket
+        int nKeys;
+
+        // number of low hash bits shared by all keys in the bucket
+        int localDepth;
+
+        // arrays to store keys and their values
+        K[] key;
+        V[] value;
+
+        // overflow bucket (only used for keys that splitting cannot separate)
+        Bucket next;
+
+        @SuppressWarnings("unchecked")
+        Bucket(int _localDepth) {
+            nKeys = 0;
+            localDepth = _localDepth;
+            key = (K[]) Array.newInstance(classK, SLOTS);
+            value = (V[]) Array.newInstance(classV, SLOTS);
+        } // constructor
+
+        // position of key k in this bucket, -1 if absent
+        int find(Object k) {
+            for (var j = 0; j < nKeys; j++) {
+                if (key[j].equals(k))
+                    return j;
+            } // for
+            return -1;
+        } // find
+
+        // add a key-value pair to the bucket
+        void add(K k, V v) {
+            key[nKeys] = k;
+            value[nKeys] = v;
+            nKeys++;
+        } // add
+
+        // remove the pair at position j, moving the last pair into its slot
+        void removeAt(int j) {
+            nKeys--;
+            key[j] = key[nKeys];
+            value[j] = value[nKeys];
+            key[nKeys] = null;
+            value[nKeys] = null;
+        } // removeAt
+
+    } // Bucket inner class
+
+    /**
+     * The directory of buckets (its size is always 2^globalDepth).
+     */
+    private final List<Bucket> dir;
+
+    /**
+     * The number of low hash bits used to index the directory.
+     */
+    private int globalDepth;
+
+    /**
+     * Counter for the number buckets accessed (for performance testing), an adder
+     * since lookups may run concurrently.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The number of keys in the map.
+     */
+    private int keyCount = 0;
+
+    /********************************************************************************
+     * Construct a hash table that uses Extendible Hashing.
+     *
+     * @param _classK the class for keys (K)
+     * @param _classV the class for values (V)
+     */
+    public ExtHashMap(Class<K> _classK, Class<V> _classV) {
+        classK = _classK;
+        classV = _classV;
+        globalDepth = 1;
+        dir = new ArrayList<>();
+        for (var i = 0; i < 2; i++)
+            dir.add(new Bucket(1));
+    } // constructor
+
+    /********************************************************************************
+     * Return a set containing all the entries as pairs of keys and values.
+     *
+     * @return the set view of the map
+     */
+    public Set<Map.Entry<K, V>> entrySet() {
+        var enSet = new HashSet<Map.Entry<K, V>>();
+
+        // a bucket is visited from the lowest directory entry referring to it
+        for (var i = 0; i < dir.size(); i++) {
+            var b = dir.get(i);
+            if (i >= (1 << b.localDepth))
+                continue;
+            for (; b != null; b = b.next) {
+                for (var j = 0; j < b.nKeys; j++)
+                    enSet.add(new AbstractMap.SimpleEntry<>(b.key[j], b.value[j]));
+            } // for
+        } // for
+
+        return enSet;
+    } // entrySet
+
+    /********************************************************************************
+     * Given the key, look up the value in the hash table.
+     *
+     * @param key the key used for look up
+     * @return the value associated with the key
+     */
+    public V get(Object key) {
+        for (var b = dir.get(h(key)); b != null; b = b.next) {
+            count.increment();
+            int j = b.find(key);
+            if (j >= 0)
+                return b.value[j];
+        } // for
+        return null;
+    } // get
+
+    /********************************************************************************
+     * Determine whether the hash table contains the given key (without scanning
+     * the entry set, as AbstractMap would).
+     *
+     * @param key the key to look for
+     * @return whether the key is present
+     */
+    public boolean containsKey(Object key) {
+        for (var b = dir.get(h(key)); b != null; b = b.next) {
+            count.increment();
+            if (b.find(key) >= 0)
+                return true;
+        } // for
+        return false;
+    } // containsKey
+
+    /********************************************************************************
+     * Put the key-value pair in the hash table, replacing the value of an existing
+     * key. Split the home bucket when it is full.
+     *
+     * @param key   the key to insert
+     * @param value the value to insert
+     * @return the old/previous value, null if none
+     */
+    public V put(K key, V value) {
+        if (key == null)
+            throw new NullPointerException("ExtHashMap.put: null key");
+
+        while (true) {
+            var home = dir.get(h(key));
+
+            // replace the value of an existing key
+            for (var b = home; b != null; b = b.next) {
+                int j = b.find(key);
+                if (j >= 0) {
+                    V old = b.value[j];
+                    b.value[j] = value;
+                    return old;
+                } // if
+            } // for
+
+            if (home.nKeys < SLOTS) {
+                home.add(key, value);
+                keyCount++;
+                return null;
+            } // if
+
+            if (home.localDepth >= MAX_DEPTH || !worthSplitting(home, key)) {
+                append(home, key, value);
+                keyCount++;
+                return null;
+            } // if
+
+            split(home);
+        } // while
+    } // put
+
+    /********************************************************************************
+     * Remove the key (and its value) from the hash table. Buckets are not merged.
+     *
+     * @param key the key to remove
+     * @return the value that was associated with the key, null if none
+     */
+    public V remove(Object key) {
+        var home = dir.get(h(key));
+        for (var b = home; b != null; b = b.next) {
+            int j = b.find(key);
+            if (j >= 0) {
+                V old = b.value[j];
+                // fill the hole with the last pair of the chain to keep it dense
+                var last = b;
+                while (last.next != null && last.next.nKeys > 0)
+                    last = last.next;
+                b.key[j] = last.key[last.nKeys - 1];
+                b.value[j] = last.value[last.nKeys - 1];
+                last.removeAt(last.nKeys - 1);
+                keyCount--;
+                return old;
+            } // if
+        } // for
+        return null;
+    } // remove
+
+    /********************************************************************************
+     * Remove all the entries from the hash table, returning it to its initial size.
+     * (The entry set is a copy, so the clear inherited from AbstractMap would not.)
+     */
+    public void clear() {
+        globalDepth = 1;
+        keyCount = 0;
+        dir.clear();
+        for (var i = 0; i < 2; i++)
+            dir.add(new Bucket(1));
+    } // clear
+
+    /********************************************************************************
+     * Return the number of keys in the hash table.
+     *
+     * @return the number of key-value pairs
+     */
+    public int size() {
+        return keyCount;
+    } // size
+
+    /********************************************************************************
+     * Print the directory and the buckets it refers to.
+     */
+    public void print() {
+        out.println("ExtHashMap (global depth " + globalDepth + ")");
+        out.println("-------------------------------------------");
+        for (var i = 0; i < dir.size(); i++) {
+            out.print("Dir [ " + i + " ] = ");
+            for (var b = dir.get(i); b != null; b = b.next) {
+                out.print("(d = " + b.localDepth + ") [ ");
+                for (var j = 0; j < b.nKeys; j++)
+                    out.print(b.key[j] + " | ");
+                out.print("] ");
+            } // for
+            out.println();
+        } // for
+        out.println("-------------------------------------------");
+    } // print
+
+    /********************************************************************************
+     * Determine whether splitting a full bucket chain would make room for the key:
+     * whether the keys of the chain and the new key differ on any of the next
+     * SPLIT_BITS hash bits.
+     *
+     * @param home the home bucket of the full chain
+     * @param key  the key to insert
+     * @return whether to split the chain (otherwise it overflows)
+     */
+    private boolean worthSplitting(Bucket home, K key) {
+        int mask = (int) ((1L << Math.min(MAX_DEPTH, home.localDepth + SPLIT_BITS)) - 1);
+        int h = hash(key) & mask;
+        for (var b = home; b != null; b = b.next) {
+            for (var j = 0; j < b.nKeys; j++) {
+                if ((hash(b.key[j]) & mask) != h)
+                    return true;
+            } // for
+        } // for
+        return false;
+    } // worthSplitting
+
+    /********************************************************************************
+     * Add a key-value pair to the first bucket of the chain with a free slot,
+     * adding an overflow bucket when every bucket is full.
+     *
+     * @param home  the home bucket of the chain
+     * @param key   the key to add
+     * @param value the value to add
+     */
+    private void append(Bucket home, K key, V value) {
+        var b = home;
+        while (b.nKeys == SLOTS && b.next != null)
+            b = b.next;
+        if (b.nKeys == SLOTS)
+            b = b.next = new Bucket(home.localDepth);
+        b.add(key, value);
+    } // append
+
+    /********************************************************************************
+     * Split the given full bucket chain on its next hash bit, doubling the directory
+     * first if the bucket's local depth equals the global depth. Only the directory
+     * entries referring to the bucket are visited.
+     *
+     * @param b the home bucket of the chain to split
+     */
+    private void split(Bucket b) {
+        if (b.localDepth == globalDepth) {
+            dir.addAll(new ArrayList<>(dir));
+            globalDepth++;
+        } // if
+
+        int bit = 1 << b.localDepth;
+        int low = hash(b.key[0]) & (bit - 1); // the hash bits shared by the chain's keys
+        b.localDepth++;
+        var nb = new Bucket(b.localDepth);
+
+        // move the keys with the new bit set into the new bucket
+        for (var j = 0; j < b.nKeys;) {
+            if ((hash(b.key[j]) & bit) != 0) {
+                nb.add(b.key[j], b.value[j]);
+                b.removeAt(j);
+            } else {
+                j++;
+            } // if
+        } // for
+
+        // deal out the keys of any overflow buckets as well
+        var over = b.next;
+        b.next = null;
+        for (; over != null; over = over.next) {
+            for (var j = 0; j < over.nKeys; j++)
+                append(((hash(over.key[j]) & bit) != 0) ? nb : b, over.key[j], over.value[j]);
+        } // for
+
+        // redirect the directory entries that now belong to the new bucket: those
+        // agreeing with b on its old bits and having the new bit set
+        for (var i = low | bit; i < dir.size(); i += 1 << b.localDepth)
+            dir.set(i, nb);
+    } // split
+
+    /********************************************************************************
+     * Spread the key's hash code so that its low bits depend on all of its bits.
+     *
+     * @param key the key to hash
+     * @return the spread hash value
+     */
+    private static int hash(Object key) {
+        int hc = key.hashCode();
+        return hc ^ (hc >>> 16);
+    } // hash
+
+    /********************************************************************************
+     * Hash the key to its directory entry using the low globalDepth bits.
+     *
+     * @param key the key to hash
+     * @return the directory position of the key's bucket
+     */
+    private int h(Object key) {
+        return hash(key) & ((1 << globalDepth) - 1);
+    } // h
+
+    /********************************************************************************
+     * The main method used for testing.
+     *
+     * @param the command-line arguments (args [0] gives number of keys to insert)
+     */
+    public static void main(String[] args) {
+        var totalKeys = (args.length == 1) ? Integer.valueOf(args[0]) : 40;
+
+        ExtHashMap<Integer, Integer> ht = new ExtHashMap<>(Integer.class, Integer.class);
+        for (var i = 1; i <= totalKeys; i += 2) {
+            ht.put(i, i * i);
+        } // for
+
+        ht.print();
+        for (var i = 0; i <= totalKeys; i++) {
+            out.println("key = " + i + " value = " + ht.get(i));
+        } // for
+        out.println("-------------------------------------------");
+        out.println("size = " + ht.size());
+        out.println("Average number of buckets accessed = " + ht.count.sum() / (double) (totalKeys + 1));
+    } // main
+
+} // ExtHashMap class
@@ -9,6 +9,7 @@ package src;
  */
 
 import java.io.Serializable;
+import java.util.Objects;
 
 import static java.lang.System.out;
 
@@ -17,14 +18,24 @@ import static java.lang.System.out;
  * composite keys.
  * A key is a minimal set of attributes that can be used to uniquely identify a
  * tuple.
+ * The hash code is computed once, when the key is made. Single Integer and Long keys
+ * made with the factory method have specialized forms holding the primitive value,
+ * which compare and test equality without boxing; all forms of equal keys are equal
+ * and hash alike, so keys made either way can be used for the same index.
  */
 public class KeyType
         implements Comparable<KeyType>, Serializable {
     /**
-     * Array holding the attribute values for a particular key
+     * Array holding the attribute values for a particular key (null in the
+     * specialized forms)
      */
     private final Comparable[] key;
 
+    /**
+     * The hash code of the key
+     */
+    private final int hash;
+
     /*************************************************************************************
      * Construct an instance of KeyType from a Comparable array.
      * 
@@ -32,6 +43,10 @@ public class KeyType
      */
     public KeyType(Comparable[] _key) {
         key = _key;
+        int sum = 0;
+        for (int i = 0; i < key.length; i++)
+            sum = 7 * sum + Objects.hashCode(key[i]);
+        hash = sum;
     } // constructor
 
     /*************************************************************************************
@@ -40,12 +55,75 @@ public class KeyType
      * @param _key the primary key
      */
     public KeyType(Comparable key0, Comparable... keys) {
-        key = new Comparable[keys.length + 1];
-        key[0] = key0;
-        for (int i = 1; i < key.length; i++)
-            key[i] = keys[i - 1];
+        this(prepend(key0, keys));
     } // constructor
 
+    /*************************************************************************************
+     * Construct a specialized key with the given hash code.
+     * 
+     * @param _hash the hash code of the key
+     */
+    private KeyType(int _hash) {
+        key = null;
+        hash = _hash;
+    } // constructor
+
+    /*************************************************************************************
+     * Make a key of the given values, in a specialized form for a single Integer or
+     * Long value.
+     * 
+     * @param vals the attribute values of the key
+     * @return the key
+     */
+    public static KeyType of(Comparable... vals) {
+        if (vals.length == 1) {
+            if (vals[0] instanceof Integer)
+                return new IntKey((Integer) vals[0]);
+            if (vals[0] instanceof Long)
+                return new LongKey((Long) vals[0]);
+        } // if
+        return new KeyType(vals);
+    } // of
+
+    /*************************************************************************************
+     * Make a key of a single int value.
+     * 
+     * @param v the value
+     * @return the key
+     */
+    public static KeyType of(int v) {
+        return new IntKey(v);
+    } // of
+
+    /*************************************************************************************
+     * Make a key of a single long value.
+     * 
+     * @param v the value
+     * @return the key
+     */
+    public static KeyType of(long v) {
+        return new LongKey(v);
+    } // of
+
+    /*************************************************************************************
+     * Return the number of attribute values in the key.
+     * 
+     * @return the arity of the key
+     */
+    public int size() {
+        return key.length;
+    } // size
+
+    /*************************************************************************************
+     * Return the i-th attribute value of the key.
+     * 
+     * @param i the position of the value
+     * @return the value
+     */
+    public Comparable get(int i) {
+        return key[i];
+    } // get
+
     /*************************************************************************************
      * Compare two keys (negative => less than, zero => equals, positive => greater
      * than).
@@ -55,13 +133,13 @@ public class KeyType
      */
     @SuppressWarnings("unchecked")
     public int compareTo(KeyType k) {
-        for (int i = 0; i < key.length; i++) {
-            if (key[i].compareTo(k.key[i]) < 0)
-                return -1;
-            if (key[i].compareTo(k.key[i]) > 0)
-                return 1;
+        int n = Math.min(size(), k.size());
+        for (int i = 0; i < n; i++) {
+            int cmp = get(i).compareTo(k.get(i));
+            if (cmp != 0)
+                return cmp;
         } // for
-        return 0;
+        return Integer.compare(size(), k.size());
     } // compareTo
 
     /*************************************************************************************
@@ -71,20 +149,17 @@ public class KeyType
      * @return true if equal, false otherwise
      */
     public boolean equals(Object k) {
-        return compareTo((KeyType) k) == 0;
+        return k instanceof KeyType && hash == ((KeyType) k).hash && compareTo((KeyType) k) == 0;
     } // equals
 
     /*************************************************************************************
-     * Compute a hash code for this object (equal objects should produce the same
-     * hash code).
+     * Return the hash code for this object, computed when the key was made (equal
+     * objects produce the same hash code).
      * 
      * @return an integer hash code value
      */
     public int hashCode() {
-        int sum = 0;
-        for (int i = 0; i < key.length; i++)
-            sum = 7 * sum + key[i].hashCode();
-        return sum;
+        return hash;
     } // hashCode
 
     /*************************************************************************************
@@ -94,11 +169,86 @@ public class KeyType
      */
     public String toString() {
         String s = "Key (";
-        for (int i = 0; i < key.length; i++)
-            s += " " + key[i];
+        for (int i = 0; i < size(); i++)
+            s += " " + get(i);
         return s + (" )");
     } // toString
 
+    /*************************************************************************************
+     * Return the values of the varargs constructor as one array.
+     */
+    private static Comparable[] prepend(Comparable key0, Comparable[] keys) {
+        Comparable[] key = new Comparable[keys.length + 1];
+        key[0] = key0;
+        for (int i = 1; i < key.length; i++)
+            key[i] = keys[i - 1];
+        return key;
+    } // prepend
+
+    /*************************************************************************************
+     * A key of a single Integer value, held as an int.
+     */
+    private static final class IntKey
+            extends KeyType {
+
+        private final int v;
+
+        IntKey(int _v) {
+            super(Integer.hashCode(_v));
+            v = _v;
+        } // constructor
+
+        public int size() {
+            return 1;
+        } // size
+
+        public Comparable get(int i) {
+            Objects.checkIndex(i, 1);
+            return v;
+        } // get
+
+        public int compareTo(KeyType k) {
+            return (k instanceof IntKey) ? Integer.compare(v, ((IntKey) k).v) : super.compareTo(k);
+        } // compareTo
+
+        public boolean equals(Object k) {
+            return (k instanceof IntKey) ? v == ((IntKey) k).v : super.equals(k);
+        } // equals
+
+    } // IntKey class
+
+    /*************************************************************************************
+     * A key of a single Long value, held as a long.
+     */
+    private static final class LongKey
+            extends KeyType {
+
+        private final long v;
+
+        LongKey(long _v) {
+            super(Long.hashCode(_v));
+            v = _v;
+        } // constructor
+
+        public int size() {
+            return 1;
+        } // size
+
+        public Comparable get(int i) {
+            Objects.checkIndex(i, 1);
+            return v;
+        } // get
+
+        public int compareTo(KeyType k) {
+            return (k instanceof LongKey) ? Long.compare(v, ((LongKey) k).v) : super.compareTo(k);
+        } // compareTo
+
+        public boolean equals(Object k) {
+            return (k instanceof LongKey) ? v == ((LongKey) k).v : super.equals(k);
+        } // equals
+
+    } // LongKey class
+
     /*************************************************************************************
      * The main method is used for testing purposes only.
      * 
@@ -9,31 +9,36 @@ package src;
 import java.io.*;
 import java.lang.reflect.Array;
 import static java.lang.System.out;
+import static src.Trace.Channel.INDEX;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /************************************************************************************
  * This class provides hash maps that use the Linear Hashing algorithm.
  * A hash table is created that is an expandable array-list of buckets.
+ * Each home bucket heads a chain of overflow buckets. Whenever the load factor
+ * exceeds THRESHOLD, the chain at 'isplit' is split: its keys are redistributed
+ * between itself and a new chain appended at the end of the hash table.
  */
 public class LinHashMap<K, V>
         extends AbstractMap<K, V>
         implements Serializable, Cloneable {
 
-    /**
-     * The debug flag
-     */
-    private static final boolean DEBUG = true;
-
     /**
      * The number of slots (for key-value pairs) per bucket.
      */
     private static final int SLOTS = 4;
 
     /**
-     * The threshold/upper bound on the ok so i factor
+     * The threshold/upper bound on the load factor (keys per slot)
      */
     private static final double THRESHOLD = 1.2;
 
+    /**
+     * The initial number of home buckets.
+     */
+    private static final int INIT_SIZE = 4;
+
     /**
      * The class for type K.
      */
@@ -47,7 +52,8 @@ public class LinHashMap<K, V>
     /********************************************************************************
      * This inner class defines buckets that are stored in the hash table.
      */
-    private class Bucket {
+    private class Bucket
+            implements Serializable {
 
         // number of keys in the bucket
         int nKeys;
@@ -79,8 +85,8 @@ public class LinHashMap<K, V>
 
         } // constructor
 
-        // used to search for a value corresponding to a given key('K')
-        V find(K k) {
+        // used to search for the position of a given key('K'), -1 if absent
+        int find(Object k) {
 
             // loop through the keys in the bucket
             for (var j = 0; j < nKeys; j++) {
@@ -88,15 +94,15 @@ public class LinHashMap<K, V>
                 // check if the current key matches the target key
                 if (key[j].equals(k)) {
 
-                    // return the corresponding value if a match is found
-                    return value[j];
+                    // return the position if a match is found
+                    return j;
 
                 } // if
 
             } // for
 
-            // return null if the key is not found in the bucket
-            return null;
+            // return -1 if the key is not found in the bucket
+            return -1;
 
         } // find
 
@@ -114,6 +120,18 @@ public class LinHashMap<K, V>
 
         } // add
 
+        // remove and return the last key-value pair of the bucket
+        void removeLast() {
+
+            // decrement the number of keys in the bucket
+            nKeys--;
+
+            // clear the freed slot so the key and value can be collected
+            key[nKeys] = null;
+            value[nKeys] = null;
+
+        } // removeLast
+
         // print the keys in the bucket
         void print() {
 
@@ -154,9 +172,20 @@ public class LinHashMap<K, V>
     private int isplit = 0;
 
     /**
-     * Counter for the number buckets accessed (for performance testing).
+     * Counter for the number buckets accessed (for performance testing). Lookups may
+     * run concurrently (e.g., parallel index joins), so the counters are adders.
      */
-    private int count = 0;
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Counter for the number of lookups ('get' and 'containsKey' calls).
+     */
+    private final LongAdder lookups = new LongAdder();
+
+    /**
+     * Counter for the number of splits performed.
+     */
+    private long splits = 0;
 
     /**
      * The counter for the total number of keys in the LinHash Map
@@ -178,7 +207,7 @@ public class LinHashMap<K, V>
         classV = _classV;
 
         // initial size of hash table (mod1)
-        mod1 = 4;
+        mod1 = INIT_SIZE;
 
         // secondary size of the hash table (mod2)
         mod2 = 2 * mod1;
@@ -202,19 +231,21 @@ public class LinHashMap<K, V>
     public Set<Map.Entry<K, V>> entrySet() {
 
         // create a new HashSet to store the entries
-        var enSet = new HashSet<Map.Entry<K, V>>();
+        var enSet = new HashSet<Map.Entry<K, V>>(Math.max(16, (int) (keyCount / 0.75f) + 1));
 
-        // iterate over the buckets in the hash table
-        for (var bucket : hTable) {
+        // iterate over the bucket chains in the hash table
+        for (var home : hTable) {
 
-            // iterate over the keys in each bucket
-            for (int j = 0; j < bucket.nKeys; j++) {
+            // iterate over the buckets in each chain, including overflow buckets
+            for (var bucket = home; bucket != null; bucket = bucket.next) {
 
-                // create a new Map.Entry for each key-value pair and add it to the set
-                Map.Entry<K, V> entry = new AbstractMap.SimpleEntry<>(bucket.key[j], bucket.value[j]);
+                // iterate over the keys in each bucket
+                for (int j = 0; j < bucket.nKeys; j++) {
 
-                // add the entry (key-value pair) to the set of entries.
-                enSet.add(entry);
+                    // add the entry (key-value pair) to the set of entries.
+                    enSet.add(new AbstractMap.SimpleEntry<>(bucket.key[j], bucket.value[j]));
+
+                } // for
 
             } // for
 
@@ -231,22 +262,62 @@ public class LinHashMap<K, V>
      * @param key the key used for look up
      * @return the value associated with the key
      */
-    @SuppressWarnings("unchecked")
-
-    // retrieve the value associated with the specified key
     public V get(Object key) {
 
-        // calculate the hash value for the key
-        var i = h(key);
+        // count the lookup
+        lookups.increment();
+
+        // walk the bucket chain the key hashes to
+        for (var b = hTable.get(bucketOf(key)); b != null; b = b.next) {
 
-        // find the key in the hash table and return its associated value
-        return find((K) key, hTable.get(i), true);
+            // count the bucket access (for performance monitoring)
+            count.increment();
+
+            // return the value if the key is in the current bucket
+            var j = b.find(key);
+            if (j >= 0) {
+                return b.value[j];
+            } // if
+
+        } // for
+
+        // return null if the key is not found in any bucket in the chain
+        return null;
 
     } // get
 
     /********************************************************************************
-     * Put the key-value pair in the hash table. Split the 'isplit' bucket chain
-     * when the load factor is exceeded.
+     * Determine whether the hash table contains the given key (without scanning
+     * the entry set, as AbstractMap would).
+     * 
+     * @param key the key to look for
+     * @return whether the key is present
+     */
+    public boolean containsKey(Object key) {
+
+        // count the lookup
+        lookups.increment();
+
+        // walk the bucket chain the key hashes to
+        for (var b = hTable.get(bucketOf(key)); b != null; b = b.next) {
+
+            // count the bucket access (for performance monitoring)
+            count.increment();
+
+            if (b.find(key) >= 0) {
+                return true;
+            } // if
+
+        } // for
+
+        return false;
+
+    } // containsKey
+
+    /********************************************************************************
+     * Put the key-value pair in the hash table. The value of an existing key is
+     * replaced in place. Split the 'isplit' bucket chain when the load factor is
+     * exceeded.
      * 
      * @param key   the key to insert
      * @param value the value to insert
@@ -254,71 +325,119 @@ public class LinHashMap<K, V>
      */
     public V put(K key, V value) {
 
-        // increment total key count
-        keyCount++;
-
-        // calculate the current load factor
-        var loadFactor = loadFactor();
-
-        // if the load factor exceeds the threshold, split the bucket chain
-        if (loadFactor > THRESHOLD) {
-            split();
+        // null keys cannot be hashed
+        if (key == null) {
+            throw new NullPointerException("LinHashMap.put: null key");
         } // if
 
         // find the index of the bucket chain to insert the key-value pair
-        var index = findRightBucket(key);
+        var index = bucketOf(key);
 
-        // retrieve the home bucket where the key-value pair should be inserted
-        var homeBucket = hTable.get(index);
+        // trace the put operation
+        if (Trace.on(INDEX)) {
+            Trace.log(INDEX, "LinearHashMap.put: key = " + key + ", h() = " + index + ", value = " + value);
+        } // if
 
-        // find the old value associated with the key, if any
-        var oldValue = find(key, homeBucket, false);
+        // replace the value if the key is already in the chain
+        var last = hTable.get(index);
+        for (var b = last; b != null; last = b, b = b.next) {
+            var j = b.find(key);
+            if (j >= 0) {
+                V oldValue = b.value[j];
+                b.value[j] = value;
+                return oldValue;
+            } // if
+        } // for
 
-        // print debug information about the put operation
-        out.println("LinearHashMap.put: key = " + key + ", h() = " + index + ", value = " + value);
+        // add to the last bucket of the chain, or to a new overflow bucket if full
+        if (last.nKeys == SLOTS) {
+            last.next = new Bucket();
+            last = last.next;
+        } // if
+        last.add(key, value);
 
-        // start with the home bucket as the current bucket
-        var currentBucket = homeBucket;
+        // increment total key count
+        keyCount++;
 
-        // loop until a bucket with available slots is found
-        while (true) {
+        // if the load factor exceeds the threshold, split the bucket chain
+        if (loadFactor() > THRESHOLD) {
+            split();
+        } // if
+
+        // there was no old value
+        return null;
 
-            // if the current bucket has available slots
-            if (currentBucket.nKeys < SLOTS) {
+    } // put
 
-                // add the key-value pair
-                currentBucket.add(key, value);
+    /********************************************************************************
+     * Remove the key (and its value) from the hash table. The hole is filled with
+     * the last key-value pair of the chain so buckets stay densely packed, and an
+     * emptied overflow bucket is unlinked.
+     * 
+     * @param key the key to remove
+     * @return the value that was associated with the key, null if none
+     */
+    public V remove(Object key) {
+
+        // walk the bucket chain the key hashes to
+        var home = hTable.get(bucketOf(key));
+        for (var b = home; b != null; b = b.next) {
+
+            var j = b.find(key);
+            if (j >= 0) {
+
+                // keep the old value to return it
+                V oldValue = b.value[j];
+
+                // locate the last bucket of the chain (and its predecessor)
+                Bucket prev = null;
+                var last = home;
+                while (last.next != null) {
+                    prev = last;
+                    last = last.next;
+                } // while
+
+                // move the chain's last pair into the hole
+                b.key[j] = last.key[last.nKeys - 1];
+                b.value[j] = last.value[last.nKeys - 1];
+                last.removeLast();
+
+                // unlink an emptied overflow bucket
+                if (last.nKeys == 0 && prev != null) {
+                    prev.next = null;
+                } // if
 
-                // return the old value
+                // decrement total key count
+                keyCount--;
                 return oldValue;
 
             } // if
 
-            // if the current bucket is full and has a next bucket in the chain
-            if (currentBucket.next != null) {
-                // move to the next bucket
-                currentBucket = currentBucket.next;
-            } // if
+        } // for
 
-            else {
-                // if the current bucket is the last in the chain, break
-                break;
-            } // else
+        // the key was not present
+        return null;
 
-        } // while
+    } // remove
 
-        // if no available slots were found
-        // create a new bucket
-        var newBucket = new Bucket();
+    /********************************************************************************
+     * Remove all the entries from the hash table, returning it to its initial size.
+     */
+    public void clear() {
 
-        // add it to the end of the chain
-        newBucket.add(key, value);
-        currentBucket.next = newBucket;
+        // reset the hash functions and split pointer
+        mod1 = INIT_SIZE;
+        mod2 = 2 * mod1;
+        isplit = 0;
+        keyCount = 0;
 
-        // return the old value associated wit the key, if any
-        return oldValue;
+        // start over with empty home buckets
+        hTable.clear();
+        for (var i = 0; i < mod1; i++) {
+            hTable.add(new Bucket());
+        } // for
 
-    } // put
+    } // clear
 
     /********************************************************************************
      * Print the hash table.
@@ -358,41 +477,183 @@ public class LinHashMap<K, V>
     } // print
 
     /********************************************************************************
-     * Return the size (SLOTS * number of home buckets) of the hash table.
+     * Return the size (number of key-value pairs) of the hash table.
      * 
      * @return the size of the hash table
      */
     public int size() {
-        return SLOTS * (mod1 + isplit);
+        return keyCount;
     } // size
 
     /********************************************************************************
-     * Split bucket chain 'isplit' by creating a new bucket chain at the end of the
-     * hash table and redistributing the keys according to the high resolution hash
-     * function 'h2'. Increment 'isplit'. If current split phase is complete,
-     * reset 'isplit' to zero, and update the hash functions.
+     * Return the number of home buckets (bucket chains) in the hash table.
+     * 
+     * @return the number of home buckets
      */
-    public void split() {
+    public int buckets() {
+        return hTable.size();
+    } // buckets
 
-        // create a new bucket chain at the end of the hash table
-        hTable.add(new Bucket());
+    /********************************************************************************
+     * Return the average number of buckets accessed per 'get' so far.
+     * 
+     * @param gets the number of 'get' calls made
+     * @return the average number of buckets accessed
+     */
+    public double avgBucketsAccessed(long gets) {
+        return (gets == 0) ? 0.0 : count.sum() / (double) gets;
+    } // avgBucketsAccessed
+
+    /********************************************************************************
+     * Return the average number of buckets accessed per lookup ('get' or
+     * 'containsKey') since the counters were last reset. A value well above one
+     * means long overflow chains, e.g., from a poor hash function or skewed keys.
+     * 
+     * @return the average number of buckets accessed
+     */
+    public double avgBucketsAccessed() {
+        return avgBucketsAccessed(lookups.sum());
+    } // avgBucketsAccessed
 
-        // redistribute the keys according to the high resolution hash function h2
-        for (int i = 0; i < hTable.get(isplit).nKeys; i++) {
+    /********************************************************************************
+     * Return the number of lookups ('get' and 'containsKey' calls) since the
+     * counters were last reset.
+     * 
+     * @return the number of lookups
+     */
+    public long lookups() {
+        return lookups.sum();
+    } // lookups
 
-            K k = hTable.get(isplit).key[i];
-            V v = hTable.get(isplit).value[i];
+    /********************************************************************************
+     * Return the number of buckets accessed by lookups since the counters were last
+     * reset.
+     * 
+     * @return the number of buckets accessed
+     */
+    public long bucketsAccessed() {
+        return count.sum();
+    } // bucketsAccessed
+
+    /********************************************************************************
+     * Return the number of splits performed since the counters were last reset.
+     * 
+     * @return the number of splits
+     */
+    public long splits() {
+        return splits;
+    } // splits
+
+    /********************************************************************************
+     * Reset the lookup and split counters (e.g., at the start of a monitoring
+     * interval).
+     */
+    public void resetCounters() {
+        count.reset();
+        lookups.reset();
+        splits = 0;
+    } // resetCounters
+
+    /********************************************************************************
+     * Return the number of overflow buckets (buckets beyond the home buckets).
+     * 
+     * @return the number of overflow buckets
+     */
+    public int overflowBuckets() {
+
+        // count the buckets after the home bucket of each chain
+        var n = 0;
+        for (var home : hTable) {
+            for (var b = home.next; b != null; b = b.next) {
+                n++;
+            } // for
+        } // for
+        return n;
+
+    } // overflowBuckets
+
+    /********************************************************************************
+     * Return the average length of the bucket chains (home plus overflow buckets).
+     * 
+     * @return the average number of buckets per chain
+     */
+    public double avgChainLength() {
+        return (hTable.size() + overflowBuckets()) / (double) hTable.size();
+    } // avgChainLength
+
+    /********************************************************************************
+     * Return the length of the longest bucket chain.
+     * 
+     * @return the largest number of buckets in a chain
+     */
+    public int maxChainLength() {
+
+        // walk every chain, keeping the longest
+        var max = 0;
+        for (var home : hTable) {
+            var n = 0;
+            for (var b = home; b != null; b = b.next) {
+                n++;
+            } // for
+            max = Math.max(max, n);
+        } // for
+        return max;
+
+    } // maxChainLength
+
+    /********************************************************************************
+     * Return the metrics of the hash table by name, for monitoring (see also
+     * Table.indexStats): the keys, home buckets, overflow buckets, average and
+     * longest chain length, load factor, splits, lookups and average buckets
+     * accessed per lookup.
+     * 
+     * @return the metrics in a fixed order
+     */
+    public Map<String, Number> stats() {
+        Map<String, Number> m = new LinkedHashMap<>();
+        m.put("keys", keyCount);
+        m.put("buckets", hTable.size());
+        m.put("overflowBuckets", overflowBuckets());
+        m.put("avgChainLength", avgChainLength());
+        m.put("maxChainLength", maxChainLength());
+        m.put("loadFactor", loadFactor());
+        m.put("splits", splits);
+        m.put("lookups", lookups.sum());
+        m.put("avgBucketsAccessed", avgBucketsAccessed());
+        return m;
+    } // stats
+
+    /********************************************************************************
+     * Split bucket chain 'isplit' by creating a new bucket chain at the end of the
+     * hash table and redistributing the keys of the whole chain (home and overflow
+     * buckets) according to the high resolution hash function 'h2'. Increment
+     * 'isplit'. If current split phase is complete, reset 'isplit' to zero, and
+     * update the hash functions.
+     */
+    public void split() {
 
-            // calculate new index using h2
-            int index = h2(k) % hTable.size();
+        // detach the chain being split and start it over with an empty bucket
+        var old = hTable.get(isplit);
+        hTable.set(isplit, new Bucket());
 
-            // add key-value pair to new bucket chain
-            hTable.get(index).add(k, v);
+        // create a new bucket chain at the end of the hash table (isplit + mod1)
+        hTable.add(new Bucket());
 
+        // redistribute every key in the old chain according to h2
+        for (var b = old; b != null; b = b.next) {
+            for (var j = 0; j < b.nKeys; j++) {
+                append(hTable.get(h2(b.key[j])), b.key[j], b.value[j]);
+            } // for
         } // for
 
-        // increment isplit
+        // trace the split
+        if (Trace.on(INDEX)) {
+            Trace.log(INDEX, "LinearHashMap.split: bucket chain " + isplit);
+        } // if
+
+        // increment isplit and the split counter
         isplit++;
+        splits++;
 
         // check if current split phase is complete
         if (isplit >= mod1) {
@@ -404,115 +665,65 @@ public class LinHashMap<K, V>
             mod2 = 2 * mod1;
         } // if
 
-        out.println("split: bucket chain " + isplit);
-
-        /*
-         * int numBucketsToAdd = 1;
-         * 
-         * var bucket = hTable.get(isplit);
-         * while(bucket.next != null) {
-         * numBucketsToAdd++;
-         * bucket = bucket.next;
-         * hTable.add(new Bucket());
-         * } //while
-         * 
-         * hTable.add(new Bucket());
-         * 
-         * bucket = hTable.get(isplit);
-         * 
-         * while(bucket != null) {
-         * out.print("numKeys: " + bucket.nKeys);
-         * for(int i = 0; i < bucket.nKeys; i++) {
-         * if(i > SLOTS) {
-         * out.println("i is, for some reason, this: " + i);
-         * } //if
-         * 
-         * var bucketIndex = bucket.key[i].hashCode() % (mod1 + numBucketsToAdd);
-         * hTable.get(bucketIndex).add(bucket.key[i], bucket.value[i]);
-         * } //for
-         * bucket = bucket.next;
-         * } //while
-         * 
-         * hTable.set(isplit, new Bucket());
-         * 
-         * isplit++;
-         * var lf = loadFactor();
-         * if(lf <= THRESHOLD) {
-         * isplit = 0;
-         * }
-         * 
-         * mod1 = hTable.size();
-         * 
-         * 
-         * //debug statement
-         * out.println("split: bucket chain " + isplit);
-         */
-
     } // split()
 
     /********************************************************************************
-     * Return the load factor for the hash table.
+     * Return the load factor (keys per slot over the home buckets) for the hash table.
      * 
      * @return the load factor
      */
-    private double loadFactor() {
-        return keyCount / (double) size();
+    public double loadFactor() {
+        return keyCount / (double) (SLOTS * hTable.size());
     } // loadFactor
 
     /********************************************************************************
-     * Find the key in the bucket chain that starts with home bucket bh
+     * Append a key-value pair to the end of the bucket chain starting at bh,
+     * adding an overflow bucket when the last bucket is full. The key must not
+     * already be in the chain.
      * 
-     * @param key    the key to find
-     * @param bh     the given home bucket
-     * @param by_get indicates whether 'find' is called from 'get' (performance
-     *               monitored)
-     * @return the current value stored stored for the key
+     * @param bh    the home bucket of the chain
+     * @param key   the key to append
+     * @param value the value to append
      */
-    private V find(K key, Bucket bh, boolean by_get) {
-
-        // iterate over the bucket chain starting from 'bh'
-        for (var b = bh; b != null; b = b.next) {
-
-            // increment over the bucket if 'by_get' is true (for performance monitoring)
-            if (by_get) {
-                count++;
-            } // if
-
-            // find the key in the current bucket 'b'
-            V result = b.find(key);
+    private void append(Bucket bh, K key, V value) {
 
-            // return the result if the key is found in the current bucket
-            if (result != null) {
-                return result;
-            } // if
+        // find the last bucket of the chain
+        var b = bh;
+        while (b.next != null) {
+            b = b.next;
+        } // while
 
-        } // for
+        // add an overflow bucket if the last one is full
+        if (b.nKeys == SLOTS) {
+            b.next = new Bucket();
+            b = b.next;
+        } // if
 
-        // return null if the key is not found in any bucket in the chain
-        return null;
+        b.add(key, value);
 
-    } // find
+    } // append
 
     /************************************************************************************
-     * Find the correct bucket index for a given key after the split operation.
+     * Find the correct bucket index for a given key: chains before 'isplit' have
+     * already been split in this phase, so they are addressed with 'h2'.
      * 
      * @param key the key to find the bucket index for
      * @return the index of the bucket for the given key
      */
-    private int findRightBucket(Object key) {
+    private int bucketOf(Object key) {
 
-        // calculate hash value using high resolution hash function
-        int ret = h2(key);
+        // calculate hash value using the low resolution hash function
+        int ret = h(key);
 
-        // if index is out of bounds, use low resolution hash function
-        if (ret >= hTable.size()) {
-            return h(key);
+        // if that chain has already been split, use the high resolution hash function
+        if (ret < isplit) {
+            return h2(key);
         } // if
 
         // return the calculated index
         return ret;
 
-    } // findRightBucket
+    } // bucketOf
 
     /********************************************************************************
      * Hash the key using the low resolution hash function.
@@ -560,7 +771,8 @@ public class LinHashMap<K, V>
     /********************************************************************************
      * The main method used for testing.
      * 
-     * @param the command-line arguments (args [0] gives number of keys to insert)
+     * @param the command-line arguments (args [0] gives number of keys to insert,
+     *            args [1] = "stress" checks the map against java.util.HashMap)
      */
     public static void main(String[] args) {
 
@@ -570,14 +782,20 @@ public class LinHashMap<K, V>
         // flag to insert keys randomly or sequentially
         var RANDOMLY = false;
 
-        // create a new instance of LinHasMap with Integer keys and Integer values
-        LinHashMap<Integer, Integer> ht = new LinHashMap<>(Integer.class, Integer.class);
-
         // check if a command-line argument is provided for the total number of keys
-        if (args.length == 1) {
+        if (args.length >= 1) {
             totalKeys = Integer.valueOf(args[0]);
         } // if
 
+        // run the stress test instead of the small demo
+        if (args.length == 2 && args[1].equals("stress")) {
+            stress(totalKeys);
+            return;
+        } // if
+
+        // create a new instance of LinHasMap with Integer keys and Integer values
+        LinHashMap<Integer, Integer> ht = new LinHashMap<>(Integer.class, Integer.class);
+
         // insert keys and values into the hash table
         if (RANDOMLY) {
             // insert keys randomly using a random number generator
@@ -604,7 +822,61 @@ public class LinHashMap<K, V>
 
         // print the average number of buckets accessed during the operations
         out.println("-------------------------------------------");
-        out.println("Average number of buckets accessed = " + ht.count / (double) totalKeys);
+        out.println("Average number of buckets accessed = " + ht.avgBucketsAccessed(totalKeys + 1));
     } // main
 
+    /********************************************************************************
+     * Stress test: apply a random mix of inserts, updates and removes to both a
+     * LinHashMap and a java.util.HashMap, check that they agree, and report the
+     * average number of buckets accessed per lookup.
+     * 
+     * @param totalKeys the number of operations (and the size of the key space)
+     */
+    private static void stress(int totalKeys) {
+
+        // both maps see the same seeded sequence of operations
+        var rng = new Random(totalKeys);
+        LinHashMap<Integer, Integer> ht = new LinHashMap<>(Integer.class, Integer.class);
+        var ref = new HashMap<Integer, Integer>();
+
+        // 70% puts (some of them updates) and 30% removes
+        var start = System.nanoTime();
+        for (var i = 0; i < totalKeys; i++) {
+            var k = rng.nextInt(totalKeys);
+            if (rng.nextInt(10) < 7) {
+                check(Objects.equals(ht.put(k, i), ref.put(k, i)), "put " + k);
+            } else {
+                check(Objects.equals(ht.remove(k), ref.remove(k)), "remove " + k);
+            } // if
+        } // for
+        var elapsed = (System.nanoTime() - start) / 1E6;
+
+        // every key in the key space must agree, as must the size and the entries
+        ht.count.reset();
+        ht.lookups.reset();
+        for (var k = 0; k < totalKeys; k++) {
+            check(Objects.equals(ht.get(k), ref.get(k)), "get " + k);
+        } // for
+        check(ht.size() == ref.size(), "size " + ht.size() + " != " + ref.size());
+        check(ht.entrySet().equals(ref.entrySet()), "entrySet");
+
+        out.println("LinHashMap stress test passed for " + totalKeys + " operations in " + elapsed + " ms");
+        out.println("size = " + ht.size() + ", home buckets = " + ht.buckets() + ", splits = " + ht.splits
+                + ", load factor = " + ht.loadFactor());
+        out.println("Average number of buckets accessed = " + ht.avgBucketsAccessed());
+        out.println("metrics = " + ht.stats());
+    } // stress
+
+    /********************************************************************************
+     * Abort the stress test with the given message if the condition fails.
+     * 
+     * @param ok  the condition that must hold
+     * @param msg what was being checked
+     */
+    private static void check(boolean ok, String msg) {
+        if (!ok) {
+            throw new IllegalStateException("LinHashMap stress test failed: " + msg);
+        } // if
+    } // check
+
 } // LinHashMap class
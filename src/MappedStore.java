@@ -0,0 +1,136 @@
+package src;
+
+/****************************************************************************************
+ * @file  MappedStore.java
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This class provides read-only access to the tuples of a saved table through memory
+ * mapped pages (see PageFile). Nothing is read when the store is opened beyond the
+ * schema header and page directory; tuples are decoded lazily as operators scan them,
+ * straight out of the operating system's page cache, which is shared by all processes
+ * mapping the same file.
+ *
+ * The store is a List of tuples, so it can stand in for the tuple list of a Table.
+ * Each thread keeps a cursor to where its last tuple ended, so in-order scans with
+ * get (i) decode each tuple once; other access first skips to the tuple within its
+ * page. The store cannot be modified.
+ */
+public class MappedStore
+        extends AbstractList<Comparable[]>
+        implements RandomAccess {
+
+    /**
+     * The number of pages per mapped segment (1 GB).
+     */
+    private static final int SEGMENT_PAGES = (1 << 30) / PageFile.PAGE_SIZE;
+
+    /**
+     * The attribute domains (used to decode tuples).
+     */
+    private final Class[] domain;
+
+    /**
+     * The mapped segments of data pages.
+     */
+    private final ByteBuffer[] segment;
+
+    /**
+     * The page directory: the number of the first tuple on each page, then the size.
+     */
+    private final int[] first;
+
+    /**
+     * Each thread's cursor: the next tuple number, its page and its offset in the page.
+     */
+    private final ThreadLocal<int[]> cursor = ThreadLocal.withInitial(() -> new int[] { -1, 0, 0 });
+
+    /************************************************************************************
+     * Map the data pages of the given open page file.
+     *
+     * @param file the page file (may be closed once the store is made)
+     * @throws IOException if the file cannot be mapped
+     */
+    public MappedStore(PageFile file) throws IOException {
+        domain = file.domain();
+        segment = file.map(SEGMENT_PAGES);
+        first = file.directory();
+    } // constructor
+
+    /************************************************************************************
+     * Return the number of tuples in the store.
+     *
+     * @return the number of tuples
+     */
+    public int size() {
+        return first[first.length - 1];
+    } // size
+
+    /************************************************************************************
+     * Decode tuple i.
+     *
+     * @param i the tuple number
+     * @return a new array holding the tuple's values
+     */
+    public Comparable[] get(int i) {
+        Objects.checkIndex(i, size());
+        int[] c = cursor.get();
+        int page, off;
+        if (c[0] == i) {
+            page = c[1];
+            off = c[2];
+        } else {
+            page = PageFile.pageOf(first, i);
+            off = PageFile.PAGE_HEADER;
+            int from = first[page];
+            if (c[1] == page && c[0] >= from && c[0] < i) {
+                // continue from the cursor, which is earlier in the same page
+                from = c[0];
+                off = c[2];
+            } // if
+            ByteBuffer buf = segment[page / SEGMENT_PAGES];
+            int base = base(page);
+            for (int k = from; k < i; k++)
+                off = PageFile.skipTuple(buf, base + off, domain) - base;
+        } // if
+
+        Comparable[] t = new Comparable[domain.length];
+        int base = base(page);
+        off = PageFile.decodeTuple(segment[page / SEGMENT_PAGES], base + off, domain, t) - base;
+
+        // leave the cursor at the next tuple (the start of the next page after the last one)
+        c[0] = i + 1;
+        if (i + 1 == first[page + 1]) {
+            c[1] = page + 1;
+            c[2] = PageFile.PAGE_HEADER;
+        } else {
+            c[1] = page;
+            c[2] = off;
+        } // if
+        return t;
+    } // get
+
+    /************************************************************************************
+     * Return the number of mapped data pages.
+     *
+     * @return the page count
+     */
+    public int pages() {
+        return first.length - 1;
+    } // pages
+
+    /************************************************************************************
+     * Return the offset of the given page within its mapped segment.
+     *
+     * @param page the page number
+     * @return the byte offset of the page in its segment
+     */
+    private static int base(int page) {
+        return (page % SEGMENT_PAGES) * PageFile.PAGE_SIZE;
+    } // base
+
+} // MappedStore class
@@ -0,0 +1,664 @@
+package src;
+
+/****************************************************************************************
+ * @file  Metrics.java
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * This class collects metrics on the table operators. Each call of an operator is a
+ * span recording the rows it read and produced, whether it used an index or scanned,
+ * the time it took (in total and per phase, e.g., the build and probe of a hash join)
+ * and the bytes the calling thread allocated meanwhile (work done by the threads of
+ * the Parallel pool is timed but not counted in bytes). Operators open and close their
+ * spans as follows, so that a span is closed even if the operator throws:
+ *
+ *     try (Metrics.Span m = Metrics.start ("hashJoin", name, rowsIn)) {
+ *         m.phase ("build"); ... m.phase ("probe"); ...
+ *         m.end (rowsOut);
+ *     }
+ *
+ * The spans of every thread are summed by operator in a registry, which can be
+ * queried (stats) or printed. A profile records the spans of one thread, e.g., of one
+ * query, as a tree whose nodes nest like the operator calls:
+ *
+ *     try (Metrics.Profile p = Metrics.profile ("q1")) { ... } p.print ();
+ *
+ * Like Trace, the registry is off by default (a span then costs one check); it may be
+ * turned on at start-up with java -Dmetrics=true ... or at run-time with enable.
+ * A profile records its spans whether or not the registry is on.
+ */
+public final class Metrics {
+    /**
+     * The number of latency buckets: bucket b counts calls taking 2^b to 2^(b+1) ns.
+     */
+    private static final int BUCKETS = 48;
+
+    /**
+     * Whether operator spans are summed in the registry.
+     */
+    private static volatile boolean enabled = Boolean.getBoolean("metrics");
+
+    /**
+     * The number of profiles open (on any thread).
+     */
+    private static final AtomicInteger profiles = new AtomicInteger();
+
+    /**
+     * The innermost open node of the profile on each thread (null if none).
+     */
+    private static final ThreadLocal<Node> current = new ThreadLocal<>();
+
+    /**
+     * The statistics by operator.
+     */
+    private static final Map<String, Stats> registry = new ConcurrentSkipListMap<>();
+
+    /**
+     * The source of per-thread allocation counts (null if the JVM has none).
+     */
+    private static final com.sun.management.ThreadMXBean threads = allocationCounter();
+
+    /************************************************************************************
+     * This class only has static members.
+     */
+    private Metrics() {
+    } // constructor
+
+    /************************************************************************************
+     * Determine whether operator spans are summed in the registry.
+     *
+     * @return whether the registry is on
+     */
+    public static boolean on() {
+        return enabled;
+    } // on
+
+    /************************************************************************************
+     * Start summing operator spans in the registry.
+     */
+    public static void enable() {
+        enabled = true;
+    } // enable
+
+    /************************************************************************************
+     * Stop summing operator spans in the registry (the sums are kept).
+     */
+    public static void disable() {
+        enabled = false;
+    } // disable
+
+    /************************************************************************************
+     * Clear the statistics of every operator.
+     */
+    public static void reset() {
+        registry.clear();
+    } // reset
+
+    /************************************************************************************
+     * Return the statistics of the given operator.
+     *
+     * @param op the operator (e.g., "select" or "hashJoin")
+     * @return its statistics, or null if it has not been called
+     */
+    public static Stats stats(String op) {
+        return registry.get(op);
+    } // stats
+
+    /************************************************************************************
+     * Return the statistics of every operator called, by operator name.
+     *
+     * @return an unmodifiable view of the registry
+     */
+    public static Map<String, Stats> stats() {
+        return Collections.unmodifiableMap(registry);
+    } // stats
+
+    /************************************************************************************
+     * Print the statistics of every operator called, one line per operator.
+     */
+    public static void print() {
+        out.printf("%-16s %8s %12s %12s %8s %8s %10s %10s %10s %12s  %s%n", "operator", "calls",
+                "rows in", "rows out", "index", "scans", "mean ms", "p99 ms", "max ms", "bytes", "phases (ms)");
+        for (Map.Entry<String, Stats> e : registry.entrySet()) {
+            Stats s = e.getValue();
+            StringBuilder phases = new StringBuilder();
+            for (Map.Entry<String, Long> p : s.phases().entrySet())
+                phases.append(p.getKey()).append(' ').append(ms(p.getValue())).append("  ");
+            out.printf("%-16s %8d %12d %12d %8d %8d %10s %10s %10s %12d  %s%n", e.getKey(), s.calls(),
+                    s.rowsIn(), s.rowsOut(), s.indexHits(), s.scans(), ms((long) s.meanNanos()),
+                    ms(s.percentileNanos(0.99)), ms(s.maxNanos()), s.bytes(), phases.toString().trim());
+        } // for
+    } // print
+
+    /************************************************************************************
+     * Start the span of an operator call (a no-op span if neither the registry nor a
+     * profile on this thread is on).
+     *
+     * @param op     the operator
+     * @param table  the table it is called on
+     * @param rowsIn the number of rows it is given
+     * @return the span, to be ended when the operator returns
+     */
+    public static Span start(String op, String table, long rowsIn) {
+        if (!enabled && profiles.get() == 0)
+            return Span.NONE;
+        Node parent = current.get();
+        if (!enabled && parent == null)
+            return Span.NONE;
+        return new Span(op, table, rowsIn, parent);
+    } // start
+
+    /************************************************************************************
+     * Open a profile on this thread: the spans started on it until the profile is
+     * closed become the nodes of a tree under the profile's root.
+     *
+     * @param label the label of the root (e.g., the query)
+     * @return the profile, to be closed when the query is done
+     */
+    public static Profile profile(String label) {
+        return new Profile(label);
+    } // profile
+
+    // ----------------------------------------------------------------------------------
+    // Spans, Statistics and Profiles
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * The span of one operator call.
+     */
+    public static final class Span
+            implements AutoCloseable {
+
+        /**
+         * The span returned when nothing is recorded.
+         */
+        static final Span NONE = new Span();
+
+        private final String op, table;
+        private final long rowsIn, begin, bytesBegin;
+        private final Node parent, node;
+        private int indexHits = 0, scans = 0;
+        private String phase = null;
+        private long phaseBegin;
+        private Map<String, Long> phases = null;
+        private boolean ended = false;
+
+        private Span() {
+            op = table = null;
+            rowsIn = begin = bytesBegin = 0;
+            parent = node = null;
+        } // constructor
+
+        private Span(String _op, String _table, long _rowsIn, Node _parent) {
+            op = _op;
+            table = _table;
+            rowsIn = _rowsIn;
+            parent = _parent;
+            if (parent != null) {
+                node = new Node(op + " " + table);
+                parent.children.add(node);
+                current.set(node);
+            } else {
+                node = null;
+            } // if
+            bytesBegin = allocated();
+            begin = System.nanoTime();
+        } // constructor
+
+        /********************************************************************************
+         * Record that the operator found its rows through an index.
+         */
+        public void index() {
+            if (this != NONE)
+                indexHits++;
+        } // index
+
+        /********************************************************************************
+         * Record that the operator scanned the tuples of a table.
+         */
+        public void scan() {
+            if (this != NONE)
+                scans++;
+        } // scan
+
+        /********************************************************************************
+         * End the current phase (if any) and start the given one.
+         *
+         * @param name the phase (e.g., "build")
+         */
+        public void phase(String name) {
+            if (this == NONE)
+                return;
+            long now = System.nanoTime();
+            endPhase(now);
+            phase = name;
+            phaseBegin = now;
+        } // phase
+
+        /********************************************************************************
+         * End the span, recording it in the registry (if on) and in the profile (if
+         * any).
+         *
+         * @param rowsOut the number of rows the operator produced
+         */
+        public void end(long rowsOut) {
+            finish(rowsOut, true);
+        } // end
+
+        /********************************************************************************
+         * Close the span: a span not ended (the operator threw) is left out of the
+         * registry, but its node is kept in the profile and the profile's innermost
+         * node is restored to the span's parent, so later calls do not nest under it.
+         */
+        public void close() {
+            finish(0, false);
+        } // close
+
+        // record the span once, in the registry only if the operator returned
+        private void finish(long rowsOut, boolean returned) {
+            if (this == NONE || ended)
+                return;
+            ended = true;
+            long now = System.nanoTime();
+            endPhase(now);
+            long nanos = now - begin, bytes = allocated() - bytesBegin;
+            Map<String, Long> ph = (phases == null) ? Map.of() : phases;
+
+            if (enabled && returned)
+                registry.computeIfAbsent(op, k -> new Stats()).add(rowsIn, rowsOut, indexHits, scans, nanos, bytes, ph);
+            if (node != null) {
+                node.set(rowsIn, rowsOut, indexHits, scans, nanos, bytes, ph);
+                current.set(parent);
+            } // if
+        } // finish
+
+        // add the time since the current phase began to its total
+        private void endPhase(long now) {
+            if (phase == null)
+                return;
+            if (phases == null)
+                phases = new LinkedHashMap<>();
+            phases.merge(phase, now - phaseBegin, Long::sum);
+            phase = null;
+        } // endPhase
+
+    } // Span class
+
+    /************************************************************************************
+     * The statistics of an operator, summed over its calls (on any thread).
+     */
+    public static final class Stats {
+
+        private final LongAdder calls = new LongAdder(), rowsIn = new LongAdder(), rowsOut = new LongAdder();
+        private final LongAdder indexHits = new LongAdder(), scans = new LongAdder();
+        private final LongAdder nanos = new LongAdder(), bytes = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+        private final AtomicLongArray latency = new AtomicLongArray(BUCKETS);
+        private final Map<String, LongAdder> phases = Collections.synchronizedMap(new LinkedHashMap<>());
+
+        // add one call
+        private void add(long in, long out, int index, int scan, long time, long alloc, Map<String, Long> ph) {
+            calls.increment();
+            rowsIn.add(in);
+            rowsOut.add(out);
+            indexHits.add(index);
+            scans.add(scan);
+            nanos.add(time);
+            bytes.add(alloc);
+            max.accumulateAndGet(time, Math::max);
+            latency.incrementAndGet(Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(Math.max(1, time))));
+            for (Map.Entry<String, Long> p : ph.entrySet())
+                phases.computeIfAbsent(p.getKey(), k -> new LongAdder()).add(p.getValue());
+        } // add
+
+        /********************************************************************************
+         * Return the number of calls.
+         *
+         * @return the call count
+         */
+        public long calls() {
+            return calls.sum();
+        } // calls
+
+        /********************************************************************************
+         * Return the number of rows given to the calls.
+         *
+         * @return the rows in
+         */
+        public long rowsIn() {
+            return rowsIn.sum();
+        } // rowsIn
+
+        /********************************************************************************
+         * Return the number of rows produced by the calls.
+         *
+         * @return the rows out
+         */
+        public long rowsOut() {
+            return rowsOut.sum();
+        } // rowsOut
+
+        /********************************************************************************
+         * Return the number of times the calls found rows through an index.
+         *
+         * @return the index hits
+         */
+        public long indexHits() {
+            return indexHits.sum();
+        } // indexHits
+
+        /********************************************************************************
+         * Return the number of times the calls scanned a table.
+         *
+         * @return the scans
+         */
+        public long scans() {
+            return scans.sum();
+        } // scans
+
+        /********************************************************************************
+         * Return the total time of the calls.
+         *
+         * @return the time in nanoseconds
+         */
+        public long totalNanos() {
+            return nanos.sum();
+        } // totalNanos
+
+        /********************************************************************************
+         * Return the time of the slowest call.
+         *
+         * @return the time in nanoseconds
+         */
+        public long maxNanos() {
+            return max.get();
+        } // maxNanos
+
+        /********************************************************************************
+         * Return the bytes allocated by the calling threads during the calls.
+         *
+         * @return the bytes allocated
+         */
+        public long bytes() {
+            return bytes.sum();
+        } // bytes
+
+        /********************************************************************************
+         * Return the mean time of a call.
+         *
+         * @return the mean in nanoseconds
+         */
+        public double meanNanos() {
+            long n = calls();
+            return (n == 0) ? 0.0 : totalNanos() / (double) n;
+        } // meanNanos
+
+        /********************************************************************************
+         * Return (an upper bound on) the given percentile of the time of a call, to
+         * within a factor of two (the latency histogram has power-of-two buckets).
+         *
+         * @param q the percentile as a fraction (e.g., 0.99)
+         * @return the time in nanoseconds
+         */
+        public long percentileNanos(double q) {
+            long n = 0;
+            long[] counts = new long[BUCKETS];
+            for (int b = 0; b < BUCKETS; b++)
+                n += counts[b] = latency.get(b);
+            long rank = (long) Math.ceil(q * n), seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts[b];
+                if (seen >= rank && counts[b] > 0)
+                    return Math.min(maxNanos(), 2L << b);
+            } // for
+            return 0;
+        } // percentileNanos
+
+        /********************************************************************************
+         * Return the total time spent in each phase.
+         *
+         * @return the nanoseconds by phase
+         */
+        public Map<String, Long> phases() {
+            Map<String, Long> m = new LinkedHashMap<>();
+            synchronized (phases) {
+                for (Map.Entry<String, LongAdder> p : phases.entrySet())
+                    m.put(p.getKey(), p.getValue().sum());
+            } // synchronized
+            return m;
+        } // phases
+
+        public String toString() {
+            return "calls " + calls() + ", rows " + rowsIn() + " -> " + rowsOut() + ", index " + indexHits()
+                    + ", scans " + scans() + ", mean " + ms((long) meanNanos()) + " ms, bytes " + bytes();
+        } // toString
+
+    } // Stats class
+
+    /************************************************************************************
+     * A node of a profile tree: an operator call and the calls made within it.
+     */
+    public static final class Node {
+
+        private final String label;
+        private final List<Node> children = new ArrayList<>();
+        private long rowsIn, rowsOut, nanos, bytes;
+        private int indexHits, scans;
+        private Map<String, Long> phases = Map.of();
+
+        private Node(String _label) {
+            label = _label;
+        } // constructor
+
+        // record the call once it ends
+        private void set(long in, long out, int index, int scan, long time, long alloc, Map<String, Long> ph) {
+            rowsIn = in;
+            rowsOut = out;
+            indexHits = index;
+            scans = scan;
+            nanos = time;
+            bytes = alloc;
+            phases = ph;
+        } // set
+
+        /********************************************************************************
+         * Return the label of the node (operator and table).
+         *
+         * @return the label
+         */
+        public String label() {
+            return label;
+        } // label
+
+        /********************************************************************************
+         * Return the calls made within this one, in order.
+         *
+         * @return the child nodes
+         */
+        public List<Node> children() {
+            return Collections.unmodifiableList(children);
+        } // children
+
+        /********************************************************************************
+         * Return the number of rows given to the call.
+         *
+         * @return the rows in
+         */
+        public long rowsIn() {
+            return rowsIn;
+        } // rowsIn
+
+        /********************************************************************************
+         * Return the number of rows produced by the call.
+         *
+         * @return the rows out
+         */
+        public long rowsOut() {
+            return rowsOut;
+        } // rowsOut
+
+        /********************************************************************************
+         * Return the time of the call.
+         *
+         * @return the time in nanoseconds
+         */
+        public long nanos() {
+            return nanos;
+        } // nanos
+
+        /********************************************************************************
+         * Return the bytes allocated by the thread during the call.
+         *
+         * @return the bytes allocated
+         */
+        public long bytes() {
+            return bytes;
+        } // bytes
+
+        /********************************************************************************
+         * Return the number of times the call found rows through an index.
+         *
+         * @return the index hits
+         */
+        public int indexHits() {
+            return indexHits;
+        } // indexHits
+
+        /********************************************************************************
+         * Return the number of times the call scanned a table.
+         *
+         * @return the scans
+         */
+        public int scans() {
+            return scans;
+        } // scans
+
+        /********************************************************************************
+         * Return the time spent in each phase of the call.
+         *
+         * @return the nanoseconds by phase
+         */
+        public Map<String, Long> phases() {
+            return phases;
+        } // phases
+
+        /********************************************************************************
+         * Print this node and (indented) its children.
+         *
+         * @param indent the indentation of this node's line
+         */
+        private void print(String indent) {
+            StringBuilder sb = new StringBuilder(indent).append(label).append("  ").append(ms(nanos)).append(" ms");
+            if (!children.isEmpty() || rowsIn + rowsOut > 0)
+                sb.append("  rows ").append(rowsIn).append(" -> ").append(rowsOut);
+            if (indexHits > 0)
+                sb.append("  index ").append(indexHits);
+            if (scans > 0)
+                sb.append("  scans ").append(scans);
+            for (Map.Entry<String, Long> p : phases.entrySet())
+                sb.append("  ").append(p.getKey()).append(' ').append(ms(p.getValue())).append(" ms");
+            sb.append("  ").append(bytes).append(" bytes");
+            out.println(sb);
+            for (Node c : children)
+                c.print(indent + "    ");
+        } // print
+
+    } // Node class
+
+    /************************************************************************************
+     * A profile: the tree of the operator calls made on one thread while it is open.
+     */
+    public static final class Profile
+            implements AutoCloseable {
+
+        private final Node root;
+        private final Node outer;
+        private final long begin, bytesBegin;
+        private boolean open = true;
+
+        private Profile(String label) {
+            root = new Node(label);
+            outer = current.get();
+            current.set(root);
+            profiles.incrementAndGet();
+            bytesBegin = allocated();
+            begin = System.nanoTime();
+        } // constructor
+
+        /********************************************************************************
+         * Return the root of the tree (whose children are the top-level calls).
+         *
+         * @return the root node
+         */
+        public Node root() {
+            return root;
+        } // root
+
+        /********************************************************************************
+         * Print the tree, one line per call, indented by depth.
+         */
+        public void print() {
+            root.print("");
+        } // print
+
+        /********************************************************************************
+         * Close the profile, restoring any profile it was opened within.
+         */
+        public void close() {
+            if (!open)
+                return;
+            open = false;
+            long in = 0, rowsOut = 0;
+            for (Node c : root.children) {
+                in += c.rowsIn;
+                rowsOut = c.rowsOut;
+            } // for
+            root.set(in, rowsOut, 0, 0, System.nanoTime() - begin, allocated() - bytesBegin, Map.of());
+            current.set(outer);
+            profiles.decrementAndGet();
+        } // close
+
+    } // Profile class
+
+    // ----------------------------------------------------------------------------------
+    // Private Methods
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return the bytes allocated so far by this thread (0 if the JVM cannot tell).
+     */
+    private static long allocated() {
+        return (threads == null) ? 0 : threads.getCurrentThreadAllocatedBytes();
+    } // allocated
+
+    /************************************************************************************
+     * Return the JVM's per-thread allocation counter, turned on (null if none).
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean t
+                    && t.isThreadAllocatedMemorySupported()) {
+                t.setThreadAllocatedMemoryEnabled(true);
+                return t;
+            } // if
+        } catch (UnsupportedOperationException | LinkageError ex) {
+            // the counter is optional
+        } // try
+        return null;
+    } // allocationCounter
+
+    /************************************************************************************
+     * Format nanoseconds as milliseconds with three decimals.
+     */
+    private static String ms(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    } // ms
+
+} // Metrics class
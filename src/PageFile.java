@@ -0,0 +1,874 @@
+package src;
+
+/****************************************************************************************
+ * @file  PageFile.java
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This class provides the binary, page-based file format used to save and load tables.
+ * A file starts with a schema header (table name, attributes, domains, primary key,
+ * map type and store type) padded to a whole number of pages, followed by fixed-size
+ * data pages of encoded tuples:
+ *
+ *     header:  magic, version, page size, header pages, tuple count, data pages, log
+ *              sequence number, schema
+ *     page:    tuple count (int), bytes used (int), tuples ...
+ *     footer:  page directory (the number of the first tuple on each page, then the
+ *              tuple count), so that tuple i can be found without reading every page
+ *     tuple:   null bitmap (one bit per attribute), then each non-null value in its
+ *              domain's binary form (int, long, short, byte, double, float, char, or a
+ *              length-prefixed UTF-8 string)
+ *
+ * A tuple never spans pages. Files are written and read through a FileChannel in
+ * large direct buffers (IO_PAGES pages at a time); single pages can also be read on
+ * their own for partial scans, or the data pages can be memory-mapped (see
+ * MappedStore). The header's log sequence number is that of the last write-ahead log
+ * record reflected in the file (see WriteAheadLog).
+ */
+public class PageFile
+        implements Closeable {
+    /**
+     * The size of a page in bytes.
+     */
+    public static final int PAGE_SIZE = 8192;
+
+    /**
+     * The number of pages moved per channel read or write.
+     */
+    private static final int IO_PAGES = 128;
+
+    /**
+     * The bytes at the start of each page holding its tuple count and bytes used.
+     */
+    static final int PAGE_HEADER = 8;
+
+    /**
+     * The largest encoded tuple in bytes: a tuple never spans pages.
+     */
+    public static final int MAX_TUPLE = PAGE_SIZE - PAGE_HEADER;
+
+    /**
+     * The magic number identifying a table file ("DBF1").
+     */
+    private static final int MAGIC = 0x44424631;
+
+    /**
+     * The version of the file format.
+     */
+    private static final int VERSION = 3;
+
+    /**
+     * The size of the fixed part of the header (before the schema).
+     */
+    private static final int FIXED_HEADER = 36;
+
+    /**
+     * The supported domains (a value's domain code is its position).
+     */
+    private static final Class[] DOMAINS = { Integer.class, Long.class, Short.class, Byte.class,
+            Double.class, Float.class, Character.class, String.class };
+
+    /**
+     * The table name stored in the header.
+     */
+    private final String name;
+
+    /**
+     * The attribute names stored in the header.
+     */
+    private final String[] attribute;
+
+    /**
+     * The attribute domains stored in the header.
+     */
+    private final Class[] domain;
+
+    /**
+     * The primary key stored in the header.
+     */
+    private final String[] key;
+
+    /**
+     * The map type of the table's index.
+     */
+    private final Table.MapType mType;
+
+    /**
+     * The storage layout of the table's tuples.
+     */
+    private final Table.StoreType sType;
+
+    /**
+     * The number of tuples in the file.
+     */
+    private final long nTuples;
+
+    /**
+     * The number of data pages in the file.
+     */
+    private final int nPages;
+
+    /**
+     * The log sequence number of the last log record reflected in the file.
+     */
+    private final long lsn;
+
+    /**
+     * The byte offset of the first data page.
+     */
+    private final long dataStart;
+
+    /**
+     * The channel the file is read (and written) through.
+     */
+    private final FileChannel ch;
+
+    /**
+     * Whether pages may be written back to the file.
+     */
+    private final boolean writable;
+
+    /************************************************************************************
+     * Open the table file at the given path (read-only) and read its schema header.
+     *
+     * @param path the path of the file
+     * @throws IOException if the file cannot be read or is not a table file
+     */
+    public PageFile(String path) throws IOException {
+        this(path, false);
+    } // constructor
+
+    /************************************************************************************
+     * Open the table file at the given path and read its schema header.
+     *
+     * @param path      the path of the file
+     * @param _writable whether pages may be written back (see writePage)
+     * @throws IOException if the file cannot be read or is not a table file
+     */
+    public PageFile(String path, boolean _writable) throws IOException {
+        writable = _writable;
+        ch = _writable ? FileChannel.open(Paths.get(path), StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            ByteBuffer buf = ByteBuffer.allocate(PAGE_SIZE);
+            readFully(buf, 0);
+            buf.flip();
+            if (buf.getInt() != MAGIC)
+                throw new IOException(path + " is not a table file");
+            if (buf.getInt() != VERSION || buf.getInt() != PAGE_SIZE)
+                throw new IOException(path + " has an unsupported format version or page size");
+            int headerPages = buf.getInt();
+            nTuples = buf.getLong();
+            nPages = buf.getInt();
+            lsn = buf.getLong();
+            dataStart = (long) headerPages * PAGE_SIZE;
+
+            if (headerPages > 1) {
+                // the schema did not fit in one page: reread the whole header
+                buf = ByteBuffer.allocate((int) dataStart);
+                readFully(buf, 0);
+                buf.flip();
+                buf.position(FIXED_HEADER);
+            } // if
+
+            name = getString(buf);
+            mType = Table.MapType.values()[buf.get()];
+            sType = Table.StoreType.values()[buf.get()];
+            attribute = new String[buf.getShort()];
+            domain = new Class[attribute.length];
+            for (int j = 0; j < attribute.length; j++) {
+                attribute[j] = getString(buf);
+                domain[j] = DOMAINS[buf.get()];
+            } // for
+            key = new String[buf.getShort()];
+            for (int j = 0; j < key.length; j++)
+                key[j] = getString(buf);
+        } catch (IOException | RuntimeException ex) {
+            ch.close();
+            throw ex;
+        } // try
+    } // constructor
+
+    /************************************************************************************
+     * Write the schema and tuples of a table to the file at the given path. The file
+     * is written to a temporary file first and then moved into place, so a failed
+     * save leaves the previous file intact.
+     *
+     * @param path      the path of the file
+     * @param name      the table name
+     * @param attribute the attribute names
+     * @param domain    the attribute domains
+     * @param key       the primary key
+     * @param mType     the map type of the table's index
+     * @param sType     the storage layout of the table's tuples
+     * @param tuples    the tuples to write
+     * @param lsn       the log sequence number of the last log record in the tuples
+     * @throws IOException if the file cannot be written or a tuple is too large
+     */
+    public static void write(String path, String name, String[] attribute, Class[] domain, String[] key,
+            Table.MapType mType, Table.StoreType sType, List<Comparable[]> tuples, long lsn) throws IOException {
+        try (Writer w = new Writer(path, name, attribute, domain, key, mType, sType, lsn)) {
+            w.append(tuples);
+            w.commit();
+        } // try
+    } // write
+
+    /************************************************************************************
+     * This class writes a table file incrementally, a batch of tuples at a time, so
+     * that a table need never be in memory as a whole (e.g., when generating one). The
+     * tuples go to a temporary file, which commit completes (page directory and header)
+     * and moves into place; closing an uncommitted writer deletes it.
+     *
+     *     try (PageFile.Writer w = new PageFile.Writer (...)) {
+     *         w.append (batch); ...
+     *         w.commit ();
+     *     }
+     */
+    public static class Writer
+            implements Closeable {
+
+        private final Path target, tmp;
+        private final Class[] domain;
+        private final byte[] schema;
+        private final int headerPages;
+        private final long lsn;
+        private final FileChannel out;
+        private final ByteBuffer io = ByteBuffer.allocateDirect(IO_PAGES * PAGE_SIZE);
+        private ByteBuffer tup = ByteBuffer.allocate(256);
+        private long pos;
+        private int nPages = 0;
+        private int[] first = new int[16]; // the page directory
+        private int n = 0; // the number of tuples written
+        private int page = -1; // start of the current page in io (-1 when none is open)
+        private int nInPage = 0;
+        private boolean committed = false;
+
+        /********************************************************************************
+         * Start writing a table file at the given path.
+         *
+         * @param path      the path of the file
+         * @param name      the table name
+         * @param attribute the attribute names
+         * @param domain    the attribute domains
+         * @param key       the primary key
+         * @param mType     the map type of the table's index
+         * @param sType     the storage layout of the table's tuples
+         * @param lsn       the log sequence number of the last log record in the tuples
+         * @throws IOException if the file cannot be created
+         */
+        public Writer(String path, String name, String[] attribute, Class[] _domain, String[] key,
+                Table.MapType mType, Table.StoreType sType, long _lsn) throws IOException {
+            domain = _domain;
+            lsn = _lsn;
+            schema = schema(name, attribute, domain, key, mType, sType);
+            headerPages = (FIXED_HEADER + schema.length + PAGE_SIZE - 1) / PAGE_SIZE;
+            pos = (long) headerPages * PAGE_SIZE;
+            target = Paths.get(path);
+            tmp = Paths.get(path + ".tmp");
+            out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } // constructor
+
+        /********************************************************************************
+         * Append a batch of tuples.
+         *
+         * @param tuples the tuples to append
+         * @throws IOException if the file cannot be written or a tuple is too large
+         */
+        public void append(List<Comparable[]> tuples) throws IOException {
+            for (Comparable[] t : tuples) {
+                tup = encode(t, domain, tup);
+                if (tup.position() > MAX_TUPLE)
+                    throw new IOException("write: a tuple of " + tup.position() + " bytes does not fit in a page");
+
+                if (page >= 0 && io.position() + tup.position() > page + PAGE_SIZE) {
+                    endPage(io, page, nInPage);
+                    page = -1;
+                } // if
+                if (page < 0) {
+                    if (io.position() == io.capacity()) {
+                        pos += flush(out, io, pos);
+                    } // if
+                    page = io.position();
+                    io.position(page + PAGE_HEADER);
+                    nInPage = 0;
+                    if (nPages == first.length)
+                        first = Arrays.copyOf(first, 2 * nPages);
+                    first[nPages++] = n;
+                } // if
+                tup.flip();
+                io.put(tup);
+                tup.clear();
+                nInPage++;
+                n++;
+            } // for
+        } // append
+
+        /********************************************************************************
+         * Finish the file: write the last pages, the page directory and the header,
+         * and move the file into place.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        public void commit() throws IOException {
+            if (page >= 0)
+                endPage(io, page, nInPage);
+            pos += flush(out, io, pos);
+
+            // the page directory follows the data pages
+            ByteBuffer dir = ByteBuffer.allocate(4 * (nPages + 1));
+            for (int p = 0; p < nPages; p++)
+                dir.putInt(first[p]);
+            dir.putInt(n).flip();
+            while (dir.hasRemaining())
+                pos += out.write(dir, pos);
+
+            // the header goes last, once the page count is known
+            ByteBuffer head = ByteBuffer.allocate(headerPages * PAGE_SIZE);
+            head.putInt(MAGIC).putInt(VERSION).putInt(PAGE_SIZE).putInt(headerPages);
+            head.putLong(n).putInt(nPages).putLong(lsn).put(schema);
+            head.clear();
+            while (head.hasRemaining())
+                out.write(head, head.position());
+            out.force(true);
+            out.close();
+
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        } // commit
+
+        /********************************************************************************
+         * Close the writer, deleting the temporary file unless the file was committed.
+         *
+         * @throws IOException if the temporary file cannot be deleted
+         */
+        public void close() throws IOException {
+            if (committed)
+                return;
+            out.close();
+            Files.deleteIfExists(tmp);
+        } // close
+
+    } // Writer class
+
+    /**
+     * Receives the batches of tuples read by scan; it may stop the scan by throwing.
+     */
+    public interface BatchConsumer {
+        void accept(List<Comparable[]> rows) throws IOException;
+    } // BatchConsumer
+
+    /************************************************************************************
+     * Read all the tuples in the file, passing them in batches (one per channel
+     * read) to the given consumer.
+     *
+     * @param batch the consumer of each batch of tuples
+     * @throws IOException if the file cannot be read or the consumer fails
+     */
+    public void scan(BatchConsumer batch) throws IOException {
+        ByteBuffer io = ByteBuffer.allocateDirect(IO_PAGES * PAGE_SIZE);
+        for (int p = 0; p < nPages; p += IO_PAGES) {
+            int n = Math.min(IO_PAGES, nPages - p);
+            io.clear().limit(n * PAGE_SIZE);
+            readFully(io, dataStart + (long) p * PAGE_SIZE);
+
+            List<Comparable[]> rows = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                io.limit((i + 1) * PAGE_SIZE).position(i * PAGE_SIZE);
+                decode(io.slice(), domain, rows);
+            } // for
+            batch.accept(rows);
+        } // for
+    } // scan
+
+    /************************************************************************************
+     * Read data page p into the given buffer (of at least PAGE_SIZE bytes), so that
+     * part of a table can be read without reading the whole file.
+     *
+     * @param p   the page number (0 until pages ())
+     * @param buf the buffer to read into
+     * @return the buffer, flipped and ready for decode
+     * @throws IOException if the page cannot be read
+     */
+    public ByteBuffer readPage(int p, ByteBuffer buf) throws IOException {
+        Objects.checkIndex(p, nPages);
+        buf.clear().limit(PAGE_SIZE);
+        readFully(buf, dataStart + (long) p * PAGE_SIZE);
+        return buf.flip();
+    } // readPage
+
+    /************************************************************************************
+     * Write the first PAGE_SIZE bytes of the given buffer over data page p (the file
+     * must have been opened writable). The buffer's position is not changed.
+     *
+     * @param p   the page number (0 until pages ())
+     * @param buf the buffer holding the page
+     * @throws IOException if the page cannot be written
+     */
+    public void writePage(int p, ByteBuffer buf) throws IOException {
+        Objects.checkIndex(p, nPages);
+        if (!writable)
+            throw new IOException("writePage: the page file is open read-only");
+        ByteBuffer page = buf.duplicate().clear().limit(PAGE_SIZE);
+        long pos = dataStart + (long) p * PAGE_SIZE;
+        while (page.hasRemaining())
+            pos += ch.write(page, pos);
+    } // writePage
+
+    /************************************************************************************
+     * Force the pages written back so far to the storage device.
+     *
+     * @throws IOException if the file cannot be forced
+     */
+    public void force() throws IOException {
+        ch.force(false);
+    } // force
+
+    /************************************************************************************
+     * Encode the given tuples as one page (starting at position 0 of the buffer).
+     *
+     * @param tuples the tuples to put in the page
+     * @param domain the attribute domains
+     * @param page   the buffer receiving the page (at least PAGE_SIZE bytes)
+     * @throws IllegalArgumentException if the tuples do not fit in a page
+     */
+    static void encodePage(List<Comparable[]> tuples, Class[] domain, ByteBuffer page) {
+        ByteBuffer tup = ByteBuffer.allocate(256);
+        int off = PAGE_HEADER;
+        for (Comparable[] t : tuples) {
+            tup = encode(t, domain, tup);
+            if (off + tup.position() > PAGE_SIZE)
+                throw new IllegalArgumentException("encodePage: the tuples do not fit in a page");
+            tup.flip();
+            page.put(off, tup, 0, tup.limit());
+            off += tup.limit();
+        } // for
+        page.putInt(0, tuples.size());
+        page.putInt(4, off);
+    } // encodePage
+
+    /************************************************************************************
+     * Find the page holding tuple i with a binary search of a page directory.
+     *
+     * @param first the page directory (see directory)
+     * @param i     the tuple number
+     * @return the page number
+     */
+    static int pageOf(int[] first, int i) {
+        int lo = 0, hi = first.length - 2;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (first[mid] <= i)
+                lo = mid;
+            else
+                hi = mid - 1;
+        } // while
+        return lo;
+    } // pageOf
+
+    /************************************************************************************
+     * Decode the tuples of a page, adding them to out.
+     *
+     * @param page   the page (positioned at its start)
+     * @param domain the attribute domains
+     * @param out    the list receiving the tuples
+     * @return the number of tuples decoded
+     */
+    public static int decode(ByteBuffer page, Class[] domain, List<Comparable[]> out) {
+        int start = page.position();
+        int n = page.getInt(start);
+        int off = start + PAGE_HEADER;
+        for (int i = 0; i < n; i++) {
+            Comparable[] t = new Comparable[domain.length];
+            off = decodeTuple(page, off, domain, t);
+            out.add(t);
+        } // for
+        return n;
+    } // decode
+
+    /************************************************************************************
+     * Decode the tuple at the given offset of the buffer into t. Only absolute gets
+     * are used, so threads may decode from a shared buffer concurrently.
+     *
+     * @param buf    the buffer holding the tuple
+     * @param off    the offset of the tuple
+     * @param domain the attribute domains
+     * @param t      the array receiving the tuple's values
+     * @return the offset just past the tuple
+     */
+    static int decodeTuple(ByteBuffer buf, int off, Class[] domain, Comparable[] t) {
+        int nulls = off;
+        off += (domain.length + 7) >>> 3;
+        for (int j = 0; j < domain.length; j++) {
+            if ((buf.get(nulls + (j >>> 3)) & (1 << (j & 7))) != 0) {
+                t[j] = null;
+                continue;
+            } // if
+            Class type = domain[j];
+            if (type == Integer.class) {
+                t[j] = buf.getInt(off);
+                off += 4;
+            } else if (type == Long.class) {
+                t[j] = buf.getLong(off);
+                off += 8;
+            } else if (type == Short.class) {
+                t[j] = buf.getShort(off);
+                off += 2;
+            } else if (type == Byte.class) {
+                t[j] = buf.get(off);
+                off += 1;
+            } else if (type == Double.class) {
+                t[j] = buf.getDouble(off);
+                off += 8;
+            } else if (type == Float.class) {
+                t[j] = buf.getFloat(off);
+                off += 4;
+            } else if (type == Character.class) {
+                t[j] = buf.getChar(off);
+                off += 2;
+            } else {
+                byte[] b = new byte[buf.getInt(off)];
+                buf.get(off + 4, b);
+                t[j] = new String(b, StandardCharsets.UTF_8);
+                off += 4 + b.length;
+            } // if
+        } // for
+        return off;
+    } // decodeTuple
+
+    /************************************************************************************
+     * Skip over the tuple at the given offset of the buffer without decoding it.
+     *
+     * @param buf    the buffer holding the tuple
+     * @param off    the offset of the tuple
+     * @param domain the attribute domains
+     * @return the offset just past the tuple
+     */
+    static int skipTuple(ByteBuffer buf, int off, Class[] domain) {
+        int nulls = off;
+        off += (domain.length + 7) >>> 3;
+        for (int j = 0; j < domain.length; j++) {
+            if ((buf.get(nulls + (j >>> 3)) & (1 << (j & 7))) != 0)
+                continue;
+            Class type = domain[j];
+            if (type == Integer.class || type == Float.class)
+                off += 4;
+            else if (type == Long.class || type == Double.class)
+                off += 8;
+            else if (type == Short.class || type == Character.class)
+                off += 2;
+            else if (type == Byte.class)
+                off += 1;
+            else
+                off += 4 + buf.getInt(off);
+        } // for
+        return off;
+    } // skipTuple
+
+    /************************************************************************************
+     * Read the page directory: the number of the first tuple on each page, followed
+     * by the number of tuples in the file.
+     *
+     * @return the page directory (pages () + 1 entries)
+     * @throws IOException if the directory cannot be read
+     */
+    public int[] directory() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4 * (nPages + 1));
+        readFully(buf, dataStart + (long) nPages * PAGE_SIZE);
+        buf.flip();
+        int[] first = new int[nPages + 1];
+        buf.asIntBuffer().get(first);
+        return first;
+    } // directory
+
+    /************************************************************************************
+     * Map the data pages of the file into memory (read-only), in segments of the
+     * given number of pages, since one mapping cannot exceed 2 GB. The mappings stay
+     * valid after the file is closed, and the operating system shares their pages
+     * with every process mapping the same file.
+     *
+     * @param segPages the number of pages per segment
+     * @return the mapped segments (segment s holds pages s * segPages onwards)
+     * @throws IOException if the file cannot be mapped
+     */
+    public ByteBuffer[] map(int segPages) throws IOException {
+        ByteBuffer[] seg = new ByteBuffer[(nPages + segPages - 1) / segPages];
+        for (int s = 0; s < seg.length; s++) {
+            int n = Math.min(segPages, nPages - s * segPages);
+            seg[s] = ch.map(FileChannel.MapMode.READ_ONLY, dataStart + (long) s * segPages * PAGE_SIZE,
+                    (long) n * PAGE_SIZE);
+        } // for
+        return seg;
+    } // map
+
+    /************************************************************************************
+     * Close the file.
+     */
+    public void close() throws IOException {
+        ch.close();
+    } // close
+
+    /************************************************************************************
+     * Return the table name stored in the file.
+     *
+     * @return the table name
+     */
+    public String name() {
+        return name;
+    } // name
+
+    /************************************************************************************
+     * Return the attribute names stored in the file.
+     *
+     * @return the attribute names
+     */
+    public String[] attribute() {
+        return attribute;
+    } // attribute
+
+    /************************************************************************************
+     * Return the attribute domains stored in the file.
+     *
+     * @return the attribute domains
+     */
+    public Class[] domain() {
+        return domain;
+    } // domain
+
+    /************************************************************************************
+     * Return the primary key stored in the file.
+     *
+     * @return the primary key attribute names
+     */
+    public String[] key() {
+        return key;
+    } // key
+
+    /************************************************************************************
+     * Return the map type of the table's index.
+     *
+     * @return the map type
+     */
+    public Table.MapType mapType() {
+        return mType;
+    } // mapType
+
+    /************************************************************************************
+     * Return the storage layout of the table's tuples.
+     *
+     * @return the store type
+     */
+    public Table.StoreType storeType() {
+        return sType;
+    } // storeType
+
+    /************************************************************************************
+     * Return the number of tuples in the file.
+     *
+     * @return the tuple count
+     */
+    public long tuples() {
+        return nTuples;
+    } // tuples
+
+    /************************************************************************************
+     * Return the number of data pages in the file.
+     *
+     * @return the page count
+     */
+    public int pages() {
+        return nPages;
+    } // pages
+
+    /************************************************************************************
+     * Return the log sequence number of the last log record reflected in the file.
+     *
+     * @return the log sequence number (0 if none)
+     */
+    public long lsn() {
+        return lsn;
+    } // lsn
+
+    // ----------------------------------------------------------------------------------
+    // Private Methods
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Encode the schema part of the header.
+     */
+    private static byte[] schema(String name, String[] attribute, Class[] domain, String[] key,
+            Table.MapType mType, Table.StoreType sType) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        putString(out, name);
+        out.writeByte(mType.ordinal());
+        out.writeByte(sType.ordinal());
+        out.writeShort(attribute.length);
+        for (int j = 0; j < attribute.length; j++) {
+            putString(out, attribute[j]);
+            out.writeByte(domainCode(domain[j]));
+        } // for
+        out.writeShort(key.length);
+        for (String k : key)
+            putString(out, k);
+        return bytes.toByteArray();
+    } // schema
+
+    /************************************************************************************
+     * Return the code for the given domain.
+     */
+    private static int domainCode(Class type) {
+        for (int c = 0; c < DOMAINS.length; c++) {
+            if (DOMAINS[c] == type)
+                return c;
+        } // for
+        throw new IllegalArgumentException("PageFile: unsupported domain " + type.getName());
+    } // domainCode
+
+    /************************************************************************************
+     * Encode tuple t into buf (growing it as needed), leaving it positioned after
+     * the tuple.
+     */
+    static ByteBuffer encode(Comparable[] t, Class[] domain, ByteBuffer buf) {
+        int nullBytes = (domain.length + 7) >>> 3;
+        for (;;) {
+            try {
+                buf.clear();
+                buf.position(nullBytes);
+                for (int j = 0; j < nullBytes; j++)
+                    buf.put(j, (byte) 0);
+                for (int j = 0; j < domain.length; j++) {
+                    if (t[j] == null)
+                        buf.put(j >>> 3, (byte) (buf.get(j >>> 3) | (1 << (j & 7))));
+                    else
+                        put(buf, t[j]);
+                } // for
+                return buf;
+            } catch (BufferOverflowException ex) {
+                buf = ByteBuffer.allocate(buf.capacity() * 2);
+            } // try
+        } // for
+    } // encode
+
+    /************************************************************************************
+     * Determine whether tuple t fits in a page in its binary form (see encode), i.e.,
+     * takes at most MAX_TUPLE bytes. Strings are bounded by three bytes a character
+     * and only encoded when the bound is too large.
+     *
+     * @param t the tuple
+     * @return whether the tuple can be written
+     */
+    public static boolean fits(Comparable[] t) {
+        long size = (t.length + 7) >>> 3, slack = 0;
+        for (Comparable v : t) {
+            if (v instanceof String s) {
+                size += 4 + s.length();
+                slack += 2L * s.length();
+            } else if (v instanceof Integer || v instanceof Float) {
+                size += 4;
+            } else if (v instanceof Long || v instanceof Double) {
+                size += 8;
+            } else if (v instanceof Short || v instanceof Character) {
+                size += 2;
+            } else if (v != null) {
+                size += 1;
+            } // if
+        } // for
+        if (size + slack <= MAX_TUPLE)
+            return true;
+        if (size > MAX_TUPLE)
+            return false;
+        for (Comparable v : t) {
+            if (v instanceof String s)
+                size += s.getBytes(StandardCharsets.UTF_8).length - s.length();
+        } // for
+        return size <= MAX_TUPLE;
+    } // fits
+
+    /************************************************************************************
+     * Put a value in its binary form.
+     */
+    private static void put(ByteBuffer buf, Comparable v) {
+        if (v instanceof Integer i)
+            buf.putInt(i);
+        else if (v instanceof Long l)
+            buf.putLong(l);
+        else if (v instanceof Short s)
+            buf.putShort(s);
+        else if (v instanceof Byte b)
+            buf.put(b);
+        else if (v instanceof Double d)
+            buf.putDouble(d);
+        else if (v instanceof Float f)
+            buf.putFloat(f);
+        else if (v instanceof Character c)
+            buf.putChar(c);
+        else if (v instanceof String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            buf.putInt(b.length).put(b);
+        } else
+            throw new IllegalArgumentException("PageFile: unsupported value type " + v.getClass().getName());
+    } // put
+
+    /************************************************************************************
+     * Write a length-prefixed UTF-8 string to the header.
+     */
+    private static void putString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(b.length);
+        out.write(b);
+    } // putString
+
+    /************************************************************************************
+     * Read a length-prefixed UTF-8 string from the header.
+     */
+    private static String getString(ByteBuffer buf) {
+        byte[] b = new byte[buf.getShort() & 0xffff];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    } // getString
+
+    /************************************************************************************
+     * Close the page starting at the given position of io: fill in its header and
+     * skip to the end of the page (the unused tail is never read).
+     */
+    private static void endPage(ByteBuffer io, int page, int nInPage) {
+        io.putInt(page, nInPage);
+        io.putInt(page + 4, io.position() - page);
+        io.position(page + PAGE_SIZE);
+    } // endPage
+
+    /************************************************************************************
+     * Write the buffered pages at the given file position and empty the buffer.
+     *
+     * @return the number of bytes written
+     */
+    private static long flush(FileChannel out, ByteBuffer io, long pos) throws IOException {
+        io.flip();
+        long n = io.remaining();
+        while (io.hasRemaining())
+            pos += out.write(io, pos);
+        io.clear();
+        return n;
+    } // flush
+
+    /************************************************************************************
+     * Fill the buffer (up to its limit) from the file, starting at the given position.
+     */
+    private void readFully(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0)
+                throw new EOFException("PageFile: unexpected end of file");
+            pos += n;
+        } // while
+    } // readFully
+
+} // PageFile class
@@ -0,0 +1,215 @@
+package src;
+
+/****************************************************************************************
+ * @file  PagedStore.java
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This class provides access to the tuples of a saved table through a BufferPool, so
+ * that tables larger than the heap can be queried: only the pages in the pool are in
+ * memory, and tuples are decoded from a pinned page when they are read.
+ *
+ * The store is a List of tuples, so it can stand in for the tuple list of a Table.
+ * Like MappedStore, each thread keeps a cursor to where its last tuple ended. A tuple
+ * may be replaced with set, which re-encodes its page in the pool and marks it dirty
+ * (the page must still fit, see fits); set must not run concurrently with scans of
+ * the store.
+ * Tuples cannot be added or removed.
+ */
+public class PagedStore
+        extends AbstractList<Comparable[]>
+        implements RandomAccess, Closeable {
+
+    /**
+     * The buffer pool caching the file's pages.
+     */
+    private final BufferPool pool;
+
+    /**
+     * The table file.
+     */
+    private final PageFile file;
+
+    /**
+     * The attribute domains (used to decode tuples).
+     */
+    private final Class[] domain;
+
+    /**
+     * The page directory: the number of the first tuple on each page, then the size.
+     */
+    private final int[] first;
+
+    /**
+     * The number of pages re-encoded by set (cursors made before a change are stale).
+     */
+    private volatile int version = 0;
+
+    /**
+     * Each thread's cursor: the next tuple number, its page, its offset in the page
+     * and the version it was made at.
+     */
+    private final ThreadLocal<int[]> cursor = ThreadLocal.withInitial(() -> new int[] { -1, 0, 0, 0 });
+
+    /************************************************************************************
+     * Open the table file at the given path for access through the buffer pool.
+     *
+     * @param path     the path of the table file
+     * @param _pool    the buffer pool
+     * @param writable whether tuples may be replaced (and written back)
+     * @throws IOException if the file cannot be opened
+     */
+    public PagedStore(String path, BufferPool _pool, boolean writable) throws IOException {
+        pool = _pool;
+        file = new PageFile(path, writable);
+        domain = file.domain();
+        first = file.directory();
+    } // constructor
+
+    /************************************************************************************
+     * Return the page file the store reads.
+     *
+     * @return the page file
+     */
+    public PageFile file() {
+        return file;
+    } // file
+
+    /************************************************************************************
+     * Return the number of tuples in the store.
+     *
+     * @return the number of tuples
+     */
+    public int size() {
+        return first[first.length - 1];
+    } // size
+
+    /************************************************************************************
+     * Decode tuple i from its (pinned) page.
+     *
+     * @param i the tuple number
+     * @return a new array holding the tuple's values
+     */
+    public Comparable[] get(int i) {
+        Objects.checkIndex(i, size());
+        int[] c = cursor.get();
+        boolean fresh = c[3] == version;
+        int page = (fresh && c[0] == i) ? c[1] : PageFile.pageOf(first, i);
+
+        ByteBuffer buf = pool.pin(file, page);
+        try {
+            int off;
+            if (fresh && c[0] == i) {
+                off = c[2];
+            } else {
+                off = PageFile.PAGE_HEADER;
+                int from = first[page];
+                if (fresh && c[1] == page && c[0] >= from && c[0] < i) {
+                    from = c[0];
+                    off = c[2];
+                } // if
+                for (int k = from; k < i; k++)
+                    off = PageFile.skipTuple(buf, off, domain);
+            } // if
+
+            Comparable[] t = new Comparable[domain.length];
+            off = PageFile.decodeTuple(buf, off, domain, t);
+
+            // leave the cursor at the next tuple (the start of the next page after the last one)
+            c[0] = i + 1;
+            c[3] = version;
+            if (i + 1 == first[page + 1]) {
+                c[1] = page + 1;
+                c[2] = PageFile.PAGE_HEADER;
+            } else {
+                c[1] = page;
+                c[2] = off;
+            } // if
+            return t;
+        } finally {
+            pool.unpin(file, page, false);
+        } // try
+    } // get
+
+    /************************************************************************************
+     * Determine whether tuple i may be replaced by the given tuple, i.e., whether its
+     * page still fits with the new tuple in place of the old one.
+     *
+     * @param i   the tuple number
+     * @param tup the new values for the tuple
+     * @return whether set would succeed
+     */
+    public synchronized boolean fits(int i, Comparable[] tup) {
+        Objects.checkIndex(i, size());
+        int page = PageFile.pageOf(first, i);
+        ByteBuffer buf = pool.pin(file, page);
+        try {
+            int off = PageFile.PAGE_HEADER;
+            for (int k = first[page]; k < i; k++)
+                off = PageFile.skipTuple(buf, off, domain);
+            int oldLen = PageFile.skipTuple(buf, off, domain) - off;
+            int newLen = PageFile.encode(tup, domain, ByteBuffer.allocate(256)).position();
+            return buf.getInt(4) - oldLen + newLen <= PageFile.PAGE_SIZE;
+        } finally {
+            pool.unpin(file, page, false);
+        } // try
+    } // fits
+
+    /************************************************************************************
+     * Replace tuple i, re-encoding its page in the buffer pool. The page is written
+     * back when it is evicted or the store is flushed.
+     *
+     * @param i   the tuple number
+     * @param tup the new values for the tuple
+     * @return the old tuple
+     * @throws IllegalArgumentException if the page would no longer fit
+     */
+    public synchronized Comparable[] set(int i, Comparable[] tup) {
+        Objects.checkIndex(i, size());
+        int page = PageFile.pageOf(first, i);
+        ByteBuffer buf = pool.pin(file, page);
+        boolean changed = false;
+        try {
+            List<Comparable[]> rows = new ArrayList<>();
+            PageFile.decode(buf.duplicate().position(0), domain, rows);
+            Comparable[] old = rows.set(i - first[page], tup);
+
+            ByteBuffer scratch = ByteBuffer.allocate(PageFile.PAGE_SIZE);
+            PageFile.encodePage(rows, domain, scratch);
+            buf.put(0, scratch, 0, PageFile.PAGE_SIZE);
+            changed = true;
+            version++;
+            return old;
+        } finally {
+            pool.unpin(file, page, changed);
+        } // try
+    } // set
+
+    /************************************************************************************
+     * Write back the store's dirty pages.
+     *
+     * @throws IOException if a page cannot be written
+     */
+    public void flush() throws IOException {
+        pool.flush(file);
+    } // flush
+
+    /************************************************************************************
+     * Write back the store's dirty pages, drop its pages from the pool and close its
+     * file.
+     *
+     * @throws IOException if a page cannot be written
+     */
+    public void close() throws IOException {
+        try {
+            pool.release(file);
+        } finally {
+            file.close();
+        } // try
+    } // close
+
+} // PagedStore class
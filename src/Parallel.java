@@ -0,0 +1,219 @@
+package src;
+
+/****************************************************************************************
+ * @file  Parallel.java
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/****************************************************************************************
+ * This class provides the parallel execution mode for the relational operators. When
+ * enabled, an operator's scan over tuples 0 until n is cut into chunks that run as
+ * fork/join tasks; each chunk writes its own output, and the outputs are concatenated
+ * in chunk order, so results always come out in the same order as a sequential run.
+ * Chunk boundaries are multiples of 64, so chunks filling a shared selection bitmap
+ * never write the same word. Parallel execution is off by default; scans shorter than
+ * twice the threshold always run sequentially on the calling thread.
+ *
+ *     Parallel.enable (32);       // use a 32-thread fork/join pool
+ */
+public final class Parallel {
+    /**
+     * A body of work over the tuple positions from (inclusive) until to (exclusive)
+     * that adds its results to out.
+     */
+    public interface Chunk<T> {
+        void run(int from, int to, List<T> out);
+    } // Chunk
+
+    /**
+     * A body of work over the tuple positions from (inclusive) until to (exclusive).
+     */
+    public interface Range {
+        void run(int from, int to);
+    } // Range
+
+    /**
+     * The default minimum number of tuples per chunk.
+     */
+    private static final int DEFAULT_THRESHOLD = 8192;
+
+    /**
+     * The pool running the tasks (null when parallel execution is off).
+     */
+    private static volatile ForkJoinPool pool = null;
+
+    /**
+     * The minimum number of tuples per chunk.
+     */
+    private static volatile int threshold = DEFAULT_THRESHOLD;
+
+    /************************************************************************************
+     * This class only has static members.
+     */
+    private Parallel() {
+    } // constructor
+
+    /************************************************************************************
+     * Turn on parallel execution using a pool with the given number of threads.
+     *
+     * @param parallelism the number of worker threads
+     */
+    public static synchronized void enable(int parallelism) {
+        disable();
+        pool = new ForkJoinPool(parallelism);
+    } // enable
+
+    /************************************************************************************
+     * Turn off parallel execution (operators run on the calling thread).
+     */
+    public static synchronized void disable() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        } // if
+    } // disable
+
+    /************************************************************************************
+     * Determine whether parallel execution is on.
+     *
+     * @return whether operators run in parallel
+     */
+    public static boolean isEnabled() {
+        return pool != null;
+    } // isEnabled
+
+    /************************************************************************************
+     * Set the minimum number of tuples per chunk.
+     *
+     * @param _threshold the chunk size threshold (at least 64)
+     */
+    public static void setThreshold(int _threshold) {
+        threshold = Math.max(64, _threshold);
+    } // setThreshold
+
+    /************************************************************************************
+     * Run the body over the positions 0 until n, collecting the results of all the
+     * chunks in position order.
+     *
+     * @param n    the number of positions
+     * @param body the work for a chunk of positions
+     * @return the results in the order a sequential run would produce them
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> collect(int n, Chunk<T> body) {
+        ForkJoinPool p = pool;
+        int[] bounds = chunks(p, n);
+        if (bounds == null) {
+            List<T> out = new ArrayList<>();
+            body.run(0, n, out);
+            return out;
+        } // if
+
+        List<T>[] part = new List[bounds.length - 1];
+        p.invoke(new Split(bounds, (c, from, to) -> {
+            part[c] = new ArrayList<>();
+            body.run(from, to, part[c]);
+        }, 0, bounds.length - 1));
+
+        int size = 0;
+        for (List<T> q : part)
+            size += q.size();
+        List<T> out = new ArrayList<>(size);
+        for (List<T> q : part)
+            out.addAll(q);
+        return out;
+    } // collect
+
+    /************************************************************************************
+     * Run the body over the positions 0 until n (e.g., to fill a selection bitmap).
+     *
+     * @param n    the number of positions
+     * @param body the work for a chunk of positions
+     */
+    public static void forRange(int n, Range body) {
+        ForkJoinPool p = pool;
+        int[] bounds = chunks(p, n);
+        if (bounds == null)
+            body.run(0, n);
+        else
+            p.invoke(new Split(bounds, (c, from, to) -> body.run(from, to), 0, bounds.length - 1));
+    } // forRange
+
+    /************************************************************************************
+     * Run independent tasks (e.g., one per column) in the pool, or one after the
+     * other when parallel execution is off.
+     *
+     * @param tasks the tasks to run
+     */
+    public static void all(List<Runnable> tasks) {
+        ForkJoinPool p = pool;
+        if (p == null || tasks.size() < 2) {
+            tasks.forEach(Runnable::run);
+            return;
+        } // if
+        List<ForkJoinTask<?>> fs = new ArrayList<>();
+        for (Runnable t : tasks)
+            fs.add(p.submit(t));
+        for (ForkJoinTask<?> f : fs)
+            f.join();
+    } // all
+
+    /************************************************************************************
+     * Cut the positions 0 until n into chunks whose boundaries are multiples of 64.
+     *
+     * @param p the pool the chunks will run in (null if parallel execution is off)
+     * @param n the number of positions
+     * @return the chunk boundaries, or null if the scan should run sequentially
+     */
+    private static int[] chunks(ForkJoinPool p, int n) {
+        int t = threshold;
+        if (p == null || n < 2 * t)
+            return null;
+
+        int nChunks = Math.min(4 * p.getParallelism(), n / t);
+        int size = ((n / nChunks + 63) >>> 6) << 6;
+        nChunks = (n + size - 1) / size;
+        int[] bounds = new int[nChunks + 1];
+        for (int c = 1; c <= nChunks; c++)
+            bounds[c] = Math.min(n, c * size);
+        return bounds;
+    } // chunks
+
+    /**
+     * Work for chunk number c covering positions from until to.
+     */
+    private interface Indexed {
+        void run(int c, int from, int to);
+    } // Indexed
+
+    /************************************************************************************
+     * A fork/join task over the chunks lo until hi, split in halves down to one chunk.
+     */
+    private static final class Split
+            extends RecursiveAction {
+
+        final int[] bounds;
+        final Indexed body;
+        final int lo, hi;
+
+        Split(int[] _bounds, Indexed _body, int _lo, int _hi) {
+            bounds = _bounds;
+            body = _body;
+            lo = _lo;
+            hi = _hi;
+        } // constructor
+
+        protected void compute() {
+            if (hi - lo == 1) {
+                body.run(lo, bounds[lo], bounds[hi]);
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Split(bounds, body, lo, mid), new Split(bounds, body, mid, hi));
+            } // if
+        } // compute
+
+    } // Split class
+
+} // Parallel class
@@ -0,0 +1,556 @@
+package src;
+
+/****************************************************************************************
+ * @file  RoaringBitmap.java
+ */
+
+import java.util.*;
+
+/****************************************************************************************
+ * This class provides compressed bitmaps of non-negative ints (row numbers) in the
+ * style of Roaring bitmaps. The 32-bit values are split on their high 16 bits into
+ * chunks of 65536; each non-empty chunk keeps its low 16 bits in a container chosen
+ * by density: a sorted array of up to 4096 values (2 bytes per value), or else a
+ * bitmap of 1024 words (8 KB). Operations combine bitmaps a pair of containers at a
+ * time, so sparse and dense chunks are both handled compactly.
+ *
+ * The and, or and andNot operations return new bitmaps and leave their operands
+ * unchanged, so a bitmap may be shared (e.g., by a BitmapIndex) while it is queried.
+ */
+public class RoaringBitmap {
+    /**
+     * The largest number of values kept in an array container.
+     */
+    private static final int ARRAY_MAX = 4096;
+
+    /**
+     * The high 16 bits of the chunks (in increasing order).
+     */
+    private char[] keys = new char[4];
+
+    /**
+     * The container of each chunk.
+     */
+    private Container[] containers = new Container[4];
+
+    /**
+     * The number of (non-empty) chunks.
+     */
+    private int size = 0;
+
+    /************************************************************************************
+     * Construct an empty bitmap.
+     */
+    public RoaringBitmap() {
+    } // constructor
+
+    /************************************************************************************
+     * Return a bitmap of the values from 0 up to (not including) n.
+     *
+     * @param n the number of values
+     * @return the full bitmap
+     */
+    public static RoaringBitmap range(int n) {
+        RoaringBitmap r = new RoaringBitmap();
+        for (int hi = 0; (long) hi << 16 < n; hi++) {
+            int m = Math.min(1 << 16, n - (hi << 16));
+            Container c;
+            if (m <= ARRAY_MAX) {
+                char[] v = new char[m];
+                for (int i = 0; i < m; i++)
+                    v[i] = (char) i;
+                c = new ArrayContainer(v, m);
+            } else {
+                long[] w = new long[1024];
+                Arrays.fill(w, 0, m >>> 6, -1L);
+                if ((m & 63) != 0)
+                    w[m >>> 6] = (1L << m) - 1;
+                c = new BitmapContainer(w, m);
+            } // if
+            r.append((char) hi, c);
+        } // for
+        return r;
+    } // range
+
+    /************************************************************************************
+     * Add value x to the bitmap (fastest when values are added in increasing order).
+     *
+     * @param x the value (non-negative)
+     */
+    public void add(int x) {
+        char hi = (char) (x >>> 16);
+        int i = (size > 0 && keys[size - 1] == hi) ? size - 1 : find(hi);
+        if (i < 0) {
+            i = -i - 1;
+            insertAt(i, hi, new ArrayContainer(new char[4], 0));
+        } // if
+        containers[i] = containers[i].add((char) x);
+    } // add
+
+    /************************************************************************************
+     * Remove value x from the bitmap.
+     *
+     * @param x the value
+     */
+    public void remove(int x) {
+        int i = find((char) (x >>> 16));
+        if (i < 0)
+            return;
+        containers[i] = containers[i].remove((char) x);
+        if (containers[i].cardinality() == 0) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+            containers[--size] = null;
+        } // if
+    } // remove
+
+    /************************************************************************************
+     * Determine whether the bitmap contains value x.
+     *
+     * @param x the value
+     * @return whether x is in the bitmap
+     */
+    public boolean contains(int x) {
+        int i = find((char) (x >>> 16));
+        return i >= 0 && containers[i].contains((char) x);
+    } // contains
+
+    /************************************************************************************
+     * Return the number of values in the bitmap.
+     *
+     * @return the cardinality
+     */
+    public int cardinality() {
+        int n = 0;
+        for (int i = 0; i < size; i++)
+            n += containers[i].cardinality();
+        return n;
+    } // cardinality
+
+    /************************************************************************************
+     * Determine whether the bitmap is empty.
+     *
+     * @return whether there are no values
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    } // isEmpty
+
+    /************************************************************************************
+     * Return the approximate memory used by the containers in bytes.
+     *
+     * @return the size in bytes
+     */
+    public long bytes() {
+        long b = 3L * keys.length + 8L * containers.length;
+        for (int i = 0; i < size; i++)
+            b += containers[i].bytes();
+        return b;
+    } // bytes
+
+    /************************************************************************************
+     * Return the values of the bitmap in increasing order.
+     *
+     * @return the values
+     */
+    public int[] toArray() {
+        int[] out = new int[cardinality()];
+        int at = 0;
+        for (int i = 0; i < size; i++)
+            at = containers[i].fill(out, at, keys[i] << 16);
+        return out;
+    } // toArray
+
+    /************************************************************************************
+     * Intersect two bitmaps.
+     *
+     * @param a the first bitmap
+     * @param b the second bitmap
+     * @return a new bitmap of the values in both
+     */
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap r = new RoaringBitmap();
+        for (int i = 0, j = 0; i < a.size && j < b.size;) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container c = a.containers[i].and(b.containers[j]);
+                if (c.cardinality() > 0)
+                    r.append(a.keys[i], c);
+                i++;
+                j++;
+            } // if
+        } // for
+        return r;
+    } // and
+
+    /************************************************************************************
+     * Unite two bitmaps.
+     *
+     * @param a the first bitmap
+     * @param b the second bitmap
+     * @return a new bitmap of the values in either
+     */
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap r = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                r.append(a.keys[i], a.containers[i++].copy());
+            } else if (a.keys[i] > b.keys[j]) {
+                r.append(b.keys[j], b.containers[j++].copy());
+            } else {
+                r.append(a.keys[i], a.containers[i++].or(b.containers[j++]));
+            } // if
+        } // while
+        for (; i < a.size; i++)
+            r.append(a.keys[i], a.containers[i].copy());
+        for (; j < b.size; j++)
+            r.append(b.keys[j], b.containers[j].copy());
+        return r;
+    } // or
+
+    /************************************************************************************
+     * Subtract one bitmap from another.
+     *
+     * @param a the bitmap to subtract from
+     * @param b the bitmap to subtract
+     * @return a new bitmap of the values in a but not in b
+     */
+    public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap r = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            while (j < b.size && b.keys[j] < a.keys[i])
+                j++;
+            Container c = (j < b.size && b.keys[j] == a.keys[i])
+                    ? a.containers[i].andNot(b.containers[j]) : a.containers[i].copy();
+            if (c.cardinality() > 0)
+                r.append(a.keys[i], c);
+        } // for
+        return r;
+    } // andNot
+
+    /************************************************************************************
+     * Convert the bitmap to a string.
+     *
+     * @return the values as a string
+     */
+    public String toString() {
+        return Arrays.toString(toArray());
+    } // toString
+
+    // ----------------------------------------------------------------------------------
+    // Private Methods
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return the position of the chunk with the given high bits, or -(insertion
+     * point) - 1 if there is none.
+     */
+    private int find(char hi) {
+        return Arrays.binarySearch(keys, 0, size, hi);
+    } // find
+
+    /************************************************************************************
+     * Insert a chunk at position i.
+     */
+    private void insertAt(int i, char hi, Container c) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+            containers = Arrays.copyOf(containers, 2 * size);
+        } // if
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = hi;
+        containers[i] = c;
+        size++;
+    } // insertAt
+
+    /************************************************************************************
+     * Append a chunk after the last one.
+     */
+    private void append(char hi, Container c) {
+        insertAt(size, hi, c);
+    } // append
+
+    // ----------------------------------------------------------------------------------
+    // Containers
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * The low 16 bits of the values in one chunk. Updates return the container to use
+     * from then on, which may be of the other kind.
+     */
+    private static abstract class Container {
+        abstract Container add(char x);
+        abstract Container remove(char x);
+        abstract boolean contains(char x);
+        abstract int cardinality();
+        abstract Container and(Container o);
+        abstract Container or(Container o);
+        abstract Container andNot(Container o);
+        abstract Container copy();
+        abstract int fill(int[] out, int at, int high);
+        abstract long bytes();
+    } // Container
+
+    /************************************************************************************
+     * A sorted array of up to ARRAY_MAX values.
+     */
+    private static final class ArrayContainer
+            extends Container {
+
+        private char[] content;
+        private int card;
+
+        ArrayContainer(char[] _content, int _card) {
+            content = _content;
+            card = _card;
+        } // constructor
+
+        Container add(char x) {
+            int i = (card == 0 || content[card - 1] < x) ? -card - 1 : Arrays.binarySearch(content, 0, card, x);
+            if (i >= 0)
+                return this;
+            if (card == ARRAY_MAX)
+                return toBitmap().add(x);
+            i = -i - 1;
+            if (card == content.length)
+                content = Arrays.copyOf(content, Math.min(ARRAY_MAX, Math.max(4, 2 * card)));
+            System.arraycopy(content, i, content, i + 1, card - i);
+            content[i] = x;
+            card++;
+            return this;
+        } // add
+
+        Container remove(char x) {
+            int i = Arrays.binarySearch(content, 0, card, x);
+            if (i >= 0) {
+                System.arraycopy(content, i + 1, content, i, card - i - 1);
+                card--;
+            } // if
+            return this;
+        } // remove
+
+        boolean contains(char x) {
+            return Arrays.binarySearch(content, 0, card, x) >= 0;
+        } // contains
+
+        int cardinality() {
+            return card;
+        } // cardinality
+
+        Container and(Container o) {
+            char[] v = new char[card];
+            int n = 0;
+            if (o instanceof ArrayContainer) {
+                ArrayContainer b = (ArrayContainer) o;
+                for (int i = 0, j = 0; i < card && j < b.card;) {
+                    if (content[i] < b.content[j])
+                        i++;
+                    else if (content[i] > b.content[j])
+                        j++;
+                    else {
+                        v[n++] = content[i++];
+                        j++;
+                    } // if
+                } // for
+            } else {
+                for (int i = 0; i < card; i++) {
+                    if (o.contains(content[i]))
+                        v[n++] = content[i];
+                } // for
+            } // if
+            return new ArrayContainer(v, n);
+        } // and
+
+        Container or(Container o) {
+            if (o instanceof BitmapContainer)
+                return o.or(this);
+            ArrayContainer b = (ArrayContainer) o;
+            if (card + b.card > ARRAY_MAX) {
+                BitmapContainer r = toBitmap();
+                for (int j = 0; j < b.card; j++)
+                    r.set(b.content[j]);
+                return r.normalize();
+            } // if
+            char[] v = new char[card + b.card];
+            int n = 0, i = 0, j = 0;
+            while (i < card && j < b.card) {
+                if (content[i] < b.content[j])
+                    v[n++] = content[i++];
+                else if (content[i] > b.content[j])
+                    v[n++] = b.content[j++];
+                else {
+                    v[n++] = content[i++];
+                    j++;
+                } // if
+            } // while
+            while (i < card)
+                v[n++] = content[i++];
+            while (j < b.card)
+                v[n++] = b.content[j++];
+            return new ArrayContainer(v, n);
+        } // or
+
+        Container andNot(Container o) {
+            char[] v = new char[card];
+            int n = 0;
+            for (int i = 0; i < card; i++) {
+                if (!o.contains(content[i]))
+                    v[n++] = content[i];
+            } // for
+            return new ArrayContainer(v, n);
+        } // andNot
+
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(content, Math.max(card, 1)), card);
+        } // copy
+
+        int fill(int[] out, int at, int high) {
+            for (int i = 0; i < card; i++)
+                out[at++] = high | content[i];
+            return at;
+        } // fill
+
+        long bytes() {
+            return 2L * content.length + 16;
+        } // bytes
+
+        BitmapContainer toBitmap() {
+            BitmapContainer r = new BitmapContainer(new long[1024], 0);
+            for (int i = 0; i < card; i++)
+                r.set(content[i]);
+            return r;
+        } // toBitmap
+
+    } // ArrayContainer class
+
+    /************************************************************************************
+     * A bitmap of all 65536 values of a chunk, for more than ARRAY_MAX values.
+     */
+    private static final class BitmapContainer
+            extends Container {
+
+        private final long[] words;
+        private int card;
+
+        BitmapContainer(long[] _words, int _card) {
+            words = _words;
+            card = _card;
+        } // constructor
+
+        void set(char x) {
+            long before = words[x >>> 6];
+            words[x >>> 6] |= 1L << x;
+            if (before != words[x >>> 6])
+                card++;
+        } // set
+
+        Container add(char x) {
+            set(x);
+            return this;
+        } // add
+
+        void unset(char x) {
+            long before = words[x >>> 6];
+            words[x >>> 6] &= ~(1L << x);
+            if (before != words[x >>> 6])
+                card--;
+        } // unset
+
+        Container remove(char x) {
+            unset(x);
+            return normalize();
+        } // remove
+
+        boolean contains(char x) {
+            return (words[x >>> 6] & (1L << x)) != 0;
+        } // contains
+
+        int cardinality() {
+            return card;
+        } // cardinality
+
+        Container and(Container o) {
+            if (o instanceof ArrayContainer)
+                return o.and(this);
+            long[] b = ((BitmapContainer) o).words;
+            long[] w = new long[1024];
+            int n = 0;
+            for (int k = 0; k < 1024; k++)
+                n += Long.bitCount(w[k] = words[k] & b[k]);
+            return new BitmapContainer(w, n).normalize();
+        } // and
+
+        Container or(Container o) {
+            long[] w = words.clone();
+            BitmapContainer r = new BitmapContainer(w, card);
+            if (o instanceof ArrayContainer) {
+                ArrayContainer a = (ArrayContainer) o;
+                for (int i = 0; i < a.card; i++)
+                    r.set(a.content[i]);
+                return r;
+            } // if
+            long[] b = ((BitmapContainer) o).words;
+            int n = 0;
+            for (int k = 0; k < 1024; k++)
+                n += Long.bitCount(w[k] |= b[k]);
+            r.card = n;
+            return r;
+        } // or
+
+        Container andNot(Container o) {
+            long[] w = words.clone();
+            BitmapContainer r = new BitmapContainer(w, card);
+            if (o instanceof ArrayContainer) {
+                ArrayContainer a = (ArrayContainer) o;
+                for (int i = 0; i < a.card; i++)
+                    r.unset(a.content[i]);
+                return r.normalize();
+            } // if
+            long[] b = ((BitmapContainer) o).words;
+            int n = 0;
+            for (int k = 0; k < 1024; k++)
+                n += Long.bitCount(w[k] &= ~b[k]);
+            r.card = n;
+            return r.normalize();
+        } // andNot
+
+        Container copy() {
+            return new BitmapContainer(words.clone(), card);
+        } // copy
+
+        int fill(int[] out, int at, int high) {
+            for (int k = 0; k < 1024; k++) {
+                for (long w = words[k]; w != 0; w &= w - 1)
+                    out[at++] = high | (k << 6) | Long.numberOfTrailingZeros(w);
+            } // for
+            return at;
+        } // fill
+
+        long bytes() {
+            return 8L * 1024 + 16;
+        } // bytes
+
+        /**
+         * Return an array container instead if there are few enough values.
+         */
+        Container normalize() {
+            if (card > ARRAY_MAX)
+                return this;
+            char[] v = new char[Math.max(card, 1)];
+            int n = 0;
+            for (int k = 0; k < 1024; k++) {
+                for (long w = words[k]; w != 0; w &= w - 1)
+                    v[n++] = (char) ((k << 6) | Long.numberOfTrailingZeros(w));
+            } // for
+            return new ArrayContainer(v, n);
+        } // normalize
+
+    } // BitmapContainer class
+
+} // RoaringBitmap class
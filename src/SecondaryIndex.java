@@ -0,0 +1,228 @@
+package src;
+
+/****************************************************************************************
+ * @file  SecondaryIndex.java
+ */
+
+import java.util.*;
+
+/****************************************************************************************
+ * This class provides a secondary index on (non-key) attributes of a table, mapping
+ * each value of the indexed attributes to the row numbers of the tuples holding it
+ * (their positions in the table's tuple list). Any of the table's map types may hold
+ * the index: TreeMap and BPTreeMap keep values in order and also answer range scans.
+ *
+ * Each value's rows are kept in a posting array whose first slot holds the number of
+ * rows, so that adding a row rarely reallocates. The index does not check uniqueness
+ * or whether rows are still live; the owning Table does (see Table.createIndex).
+ */
+public class SecondaryIndex {
+    /**
+     * The indexed attributes.
+     */
+    private final String[] attribute;
+
+    /**
+     * The positions of the indexed attributes in the table's tuples.
+     */
+    private final int[] cols;
+
+    /**
+     * Whether each value may occur in at most one (live) tuple.
+     */
+    private final boolean unique;
+
+    /**
+     * The map from values of the indexed attributes to posting arrays of row numbers.
+     */
+    private final Map<KeyType, int[]> map;
+
+    /************************************************************************************
+     * Construct an empty secondary index.
+     *
+     * @param _attribute the indexed attributes
+     * @param _cols      their positions in the table's tuples
+     * @param _unique    whether the indexed values are unique
+     * @param _map       the (empty) map to hold the index
+     */
+    SecondaryIndex(String[] _attribute, int[] _cols, boolean _unique, Map<KeyType, int[]> _map) {
+        attribute = _attribute;
+        cols = _cols;
+        unique = _unique;
+        map = _map;
+    } // constructor
+
+    /************************************************************************************
+     * Return the indexed attributes.
+     *
+     * @return the attribute names
+     */
+    public String[] attributes() {
+        return attribute.clone();
+    } // attributes
+
+    /************************************************************************************
+     * Return the positions of the indexed attributes in the table's tuples.
+     *
+     * @return the column positions
+     */
+    int[] cols() {
+        return cols;
+    } // cols
+
+    /************************************************************************************
+     * Return whether the indexed values are unique.
+     *
+     * @return whether the index is unique
+     */
+    public boolean isUnique() {
+        return unique;
+    } // isUnique
+
+    /************************************************************************************
+     * Return whether the index keeps values in order (and so answers range scans).
+     *
+     * @return whether the index is ordered
+     */
+    public boolean isOrdered() {
+        return map instanceof NavigableMap || map instanceof BPTreeMap;
+    } // isOrdered
+
+    /************************************************************************************
+     * Determine whether the index is on exactly the given attributes (in any order).
+     *
+     * @param attrs the attribute names
+     * @return whether the index covers just those attributes
+     */
+    public boolean isOn(String[] attrs) {
+        return attrs.length == attribute.length
+                && new HashSet<>(Arrays.asList(attrs)).containsAll(Arrays.asList(attribute));
+    } // isOn
+
+    /************************************************************************************
+     * Return the number of distinct values in the index.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return map.size();
+    } // size
+
+    /************************************************************************************
+     * Return the posting array for the given value: slot 0 holds the number of rows n,
+     * and slots 1 to n the row numbers. The array must not be modified.
+     *
+     * @param k the value of the indexed attributes
+     * @return the posting array, or null if no row holds the value
+     */
+    int[] posting(KeyType k) {
+        return map.get(k);
+    } // posting
+
+    /************************************************************************************
+     * Return the row numbers of the tuples holding the given value, in row order.
+     *
+     * @param k the value of the indexed attributes
+     * @return the row numbers (empty if none)
+     */
+    public int[] rows(KeyType k) {
+        int[] p = map.get(k);
+        if (p == null)
+            return new int[0];
+        int[] rows = Arrays.copyOfRange(p, 1, p[0] + 1);
+        Arrays.sort(rows);
+        return rows;
+    } // rows
+
+    /************************************************************************************
+     * Return the row numbers of the tuples whose values are in the range lo to hi
+     * (inclusive), in row order.
+     *
+     * @param lo the lowest value (null for no lower bound)
+     * @param hi the highest value (null for no upper bound)
+     * @return the row numbers, or null if the index is not ordered
+     */
+    @SuppressWarnings("unchecked")
+    public int[] rows(KeyType lo, KeyType hi) {
+        if (lo != null && hi != null && lo.compareTo(hi) > 0)
+            return new int[0];
+
+        Iterator<int[]> it;
+        if (map instanceof NavigableMap) {
+            var sub = (NavigableMap<KeyType, int[]>) map;
+            if (lo != null)
+                sub = sub.tailMap(lo, true);
+            if (hi != null)
+                sub = sub.headMap(hi, true);
+            it = sub.values().iterator();
+        } else if (map instanceof BPTreeMap) {
+            var range = ((BPTreeMap<KeyType, int[]>) map).rangeIterator(lo, hi);
+            it = new Iterator<>() {
+                public boolean hasNext() { return range.hasNext(); }
+                public int[] next() { return range.next().getValue(); }
+            };
+        } else {
+            return null;
+        } // if
+
+        int[] rows = new int[16];
+        int n = 0;
+        while (it.hasNext()) {
+            int[] p = it.next();
+            if (n + p[0] > rows.length)
+                rows = Arrays.copyOf(rows, Math.max(2 * rows.length, n + p[0]));
+            System.arraycopy(p, 1, rows, n, p[0]);
+            n += p[0];
+        } // while
+        rows = Arrays.copyOf(rows, n);
+        Arrays.sort(rows);
+        return rows;
+    } // rows
+
+    /************************************************************************************
+     * Add a row holding the given value.
+     *
+     * @param k   the value of the indexed attributes
+     * @param row the row number
+     */
+    void add(KeyType k, int row) {
+        int[] p = map.get(k);
+        if (p == null) {
+            map.put(k, new int[] { 1, row });
+            return;
+        } // if
+        if (p[0] + 1 == p.length) {
+            p = Arrays.copyOf(p, 2 * p.length);
+            map.put(k, p);
+        } // if
+        p[++p[0]] = row;
+    } // add
+
+    /************************************************************************************
+     * Remove a row holding the given value.
+     *
+     * @param k   the value of the indexed attributes
+     * @param row the row number
+     */
+    void remove(KeyType k, int row) {
+        int[] p = map.get(k);
+        if (p == null)
+            return;
+        for (int i = 1; i <= p[0]; i++) {
+            if (p[i] == row) {
+                p[i] = p[p[0]--];
+                break;
+            } // if
+        } // for
+        if (p[0] == 0)
+            map.remove(k);
+    } // remove
+
+    /************************************************************************************
+     * Remove every row from the index.
+     */
+    void clear() {
+        map.clear();
+    } // clear
+
+} // SecondaryIndex class
@@ -13,15 +13,15 @@ import java.util.stream.*;
 
 import static java.lang.Boolean.*;
 import static java.lang.System.out;
+import static src.Trace.Channel.*;
 
 /****************************************************************************************
  * This class implements relational database tables (including attribute names,
  * domains
  * and a list of tuples. Five basic relational algebra operators are provided:
  * project,
- * select, union, minus and join. The insert data manipulation operator is also
- * provided.
- * Missing are update and delete data manipulation operators.
+ * select, union, minus and join. The insert, update and delete data manipulation
+ * operators are also provided.
  */
 public class Table
         implements Serializable {
@@ -35,6 +35,11 @@ public class Table
      */
     private static final String EXT = ".dbf";
 
+    /**
+     * Filename extension for write-ahead log files
+     */
+    private static final String LOG = ".wal";
+
     /**
      * Counter for naming temporary tables.
      */
@@ -68,11 +73,87 @@ public class Table
      */
     private final String[] key;
 
+    /**
+     * The type of map used for the index.
+     */
+    private final MapType mType;
+
     /**
      * Index into tuples (maps key to tuple number).
      */
     private final Map<KeyType, Comparable[]> index;
 
+    /**
+     * The write-ahead log of changes (null when changes are not logged).
+     */
+    private transient WriteAheadLog wal = null;
+
+    /**
+     * The LSN of the last logged change reflected in the tuples.
+     */
+    private long lsn = 0;
+
+    /**
+     * The number of logged records that triggers a checkpoint (0 for none).
+     */
+    private long checkpointEvery = 0;
+
+    /**
+     * The number of logged records at which the next checkpoint is due. A failed
+     * checkpoint is retried only after another checkpointEvery records.
+     */
+    private long checkpointAt = 0;
+
+    /**
+     * The fraction of dead rows past which a delete compacts the tuples (see compact).
+     */
+    private static final double MAX_DEAD = 0.25;
+
+    /**
+     * Row numbers of deleted tuples still in the tuple list. Scans skip them, and they
+     * are removed in one pass (see compact) once they make up MAX_DEAD of the rows.
+     */
+    private final BitSet deadRows = new BitSet();
+
+    /**
+     * The number of dead rows, kept so that it need not be counted from deadRows.
+     */
+    private int deadCount = 0;
+
+    /**
+     * The row numbers of a row-oriented tuple list's tuples by identity, so that a
+     * tuple found with the index can be deleted or replaced in place (built on first
+     * use and dropped when rows move, see rowOf).
+     */
+    private Map<Comparable[], Integer> rowNumber = null;
+
+    /**
+     * The secondary indexes on other attributes, mapping their values to row numbers.
+     * They are kept in memory only: save does not store them.
+     */
+    private final List<SecondaryIndex> secondary = new ArrayList<>();
+
+    /**
+     * The bitmap indexes on low-cardinality attributes, by attribute (in memory only).
+     */
+    private final Map<String, BitmapIndex> bitmaps = new LinkedHashMap<>();
+
+    /**
+     * The supported map types for the index: TreeMap and BPTreeMap keep keys in
+     * order (range scans), LinHashMap and ExtHashMap favor point lookups.
+     */
+    public enum MapType {
+        TREE_MAP, BPTREE_MAP, LINHASH_MAP, EXTHASH_MAP
+    } // MapType
+
+    /**
+     * The supported tuple storage layouts: ROW keeps a list of tuple arrays, COLUMN
+     * keeps primitive/dictionary-encoded column vectors (see ColumnStore).
+     */
+    public enum StoreType {
+        ROW, COLUMN
+    } // StoreType
+
     // ----------------------------------------------------------------------------------
     // Constructors
     // ----------------------------------------------------------------------------------
@@ -86,14 +167,39 @@ public class Table
      * @param _key       the primary key
      */
     public Table(String _name, String[] _attribute, Class[] _domain, String[] _key) {
-        name = _name;
-        attribute = _attribute;
-        domain = _domain;
-        key = _key;
-        tuples = new ArrayList<>();
-        index = new TreeMap<>(); // also try BPTreeMap, LinHashMap or ExtHashMap
-        // index = new LinHashMap <> (KeyType.class, Comparable [].class);
+        this(_name, _attribute, _domain, _key, MapType.TREE_MAP);
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty table from the meta-data specifications, using the given
+     * type of map for its primary-key index.
+     *
+     * @param _name      the name of the relation
+     * @param _attribute the string containing attributes names
+     * @param _domain    the string containing attribute domains (data types)
+     * @param _key       the primary key
+     * @param _mType     the type of map to use for the index
+     */
+    public Table(String _name, String[] _attribute, Class[] _domain, String[] _key,
+            MapType _mType) {
+        this(_name, _attribute, _domain, _key, _mType, StoreType.ROW);
+    } // constructor
 
+    /************************************************************************************
+     * Construct an empty table from the meta-data specifications, using the given
+     * type of map for its primary-key index and the given storage layout.
+     *
+     * @param _name      the name of the relation
+     * @param _attribute the string containing attributes names
+     * @param _domain    the string containing attribute domains (data types)
+     * @param _key       the primary key
+     * @param _mType     the type of map to use for the index
+     * @param _sType     the storage layout for the tuples
+     */
+    public Table(String _name, String[] _attribute, Class[] _domain, String[] _key,
+            MapType _mType, StoreType _sType) {
+        this(_name, _attribute, _domain, _key,
+                (_sType == StoreType.COLUMN) ? new ColumnStore(_domain) : new ArrayList<>(), _mType);
     } // constructor
 
     /************************************************************************************
@@ -107,12 +213,32 @@ public class Table
      */
     public Table(String _name, String[] _attribute, Class[] _domain, String[] _key,
             List<Comparable[]> _tuples) {
+        this(_name, _attribute, _domain, _key, _tuples, MapType.TREE_MAP);
+    } // constructor
+
+    /************************************************************************************
+     * Construct a table from the meta-data specifications and data in _tuples list,
+     * using the given type of map for its primary-key index. When _tuples is a
+     * ColumnStore, the index maps keys to row numbers rather than to tuples.
+     *
+     * @param _name      the name of the relation
+     * @param _attribute the string containing attributes names
+     * @param _domain    the string containing attribute domains (data types)
+     * @param _key       the primary key
+     * @param _tuples    the list of tuples containing the data
+     * @param _mType     the type of map to use for the index
+     */
+    public Table(String _name, String[] _attribute, Class[] _domain, String[] _key,
+            List<Comparable[]> _tuples, MapType _mType) {
         name = _name;
         attribute = _attribute;
         domain = _domain;
         key = _key;
         tuples = _tuples;
-        index = new TreeMap<>(); // also try BPTreeMap, LinHashMap or ExtHashMap
+        mType = _mType;
+        index = (_tuples instanceof ColumnStore)
+                ? new ColumnStore.RowIndex(makeMap(_mType, Integer.class), (ColumnStore) _tuples)
+                : makeMap(_mType, Comparable[].class);
     } // constructor
 
     /************************************************************************************
@@ -123,9 +249,42 @@ public class Table
      * @param domains    the string containing attribute domains (data types)
      */
     public Table(String name, String attributes, String domains, String _key) {
-        this(name, attributes.split(" "), findClass(domains.split(" ")), _key.split(" "));
+        this(name, attributes, domains, _key, MapType.TREE_MAP);
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty table from the raw string specifications, using the given
+     * type of map for its primary-key index.
+     *
+     * #usage new Table ("student", "id name", "Integer String", "id", MapType.LINHASH_MAP)
+     *
+     * @param name       the name of the relation
+     * @param attributes the string containing attributes names
+     * @param domains    the string containing attribute domains (data types)
+     * @param _mType     the type of map to use for the index
+     */
+    public Table(String name, String attributes, String domains, String _key, MapType _mType) {
+        this(name, attributes, domains, _key, _mType, StoreType.ROW);
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty table from the raw string specifications, using the given
+     * type of map for its primary-key index and the given storage layout.
+     *
+     * #usage new Table ("student", "id name", "Integer String", "id", MapType.TREE_MAP, StoreType.COLUMN)
+     *
+     * @param name       the name of the relation
+     * @param attributes the string containing attributes names
+     * @param domains    the string containing attribute domains (data types)
+     * @param _mType     the type of map to use for the index
+     * @param _sType     the storage layout for the tuples
+     */
+    public Table(String name, String attributes, String domains, String _key, MapType _mType,
+            StoreType _sType) {
+        this(name, attributes.split(" "), findClass(domains.split(" ")), _key.split(" "), _mType, _sType);
 
-        out.println("DDL> create table " + name + " (" + attributes + ")");
+        if (Trace.on(DDL))
+            Trace.log(DDL, "create table " + name + " (" + attributes + ")");
     } // constructor
 
     // ----------------------------------------------------------------------------------
@@ -135,7 +294,11 @@ public class Table
     /************************************************************************************
      * Project the tuples onto a lower dimension by keeping only the given
      * attributes.
-     * Check whether the original key is included in the projection.
+     * Check whether the original key is included in the projection: if so (and the
+     * index vouches that the key is unique), the projected tuples are already
+     * distinct and are copied straight through; otherwise duplicates are eliminated
+     * by hashing. The column positions are
+     * resolved once, and at most one output array is allocated per tuple.
      *
      * #usage movie.project ("title year studioNo")
      *
@@ -143,18 +306,58 @@ public class Table
      * @return a table of projected tuples
      */
     public Table project(String attributes) {
-        out.println("RA> " + name + ".project (" + attributes + ")");
-        String[] attrs = attributes.split(" ");
-        Class[] colDomain = extractDom(match(attrs), domain);
-        String[] newKey = (Arrays.asList(attrs).containsAll(Arrays.asList(key))) ? key : attrs;
-
-        List<Comparable[]> rows = new ArrayList<>();
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".project (" + attributes + ")");
+        try (Metrics.Span span = Metrics.start("project", name, tuples.size())) {
+            span.scan();
+            String[] attrs = attributes.split(" ");
+            int[] cols = match(attrs);
+            Class[] colDomain = extractDom(cols, domain);
+            boolean hasKey = Arrays.asList(attrs).containsAll(Arrays.asList(key));
+            String[] newKey = hasKey ? key : attrs;
+
+            // the tuples are known to be distinct on the key only when the index holds them all
+            boolean distinct = hasKey && indexCovers();
+
+            List<Comparable[]> rows;
+            if (tuples instanceof ColumnStore) {
+                // dedup compares column cells in place, then the kept rows are gathered
+                ColumnStore cs = (ColumnStore) tuples;
+                int[] sel = distinct ? liveRows() : cs.distinct(cols, deadRows);
+                rows = cs.gather(sel, (sel == null) ? 0 : sel.length, cols);
+            } else if (distinct) {
+                rows = Parallel.collect(tuples.size(), (from, to, out) -> {
+                    for (int i = from; i < to; i++) {
+                        if (!deadRows.get(i))
+                            out.add(extract(tuples.get(i), cols));
+                    } // for
+                });
+            } else {
+                // each chunk drops its own duplicates; a final pass merges across chunks
+                rows = Parallel.collect(tuples.size(), (from, to, out) -> {
+                    TupleSet seen = new TupleSet();
+                    for (int i = from; i < to; i++) {
+                        if (deadRows.get(i))
+                            continue;
+                        Comparable[] tup = seen.add(tuples.get(i), cols);
+                        if (tup != null)
+                            out.add(tup);
+                    } // for
+                });
+                if (Parallel.isEnabled()) {
+                    TupleSet seen = new TupleSet();
+                    rows.removeIf(tup -> seen.add(tup, null) == null);
+                } // if
+            } // if
 
-        return new Table(name + count++, attrs, colDomain, newKey, rows);
+            return done(span, new Table(name + count++, attrs, colDomain, newKey, rows));
+        } // try
     } // project
 
     /************************************************************************************
-     * Select the tuples satisfying the given predicate (Boolean function).
+     * Select the tuples satisfying the given predicate (Boolean function). In the
+     * parallel execution mode (see Parallel), the predicate is tested concurrently
+     * on chunks of the tuples, so it must be thread-safe.
      *
      * #usage movie.select (t -> t[movie.col("year")].equals (1977))
      *
@@ -162,11 +365,35 @@ public class Table
      * @return a table with tuples satisfying the predicate
      */
     public Table select(Predicate<Comparable[]> predicate) {
-        out.println("RA> " + name + ".select (" + predicate + ")");
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".select (" + predicate + ")");
+        try (Metrics.Span span = Metrics.start("select", name, tuples.size())) {
+            span.scan();
+
+            if (tuples instanceof ColumnStore) {
+                // test each row through a reused buffer, then gather the selected rows
+                ColumnStore cs = (ColumnStore) tuples;
+                long[] bits = new long[Condition.words(cs.size())];
+                Parallel.forRange(cs.size(), (from, to) -> {
+                    Comparable[] buf = new Comparable[attribute.length];
+                    for (int i = from; i < to; i++) {
+                        if (!deadRows.get(i) && predicate.test(cs.row(i, buf)))
+                            bits[i >>> 6] |= 1L << i;
+                    } // for
+                });
+                return done(span, new Table(name + count++, attribute, domain, key, gather(bits)));
+            } // if
+
+            List<Comparable[]> rows = Parallel.collect(tuples.size(), (from, to, out) -> {
+                for (int i = from; i < to; i++) {
+                    Comparable[] tup = tuples.get(i);
+                    if (!deadRows.get(i) && predicate.test(tup))
+                        out.add(tup);
+                } // for
+            });
 
-        return new Table(name + count++, attribute, domain, key,
-                tuples.stream().filter(t -> predicate.test(t))
-                        .collect(Collectors.toList()));
+            return done(span, new Table(name + count++, attribute, domain, key, rows));
+        } // try
     } // select
 
     /************************************************************************************
@@ -178,27 +405,32 @@ public class Table
      * @return a table with the tuple satisfying the key predicate
      */
     public Table noIndexSelect(KeyType keyVal) {
-        ArrayList<Integer> keyIndexes = new ArrayList<Integer>();
-        HashSet keyNames = new HashSet(Arrays.asList(key));
-        for (int i = 0; i < attribute.length; i++) {
-            if (keyNames.contains(attribute[i])) {
-                keyIndexes.add(i);
-            }
-        }
-        List<Comparable[]> rows = new ArrayList<>();
-        for (int i = 0; i < tuples.size(); i++) {
-            Comparable[] currentTuple = tuples.get(i);
-            List<Comparable> keyValues = new ArrayList<Comparable>();
-            for (int j = 0; j < keyIndexes.size(); j++) {
-                keyValues.add(currentTuple[keyIndexes.get(j)]);
+        try (Metrics.Span span = Metrics.start("noIndexSelect", name, tuples.size())) {
+            span.scan();
+            ArrayList<Integer> keyIndexes = new ArrayList<Integer>();
+            HashSet keyNames = new HashSet(Arrays.asList(key));
+            for (int i = 0; i < attribute.length; i++) {
+                if (keyNames.contains(attribute[i])) {
+                    keyIndexes.add(i);
+                }
             }
-            KeyType keyToCompare = new KeyType(keyValues.toArray(new Comparable[0]));
-            if (keyToCompare.equals(keyVal)) {
-                rows.add(tuples.get(i));
+            List<Comparable[]> rows = new ArrayList<>();
+            for (int i = 0; i < tuples.size(); i++) {
+                if (deadRows.get(i))
+                    continue;
+                Comparable[] currentTuple = tuples.get(i);
+                List<Comparable> keyValues = new ArrayList<Comparable>();
+                for (int j = 0; j < keyIndexes.size(); j++) {
+                    keyValues.add(currentTuple[keyIndexes.get(j)]);
+                }
+                KeyType keyToCompare = new KeyType(keyValues.toArray(new Comparable[0]));
+                if (keyToCompare.equals(keyVal)) {
+                    rows.add(tuples.get(i));
+                }
             }
-        }
 
-        return new Table(name + count++, attribute, domain, key, rows);
+            return done(span, new Table(name + count++, attribute, domain, key, rows));
+        } // try
     } // select
 
     /************************************************************************************
@@ -210,20 +442,122 @@ public class Table
      * @return a table with the tuple satisfying the key predicate
      */
     public Table select(KeyType keyVal) {
-        out.println("RA> " + name + ".select (" + keyVal + ")");
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".select (" + keyVal + ")");
+        try (Metrics.Span span = Metrics.start("selectKey", name, tuples.size())) {
+            List<Comparable[]> rows = new ArrayList<>();
+
+            if (!indexCovers()) {
+                // the index does not cover the tuples (e.g., a derived or mapped table)
+                span.scan();
+                int[] cols = match(key);
+                for (int i = 0; i < tuples.size(); i++) {
+                    KeyType k = deadRows.get(i) ? null : keyAt(tuples, i, cols);
+                    if (k != null && k.equals(keyVal))
+                        rows.add(tuples.get(i));
+                } // for
+            } else {
+                span.index();
+                if (index.containsKey(keyVal)) {
+                    Comparable[] selectedTuple = index.get(keyVal);
+                    rows.add(selectedTuple);
+                } // if
+            } // if
 
-        List<Comparable[]> rows = new ArrayList<>();
+            return done(span, new Table(name + count++, attribute, domain, key, rows));
+        } // try
+    } // select
 
-        if (index.containsKey(keyVal)) {
-            Comparable[] selectedTuple = index.get(keyVal);
-            rows.add(selectedTuple);
-        }
+    /************************************************************************************
+     * Select the tuples whose key lies in the range lo to hi (inclusive). An
+     * ordered index (TreeMap or BPTreeMap) is scanned from lo to hi; otherwise
+     * every tuple's key is checked with a linear scan.
+     *
+     * #usage student.select (new KeyType (100), new KeyType (200))
+     *
+     * @param lo the lowest key value in the range
+     * @param hi the highest key value in the range
+     * @return a table with the tuples whose keys are in the range
+     */
+    public Table select(KeyType lo, KeyType hi) {
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".select (" + lo + " .. " + hi + ")");
+        try (Metrics.Span span = Metrics.start("selectRange", name, tuples.size())) {
+            List<Comparable[]> rows = isOrderedIndex() ? indexRange(lo, hi) : null;
+
+            if (rows == null) {
+                span.scan();
+                rows = new ArrayList<>();
+                int[] cols = match(key);
+                for (int i = 0; i < tuples.size(); i++) {
+                    KeyType k = deadRows.get(i) ? null : keyAt(tuples, i, cols);
+                    if (k != null && k.compareTo(lo) >= 0 && k.compareTo(hi) <= 0)
+                        rows.add(tuples.get(i));
+                } // for
+            } else {
+                span.index();
+            } // if
 
-        return new Table(name + count++, attribute, domain, key, rows);
+            return done(span, new Table(name + count++, attribute, domain, key, rows));
+        } // try
+    } // select
+
+    /************************************************************************************
+     * Select the tuples satisfying the given typed condition. A condition that
+     * fixes every key attribute with an equality is answered with one index lookup,
+     * and (for a single-attribute key and an ordered index) range comparisons on the
+     * key become an index range scan. Secondary indexes (see createIndex) are used
+     * the same way for conditions on their attributes. The rest of the condition is
+     * then checked on the few tuples found. A condition made only of comparisons on
+     * attributes with bitmap indexes (see createBitmapIndex) is answered by combining
+     * their bitmaps, and such comparisons among the conjuncts of any other condition
+     * narrow the tuples to check. Otherwise the condition is evaluated over all tuples at
+     * once into a selection bitmap (see Condition).
+     *
+     * #usage student.select (Condition.eq ("status", "FR").and (Condition.ge ("gpa", 3.5)))
+     *
+     * @param condition the typed check condition for tuples
+     * @return a table with tuples satisfying the condition
+     */
+    public Table select(Condition condition) {
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".select (" + condition + ")");
+        try (Metrics.Span span = Metrics.start("selectCondition", name, tuples.size())) {
+            Predicate<Comparable[]> residual = condition.toPredicate(attribute, domain);
+
+            // a condition entirely on attributes with bitmap indexes needs no tuple read
+            RoaringBitmap exact = bitmaps.isEmpty() ? null : bitmapOf(condition);
+            if (exact != null) {
+                span.index();
+                return done(span, new Table(name + count++, attribute, domain, key, rowsAt(exact.toArray())));
+            } // if
+
+            List<Comparable[]> candidates = indexCandidates(condition);
+
+            if (candidates != null) {
+                span.index();
+                List<Comparable[]> rows = new ArrayList<>();
+                for (Comparable[] tup : candidates) {
+                    if (residual.test(tup))
+                        rows.add(tup);
+                } // for
+                return done(span, new Table(name + count++, attribute, domain, key, rows));
+            } // if
+
+            span.scan();
+            long[] bits = condition.evaluate(attribute, domain, tuples);
+            for (int r = deadRows.nextSetBit(0); r >= 0; r = deadRows.nextSetBit(r + 1))
+                bits[r >>> 6] &= ~(1L << r);
+            return done(span, new Table(name + count++, attribute, domain, key, gather(bits)));
+        } // try
     } // select
 
     /************************************************************************************
-     * Union this table and table2. Check that the two tables are compatible.
+     * Union this table and table2, eliminating duplicates. Check that the two tables
+     * are compatible. Tuples are hashed, so the union takes time linear in the sizes
+     * of the two tables. When both tables have the same primary key, tuples are
+     * identified by their keys (the tuple from this table wins), and this table's
+     * index is probed instead of building a hash set when it covers all its tuples.
      *
      * #usage movie.union (show)
      *
@@ -231,18 +565,68 @@ public class Table
      * @return a table representing the union
      */
     public Table union(Table table2) {
-        out.println("RA> " + name + ".union (" + table2.name + ")");
-        if (!compatible(table2))
-            return null;
-
-        List<Comparable[]> rows = new ArrayList<>();
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".union (" + table2.name + ")");
+        try (Metrics.Span span = Metrics.start("union", name, tuples.size() + table2.tuples.size())) {
+            if (!compatible(table2))
+                return done(span, null);
+
+            int[] cols = sharedKey(table2);
+            List<Comparable[]> rows = new ArrayList<>(tuples.size() + table2.tuples.size());
+
+            if (cols != null && indexCovers()) {
+                // this table is already distinct on the key; its index answers membership
+                span.index();
+                rows.addAll(live());
+                Set<Object> seen = new HashSet<>();
+                for (int i = 0; i < table2.tuples.size(); i++) {
+                    if (table2.deadRows.get(i))
+                        continue;
+                    KeyType k = keyAt(table2.tuples, i, cols);
+                    if (!index.containsKey(k) && seen.add(k))
+                        rows.add(table2.tuples.get(i));
+                } // for
+            } else {
+                span.scan();
+                Set<Object> seen = new HashSet<>();
+                addDistinct(tuples, deadRows, cols, seen, null, rows);
+                addDistinct(table2.tuples, table2.deadRows, cols, seen, null, rows);
+            } // if
 
-        return new Table(name + count++, attribute, domain, key, rows);
+            return done(span, new Table(name + count++, attribute, domain, key, rows));
+        } // try
     } // union
 
     /************************************************************************************
-     * Take the difference of this table and table2. Check that the two tables are
-     * compatible.
+     * Union this table and table2, keeping duplicates (bag semantics, UNION ALL).
+     * Check that the two tables are compatible.
+     *
+     * #usage movie.unionAll (show)
+     *
+     * @param table2 the rhs table in the union operation
+     * @return a table holding the tuples of both tables
+     */
+    public Table unionAll(Table table2) {
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".unionAll (" + table2.name + ")");
+        try (Metrics.Span span = Metrics.start("unionAll", name, tuples.size() + table2.tuples.size())) {
+            span.scan();
+            if (!compatible(table2))
+                return done(span, null);
+
+            List<Comparable[]> rows = new ArrayList<>(tuples.size() + table2.tuples.size());
+            rows.addAll(live());
+            rows.addAll(table2.live());
+
+            return done(span, new Table(name + count++, attribute, domain, key, rows));
+        } // try
+    } // unionAll
+
+    /************************************************************************************
+     * Take the difference of this table and table2, eliminating duplicates. Check
+     * that the two tables are compatible. The tuples of table2 are hashed (or,
+     * when both tables have the same primary key, table2's index is probed when it
+     * covers all its tuples), so the difference takes linear time.
      *
      * #usage movie.minus (show)
      *
@@ -250,51 +634,267 @@ public class Table
      * @return a table representing the difference
      */
     public Table minus(Table table2) {
-        out.println("RA> " + name + ".minus (" + table2.name + ")");
-        if (!compatible(table2))
-            return null;
-
-        List<Comparable[]> rows = new ArrayList<>();
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".minus (" + table2.name + ")");
+        try (Metrics.Span span = Metrics.start("minus", name, tuples.size() + table2.tuples.size())) {
+            if (!compatible(table2))
+                return done(span, null);
+
+            int[] cols = sharedKey(table2);
+            List<Comparable[]> rows = new ArrayList<>();
+
+            Set<Object> seen = new HashSet<>();
+            if (cols != null && table2.indexCovers()) {
+                span.index();
+                addDistinct(tuples, deadRows, cols, seen, table2.index.keySet(), rows);
+            } else {
+                span.scan();
+                Set<Object> removed = new HashSet<>();
+                for (int i = 0; i < table2.tuples.size(); i++) {
+                    if (!table2.deadRows.get(i))
+                        removed.add(setKey(table2.tuples, i, cols));
+                } // for
+                addDistinct(tuples, deadRows, cols, seen, removed, rows);
+            } // if
 
-        return new Table(name + count++, attribute, domain, key, rows);
+            return done(span, new Table(name + count++, attribute, domain, key, rows));
+        } // try
     } // minus
 
     /************************************************************************************
-     * Join this table and table2 by performing an "equi-join". Tuples from both
-     * tables
-     * are compared requiring attributes1 to equal attributes2. Disambiguate
-     * attribute
-     * names by append "2" to the end of any duplicate attribute name.
-     * Use an index (Map) to retrieve the tuple with the given key value.
+     * Take the difference of this table and table2, keeping duplicates (bag
+     * semantics, EXCEPT ALL): each tuple of table2 cancels one equal tuple of this
+     * table. Check that the two tables are compatible.
      *
+     * #usage movie.minusAll (show)
+     *
+     * @param table2 The rhs table in the minus operation
+     * @return a table representing the bag difference
+     */
+    public Table minusAll(Table table2) {
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".minusAll (" + table2.name + ")");
+        try (Metrics.Span span = Metrics.start("minusAll", name, tuples.size() + table2.tuples.size())) {
+            span.scan();
+            if (!compatible(table2))
+                return done(span, null);
+
+            // count the occurrences of each tuple of table2
+            Map<Object, int[]> removed = new HashMap<>();
+            for (int i = 0; i < table2.tuples.size(); i++) {
+                if (!table2.deadRows.get(i))
+                    removed.computeIfAbsent(setKey(table2.tuples, i, null), k -> new int[1])[0]++;
+            } // for
+
+            List<Comparable[]> rows = new ArrayList<>();
+            for (int i = 0; i < tuples.size(); i++) {
+                if (deadRows.get(i))
+                    continue;
+                int[] n = removed.get(setKey(tuples, i, null));
+                if (n != null && n[0] > 0)
+                    n[0]--;
+                else
+                    rows.add(tuples.get(i));
+            } // for
+
+            return done(span, new Table(name + count++, attribute, domain, key, rows));
+        } // try
+    } // minusAll
+
+    /************************************************************************************
+     * Join this table and table2 by performing an "equi-join". Tuples from both
+     * tables are compared requiring attributes1 to equal attributes2. Disambiguate
+     * attribute names by append "2" to the end of any duplicate attribute name.
+     * When the join attributes of either table are its primary key, that table's
+     * index (Map) is probed directly once per tuple of the other table (index
+     * nested-loop join); failing that, a secondary index on the join attributes of
+     * either table is probed the same way. Otherwise the work is delegated to the
+     * hash join engine.
      *
      * #usage movie.join ("studioNo", "name", studio)
      *
      * @param attributes1 the attributes of this table to be compared (Foreign Key)
      * @param attributes2 the attributes of table2 to be compared (Primary Key)
-     * @param table2     the rhs table in the join operation
+     * @param table2      the rhs table in the join operation
      * @return a table with tuples satisfying the equality predicate
      */
     public Table join(String attributes1, String attributes2, Table table2) {
-        out.println("RA> " + name + ".join (" + attributes1 + ", " + attributes2 + ", "
-                + table2.name + ")");
-        String[] t_attrs = attributes1.split(" ");
-        t_attrs = disambiguate(t_attrs);
-        String[] u_attrs = attributes2.split(" ");
-        u_attrs = disambiguate(u_attrs);
-        List<Comparable[]> rows = new ArrayList<>();
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".join (" + attributes1 + ", " + attributes2 + ", "
+                    + table2.name + ")");
+        try (Metrics.Span span = Metrics.start("join", name, tuples.size() + table2.tuples.size())) {
+            String[] t_attrs = attributes1.split(" ");
+            String[] u_attrs = attributes2.split(" ");
+
+            if (t_attrs.length != u_attrs.length) {
+                out.println("Cannot Perform Join Operator");
+                return done(span, null);
+            } // if
 
-        for (var key : index.entrySet()) {
-            if(table2.index.containsKey(key)) {
-                var tup1 = select(key.getKey()).tuples.get(0);
-                var tup2 = table2.select(key.getKey()).tuples.get(0);
-                rows.add(ArrayUtil.concat(tup1, tup2));
-            }
-        }
+            List<Comparable[]> rows;
+            SecondaryIndex s;
+            if (table2.isIndexedOn(u_attrs)) {
+                rows = indexJoin(this, match(t_attrs), u_attrs, table2, true);
+            } else if (isIndexedOn(t_attrs)) {
+                rows = indexJoin(table2, table2.match(u_attrs), t_attrs, this, false);
+            } else if ((s = table2.secondaryOn(u_attrs)) != null) {
+                rows = secondaryJoin(this, match(t_attrs), u_attrs, table2, s, true);
+            } else if ((s = secondaryOn(t_attrs)) != null) {
+                rows = secondaryJoin(table2, table2.match(u_attrs), t_attrs, this, s, false);
+            } else {
+                return done(span, hashJoin(attributes1, attributes2, table2));
+            } // if
+            span.index();
 
-        return new Table(name + count++, ArrayUtil.concat(attribute, table2.attribute),
-                ArrayUtil.concat(domain, table2.domain), key, rows);
-    }
+            return done(span, new Table(name + count++, joinAttributes(table2),
+                    ArrayUtil.concat(domain, table2.domain), key, rows));
+        } // try
+    } // join
+
+    /************************************************************************************
+     * Join this table and table2 by performing a hash "equi-join". The smaller of
+     * the two inputs is hashed on its join columns (build phase) and the larger
+     * input is streamed against the hash table (probe phase). Join columns may be
+     * composite and the join values need not be unique on either side. Tuples with
+     * a null join value never match. Result tuples always list the attributes of
+     * this table first, followed by those of table2.
+     *
+     * #usage transcript.hashJoin ("crsCode semester", "crsCode semester", teaching)
+     *
+     * @param attributes1 the attributes of this table to be compared
+     * @param attributes2 the attributes of table2 to be compared
+     * @param table2      the rhs table in the join operation
+     * @return a table with tuples satisfying the equality predicate
+     */
+    public Table hashJoin(String attributes1, String attributes2, Table table2) {
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".hashJoin (" + attributes1 + ", " + attributes2 + ", "
+                    + table2.name + ")");
+        try (Metrics.Span span = Metrics.start("hashJoin", name, tuples.size() + table2.tuples.size())) {
+            String[] t_attrs = attributes1.split(" ");
+            String[] u_attrs = attributes2.split(" ");
+
+            if (t_attrs.length != u_attrs.length) {
+                out.println("Cannot Perform Join Operator");
+                return done(span, null);
+            } // if
+
+            int[] t_cols = match(t_attrs);
+            int[] u_cols = table2.match(u_attrs);
+
+            // build on the smaller input, probe with the larger one
+            boolean buildLeft = tuples.size() <= table2.tuples.size();
+            List<Comparable[]> build = buildLeft ? tuples : table2.tuples;
+            List<Comparable[]> probe = buildLeft ? table2.tuples : tuples;
+            BitSet b_dead = buildLeft ? deadRows : table2.deadRows;
+            BitSet p_dead = buildLeft ? table2.deadRows : deadRows;
+            int[] b_cols = buildLeft ? t_cols : u_cols;
+            int[] p_cols = buildLeft ? u_cols : t_cols;
+
+            // build phase: join key -> first build tuple; next chains tuples sharing a key
+            span.phase("build");
+            Map<KeyType, Integer> head = new HashMap<>(Math.max(16, (int) (build.size() / 0.75f) + 1));
+            int[] next = new int[build.size()];
+            for (int i = build.size() - 1; i >= 0; i--) {
+                KeyType k = b_dead.get(i) ? null : keyAt(build, i, b_cols);
+                if (k == null)
+                    continue;
+                Integer h = head.put(k, i);
+                next[i] = (h == null) ? -1 : h;
+            } // for
+
+            // probe phase: stream the larger input (in parallel chunks) against the hash table
+            span.phase("probe");
+            List<Comparable[]> rows = Parallel.collect(probe.size(), (from, to, out) -> {
+                for (int i = from; i < to; i++) {
+                    KeyType k = p_dead.get(i) ? null : keyAt(probe, i, p_cols);
+                    if (k == null)
+                        continue;
+                    Integer h = head.get(k);
+                    if (h == null)
+                        continue;
+                    Comparable[] tup = probe.get(i);
+                    for (int j = h; j >= 0; j = next[j]) {
+                        Comparable[] m = build.get(j);
+                        out.add(buildLeft ? ArrayUtil.concat(m, tup) : ArrayUtil.concat(tup, m));
+                    } // for
+                } // for
+            });
+
+            return done(span, new Table(name + count++, joinAttributes(table2),
+                    ArrayUtil.concat(domain, table2.domain), key, rows));
+        } // try
+    } // hashJoin
+
+    /************************************************************************************
+     * Join this table and table2 by performing a sort-merge "equi-join". Both
+     * inputs are put in order on their join columns and then merged in a single
+     * pass. An input whose join columns form a prefix of its primary key and whose
+     * index is ordered (e.g., a TreeMap) is scanned through the index and not
+     * sorted. Apart from the sorted copies, memory use is bounded by the largest
+     * group of table2 tuples sharing one join value.
+     *
+     * #usage transcript.sortMergeJoin ("studId", "id", student)
+     *
+     * @param attributes1 the attributes of this table to be compared
+     * @param attributes2 the attributes of table2 to be compared
+     * @param table2      the rhs table in the join operation
+     * @return a table with tuples satisfying the equality predicate
+     */
+    public Table sortMergeJoin(String attributes1, String attributes2, Table table2) {
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".sortMergeJoin (" + attributes1 + ", " + attributes2 + ", "
+                    + table2.name + ")");
+        try (Metrics.Span span = Metrics.start("sortMergeJoin", name, tuples.size() + table2.tuples.size())) {
+            String[] t_attrs = attributes1.split(" ");
+            String[] u_attrs = attributes2.split(" ");
+
+            if (t_attrs.length != u_attrs.length) {
+                out.println("Cannot Perform Join Operator");
+                return done(span, null);
+            } // if
+
+            int[] t_cols = match(t_attrs);
+            int[] u_cols = table2.match(u_attrs);
+
+            span.phase("sort");
+            Iterator<Comparable[]> it1 = sortedRun(t_cols);
+            Iterator<Comparable[]> it2 = table2.sortedRun(u_cols);
+            Comparable[] tup1 = it1.hasNext() ? it1.next() : null;
+            Comparable[] tup2 = it2.hasNext() ? it2.next() : null;
+
+            span.phase("merge");
+            List<Comparable[]> rows = new ArrayList<>();
+            List<Comparable[]> group = new ArrayList<>();
+
+            while (tup1 != null && tup2 != null) {
+                int cmp = compareCols(tup1, t_cols, tup2, u_cols);
+                if (cmp < 0) {
+                    tup1 = it1.hasNext() ? it1.next() : null;
+                } else if (cmp > 0) {
+                    tup2 = it2.hasNext() ? it2.next() : null;
+                } else {
+                    // gather the run of table2 tuples sharing this join value
+                    Comparable[] first = tup2;
+                    group.clear();
+                    do {
+                        group.add(tup2);
+                        tup2 = it2.hasNext() ? it2.next() : null;
+                    } while (tup2 != null && compareCols(first, u_cols, tup2, u_cols) == 0);
+
+                    // pair every matching tuple of this table with the run
+                    do {
+                        for (Comparable[] g : group)
+                            rows.add(ArrayUtil.concat(tup1, g));
+                        tup1 = it1.hasNext() ? it1.next() : null;
+                    } while (tup1 != null && compareCols(tup1, t_cols, first, u_cols) == 0);
+                } // if
+            } // while
+
+            return done(span, new Table(name + count++, joinAttributes(table2),
+                    ArrayUtil.concat(domain, table2.domain), key, rows));
+        } // try
+    } // sortMergeJoin
 
     /************************************************************************************
      * Ensures that attributes with matching information are distinguished from one
@@ -333,63 +933,57 @@ public class Table
      * @return a table with tuples satisfying the equality predicate
      */
     public Table noIndexjoin(String attributes1, String attributes2, Table table2) {
-        out.println("RA> " + name + ".noIndexjoin (" + attributes1 + ", " + attributes2 + ", "
-                + table2.name + ")");
-
-        String[] t_attrs = attributes1.split(" ");
-        String[] u_attrs = attributes2.split(" ");
-
-        List<Comparable[]> rows = new ArrayList<>();
-
-        if (t_attrs.length != u_attrs.length) {
-            System.out.println("Cannot Perform Join Operator");
-            return null;
-        }
-
-        for (Comparable[] tuple1 : tuples) {
-            for (Comparable[] tuple2 : table2.tuples) {
-
-                Comparable[] Attri1 = this.extract(tuple1, t_attrs);
-                Comparable[] Attri2 = table2.extract(tuple2, u_attrs);
-
-                boolean flag = true;
-
-                // Judge if attributes1 in table1 is equal to attributes2 in table 2
-                for (int i = 0; i < Attri1.length; i++) {
-
-                    if (!Attri1[i].equals(Attri2[i])) {
-                        flag = false;
-                        break;
-                    }
-                }
-
-                // Concatenate tuples from table1&2 to form a new tuple
-                if (flag) {
-                    Comparable[] join_tuple = ArrayUtil.concat(tuple1, tuple2);
-                    rows.add(join_tuple);
-                }
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".noIndexjoin (" + attributes1 + ", " + attributes2 + ", "
+                    + table2.name + ")");
+        try (Metrics.Span span = Metrics.start("noIndexjoin", name, tuples.size() + table2.tuples.size())) {
+            span.scan();
+
+            String[] t_attrs = attributes1.split(" ");
+            String[] u_attrs = attributes2.split(" ");
+
+            if (t_attrs.length != u_attrs.length) {
+                System.out.println("Cannot Perform Join Operator");
+                return done(span, null);
             }
-        }
-
-        // Disambiguate attribute names by append "2" to the end of any duplicate
-        // attribute name.
-        // Here we just need to rename the attribute names in table2 then concatenate
-        // them to those in table1
-        String[] attribute2_new = table2.attribute;
 
-        for (int j = 0; j < t_attrs.length; j++) {
-            for (int k = 0; k < attribute2_new.length; ++k) {
-
-                if (attribute2_new[k].equals(t_attrs[j])) {
-
-                    String tmp_attri = t_attrs[j] + "2";
-                    attribute2_new[j] = tmp_attri;
+            // resolve the join column positions once, not per pair of tuples
+            int[] t_cols = match(t_attrs);
+            int[] u_cols = table2.match(u_attrs);
+
+            // chunks of this table's tuples are compared with all of table2 in parallel
+            List<Comparable[]> inner = table2.live();
+            List<Comparable[]> rows = Parallel.collect(tuples.size(), (from, to, out) -> {
+                for (int n = from; n < to; n++) {
+                    if (deadRows.get(n))
+                        continue;
+                    Comparable[] tuple1 = tuples.get(n);
+                    for (Comparable[] tuple2 : inner) {
+
+                        boolean flag = true;
+
+                        // Judge if attributes1 in table1 is equal to attributes2 in table 2
+                        for (int i = 0; i < t_cols.length; i++) {
+
+                            if (!tuple1[t_cols[i]].equals(tuple2[u_cols[i]])) {
+                                flag = false;
+                                break;
+                            }
+                        }
+
+                        // Concatenate tuples from table1&2 to form a new tuple
+                        if (flag) {
+                            out.add(ArrayUtil.concat(tuple1, tuple2));
+                        }
+                    }
                 }
-            }
-        }
+            });
 
-        return new Table(name + count++, ArrayUtil.concat(attribute, attribute2_new),
-                ArrayUtil.concat(domain, table2.domain), key, rows);
+            // Disambiguate attribute names by append "2" to the end of any duplicate
+            // attribute name (table2's own attribute array is left unchanged).
+            return done(span, new Table(name + count++, joinAttributes(table2),
+                    ArrayUtil.concat(domain, table2.domain), key, rows));
+        } // try
     } // join
 
     /************************************************************************************
@@ -405,13 +999,15 @@ public class Table
      * @return a table with tuples satisfying the equality predicate
      */
     public Table join(Table table2) {
-        out.println("RA> " + name + ".join (" + table2.name + ")");
-
-        List<Comparable[]> rows = new ArrayList<>();
-
-        // FIX - eliminate duplicate columns
-        return new Table(name + count++, ArrayUtil.concat(attribute, table2.attribute),
-                ArrayUtil.concat(domain, table2.domain), key, rows);
+        if (Trace.on(RA))
+            Trace.log(RA, name + ".join (" + table2.name + ")");
+        try (Metrics.Span span = Metrics.start("naturalJoin", name, tuples.size() + table2.tuples.size())) {
+            List<Comparable[]> rows = new ArrayList<>();
+
+            // FIX - eliminate duplicate columns
+            return done(span, new Table(name + count++, ArrayUtil.concat(attribute, table2.attribute),
+                    ArrayUtil.concat(domain, table2.domain), key, rows));
+        } // try
     } // join
 
     /************************************************************************************
@@ -430,7 +1026,8 @@ public class Table
     } // col
 
     /************************************************************************************
-     * Insert a tuple to the table.
+     * Insert a tuple to the table. A tuple too large to fit in a page of the saved
+     * table (see PageFile.MAX_TUPLE) is rejected.
      *
      * #usage movie.insert ("'Star_Wars'", 1977, 124, "T", "Fox", 12345)
      *
@@ -438,32 +1035,383 @@ public class Table
      * @return whether insertion was successful
      */
     public boolean insert(Comparable[] tup) {
-        out.println("DML> insert into " + name + " values ( " + Arrays.toString(tup) + " )");
-
-        if (typeCheck(tup)) {
-            tuples.add(tup);
-            Comparable[] keyVal = new Comparable[key.length];
-            int[] cols = match(key);
-            for (int j = 0; j < keyVal.length; j++)
-                keyVal[j] = tup[cols[j]];
-            index.put(new KeyType(keyVal), tup);
-            return true;
-        } else {
-            return false;
-        } // if
+        if (Trace.on(DML))
+            Trace.log(DML, "insert into " + name + " values ( " + Arrays.toString(tup) + " )");
+        try (Metrics.Span span = Metrics.start("insert", name, 1)) {
+            if (typeCheck(tup)) {
+                if (violatesUnique(tup, null, -1) || !log(WriteAheadLog.Op.INSERT, null, tup))
+                    return done(span, false, 1);
+                tuples.add(tup);
+                Comparable[] keyVal = new Comparable[key.length];
+                int[] cols = match(key);
+                for (int j = 0; j < keyVal.length; j++)
+                    keyVal[j] = tup[cols[j]];
+                indexPut(KeyType.of(keyVal), tup, tuples.size() - 1);
+                secondaryAdd(tup, tuples.size() - 1);
+                renumber(null, tup, tuples.size() - 1);
+                checkpointIfDue();
+                return done(span, true, 1);
+            } else {
+                return done(span, false, 1);
+            } // if
+        } // try
     } // insert
 
     /************************************************************************************
-     * Get the name of the table.
+     * Insert a batch of tuples into the table. When the table is empty, uses a
+     * BPTreeMap index and the tuples arrive in ascending key order, the index is
+     * bulk loaded bottom-up; otherwise each tuple's key is put into the index.
+     * Nothing is inserted if any tuple fails the type check or would repeat a value
+     * of a unique secondary index.
      *
-     * @return the table's name
+     * @param tups the tuples to insert
+     * @return whether insertion was successful
      */
-    public String getName() {
-        return name;
-    } // getName
-
-    /************************************************************************************
-     * Print this table.
+    @SuppressWarnings("unchecked")
+    public boolean insertAll(List<Comparable[]> tups) {
+        if (Trace.on(DML))
+            Trace.log(DML, "insert into " + name + " " + tups.size() + " tuples");
+        try (Metrics.Span span = Metrics.start("insertAll", name, tups.size())) {
+            for (Comparable[] tup : tups) {
+                if (!typeCheck(tup) || violatesUnique(tup, null, -1))
+                    return done(span, false, tups.size());
+            } // for
+            for (SecondaryIndex s : secondary) {
+                if (!s.isUnique())
+                    continue;
+                Set<KeyType> batch = new HashSet<>();
+                for (Comparable[] tup : tups) {
+                    KeyType k = keyOf(tup, s.cols());
+                    if (k != null && !batch.add(k))
+                        return done(span, false, tups.size());
+                } // for
+            } // for
+            for (Comparable[] tup : tups) {
+                if (!log(WriteAheadLog.Op.INSERT, null, tup))
+                    return done(span, false, tups.size());
+            } // for
+
+            int[] cols = match(key);
+            List<Map.Entry<KeyType, Comparable[]>> entries = new ArrayList<>(tups.size());
+            boolean sorted = true;
+            for (Comparable[] tup : tups) {
+                KeyType k = keyOf(tup, cols);
+                if (!entries.isEmpty() && entries.get(entries.size() - 1).getKey().compareTo(k) >= 0)
+                    sorted = false;
+                entries.add(new AbstractMap.SimpleEntry<>(k, tup));
+            } // for
+
+            int base = tuples.size();
+            if (sorted && base == 0 && index.isEmpty() && index instanceof BPTreeMap) {
+                ((BPTreeMap<KeyType, Comparable[]>) index).bulkLoad(entries.iterator(), 1.0);
+            } else {
+                for (int i = 0; i < entries.size(); i++)
+                    indexPut(entries.get(i).getKey(), entries.get(i).getValue(), base + i);
+            } // if
+            tuples.addAll(tups);
+            for (int i = 0; i < tups.size(); i++) {
+                secondaryAdd(tups.get(i), base + i);
+                renumber(null, tups.get(i), base + i);
+            } // for
+            checkpointIfDue();
+            return done(span, true, tups.size());
+        } // try
+    } // insertAll
+
+    /************************************************************************************
+     * Update the tuple with the given key, setting the given attributes to the given
+     * values. The tuple is found with the index; changing the key is allowed unless
+     * the new key is already taken, or (for a paged table, see open) if the tuple's
+     * page would no longer fit. A memory-mapped table cannot be updated.
+     *
+     * #usage movie.update (new KeyType ("Star_Wars", 1977), "length studioNo", 125, "Fox")
+     *
+     * @param keyVal     the key of the tuple to update
+     * @param attributes the attributes to set
+     * @param values     the new values of the attributes
+     * @return whether a tuple was updated
+     */
+    public boolean update(KeyType keyVal, String attributes, Comparable... values) {
+        if (Trace.on(DML))
+            Trace.log(DML, "update " + name + " set " + attributes + " = " + Arrays.toString(values)
+                    + " where " + keyVal);
+        if (tuples instanceof MappedStore)
+            throw new UnsupportedOperationException("update: " + name + " is read-only");
+
+        Comparable[] old = lookup(keyVal);
+        return old != null && update(keyVal, assign(old, match(attributes.split(" ")), values));
+    } // update
+
+    /************************************************************************************
+     * Update every tuple satisfying the predicate, setting the given attributes to
+     * the given values. A tuple whose new key would collide with another tuple's key
+     * is left unchanged, as is a tuple of a paged table (see open) whose page would no
+     * longer fit. A memory-mapped table cannot be updated.
+     *
+     * #usage movie.update (t -> t[movie.col("year")].equals (1977), "studioNo", "Fox")
+     *
+     * @param predicate  the check condition for the tuples to update
+     * @param attributes the attributes to set
+     * @param values     the new values of the attributes
+     * @return the number of tuples updated
+     */
+    public int update(Predicate<Comparable[]> predicate, String attributes, Comparable... values) {
+        if (Trace.on(DML))
+            Trace.log(DML, "update " + name + " set " + attributes + " = " + Arrays.toString(values)
+                    + " where " + predicate);
+        if (tuples instanceof MappedStore)
+            throw new UnsupportedOperationException("update: " + name + " is read-only");
+
+        int[] cols = match(attributes.split(" "));
+        int[] keyCols = match(key);
+        boolean indexed = indexCovers();
+        // without a covering index, the live keys are counted (on the first re-key)
+        // to catch collisions; a key may already repeat, hence counts and not a set
+        Map<KeyType, Integer> keyCount = null;
+        int n = 0;
+        for (int i = 0; i < tuples.size(); i++) {
+            if (deadRows.get(i))
+                continue;
+            Comparable[] old = tuples.get(i);
+            if (!predicate.test(old))
+                continue;
+            Comparable[] tup = assign(old, cols, values);
+            KeyType oldKey = keyOf(old, keyCols), newKey = keyOf(tup, keyCols);
+            boolean rekey = !Objects.equals(oldKey, newKey);
+            if (!indexed && rekey && keyCount == null)
+                keyCount = liveKeyCounts(keyCols);
+            boolean taken = rekey && newKey != null
+                    && (indexed ? index.containsKey(newKey) : keyCount.containsKey(newKey));
+            if (!typeCheck(tup) || taken || violatesUnique(tup, old, i)
+                    || tuples instanceof PagedStore && !((PagedStore) tuples).fits(i, tup))
+                continue;
+            if (!log(WriteAheadLog.Op.UPDATE, old, tup))
+                break;
+
+            // the tuple is replaced in place, so its row number does not change
+            tuples.set(i, tup);
+            secondaryRemove(old, i);
+            secondaryAdd(tup, i);
+            renumber(old, tup, i);
+            if (indexed) {
+                if (rekey && oldKey != null)
+                    index.remove(oldKey);
+                if (newKey != null && (rekey || !(index instanceof ColumnStore.RowIndex)))
+                    indexPut(newKey, tup, i);
+            } else if (keyCount != null && rekey) {
+                if (oldKey != null)
+                    keyCount.computeIfPresent(oldKey, (k, c) -> (c == 1) ? null : c - 1);
+                if (newKey != null)
+                    keyCount.merge(newKey, 1, Integer::sum);
+            } // if
+            n++;
+        } // for
+        checkpointIfDue();
+        return n;
+    } // update
+
+    /************************************************************************************
+     * Delete the tuple with the given key. The tuple is found with the index and
+     * removed from it and from the secondary indexes at once, while its row is only
+     * marked dead: scans skip it until enough rows are dead to compact the tuple
+     * list in one pass. A disk-resident table (see open) cannot be compacted, so it
+     * does not support delete.
+     *
+     * #usage movie.delete (new KeyType ("Star_Wars", 1977))
+     *
+     * @param keyVal the key of the tuple to delete
+     * @return whether a tuple was deleted
+     */
+    public boolean delete(KeyType keyVal) {
+        if (Trace.on(DML))
+            Trace.log(DML, "delete from " + name + " where " + keyVal);
+        if (tuples instanceof MappedStore || tuples instanceof PagedStore)
+            throw new UnsupportedOperationException("delete: " + name + " is disk-resident");
+
+        boolean covers = indexCovers();
+        Comparable[] old = covers ? index.get(keyVal) : null;
+        int r = (old == null) ? -1 : rowOf(keyVal, old);
+        if (!covers || old != null && r < 0) {
+            // the index does not cover the (live) tuples: find the tuple by scanning
+            int[] cols = match(key);
+            return delete(t -> keyVal.equals(keyOf(t, cols))) > 0;
+        } // if
+
+        if (old == null || !log(WriteAheadLog.Op.DELETE, old, null))
+            return false;
+        deadRows.set(r);
+        deadCount++;
+        secondaryRemove(old, r);
+        renumber(old, null, r);
+        index.remove(keyVal);
+        compactIfDue();
+        checkpointIfDue();
+        return true;
+    } // delete
+
+    /************************************************************************************
+     * Delete every tuple satisfying the predicate, in one pass over the tuples (their
+     * rows are marked dead, as for a delete by key). A disk-resident table (see open)
+     * does not support delete.
+     *
+     * #usage movie.delete (t -> t[movie.col("year")].equals (1977))
+     *
+     * @param predicate the check condition for the tuples to delete
+     * @return the number of tuples deleted
+     */
+    public int delete(Predicate<Comparable[]> predicate) {
+        if (Trace.on(DML))
+            Trace.log(DML, "delete from " + name + " where " + predicate);
+        if (tuples instanceof MappedStore || tuples instanceof PagedStore)
+            throw new UnsupportedOperationException("delete: " + name + " is disk-resident");
+
+        int[] keyCols = match(key);
+        boolean indexed = indexCovers();
+        int n = 0;
+        for (int i = 0; i < tuples.size(); i++) {
+            if (deadRows.get(i))
+                continue;
+            Comparable[] old = tuples.get(i);
+            if (!predicate.test(old))
+                continue;
+            if (!log(WriteAheadLog.Op.DELETE, old, null))
+                break;
+            deadRows.set(i);
+            deadCount++;
+            secondaryRemove(old, i);
+            renumber(old, null, i);
+            if (indexed) {
+                KeyType k = keyOf(old, keyCols);
+                if (k != null)
+                    index.remove(k);
+            } // if
+            n++;
+        } // for
+
+        compactIfDue();
+        checkpointIfDue();
+        return n;
+    } // delete
+
+    /************************************************************************************
+     * Create a secondary index on the given attributes, mapping their values to the
+     * numbers of the rows holding them, using this table's type of map. Inserts,
+     * updates and deletes maintain the index, and select (Condition) and join use it
+     * when the condition or join columns are on its attributes.
+     *
+     * #usage transcript.createIndex ("crsCode", false)
+     *
+     * @param attributes the attributes to index
+     * @param unique     whether the values must be unique (inserts repeating one fail)
+     * @return whether the index was created (false if the values are not unique)
+     */
+    public boolean createIndex(String attributes, boolean unique) {
+        return createIndex(attributes, unique, mType);
+    } // createIndex
+
+    /************************************************************************************
+     * Create a secondary index on the given attributes using the given type of map:
+     * TREE_MAP and BPTREE_MAP also answer range conditions on a single attribute.
+     * An existing index on the attributes is replaced only if the new one is built.
+     *
+     * #usage professor.createIndex ("deptId", false, Table.MapType.LINHASH_MAP)
+     *
+     * @param attributes the attributes to index
+     * @param unique     whether the values must be unique (inserts repeating one fail)
+     * @param _mType     the type of map to hold the index
+     * @return whether the index was created (false if the values are not unique)
+     */
+    public boolean createIndex(String attributes, boolean unique, MapType _mType) {
+        if (Trace.on(INDEX))
+            Trace.log(INDEX, name + ".createIndex (" + attributes + (unique ? ", unique" : "") + ")");
+
+        // the new index is built before it replaces any index on the same attributes
+        String[] attrs = attributes.split(" ");
+        SecondaryIndex s = new SecondaryIndex(attrs, match(attrs), unique, makeMap(_mType, int[].class));
+        for (int i = 0; i < tuples.size(); i++) {
+            KeyType k = deadRows.get(i) ? null : keyAt(tuples, i, s.cols());
+            if (k == null)
+                continue;
+            if (unique && s.posting(k) != null)
+                return false;
+            s.add(k, i);
+        } // for
+        dropIndex(attributes);
+        secondary.add(s);
+        return true;
+    } // createIndex
+
+    /************************************************************************************
+     * Drop the secondary index on the given attributes.
+     *
+     * @param attributes the indexed attributes
+     * @return whether there was such an index
+     */
+    public boolean dropIndex(String attributes) {
+        String[] attrs = attributes.split(" ");
+        return secondary.removeIf(s -> s.isOn(attrs));
+    } // dropIndex
+
+    /************************************************************************************
+     * Create a bitmap index on each of the given attributes, which should have few
+     * distinct values. Inserts, updates and deletes maintain the indexes, and
+     * select (Condition) answers comparisons on these attributes by combining their
+     * bitmaps before reading any tuple.
+     *
+     * #usage student.createBitmapIndex ("status")
+     *
+     * @param attributes the attributes to index
+     */
+    public void createBitmapIndex(String attributes) {
+        if (Trace.on(INDEX))
+            Trace.log(INDEX, name + ".createBitmapIndex (" + attributes + ")");
+
+        for (String a : attributes.split(" ")) {
+            BitmapIndex b = new BitmapIndex(a, match(new String[] { a })[0]);
+            fillBitmap(b);
+            bitmaps.put(a, b);
+        } // for
+    } // createBitmapIndex
+
+    /************************************************************************************
+     * Drop the bitmap indexes on the given attributes.
+     *
+     * @param attributes the indexed attributes
+     */
+    public void dropBitmapIndex(String attributes) {
+        for (String a : attributes.split(" "))
+            bitmaps.remove(a);
+    } // dropBitmapIndex
+
+    /************************************************************************************
+     * Get the storage layout used for this table's tuples.
+     *
+     * @return the table's store type
+     */
+    public StoreType getStoreType() {
+        return (tuples instanceof ColumnStore) ? StoreType.COLUMN : StoreType.ROW;
+    } // getStoreType
+
+    /************************************************************************************
+     * Get the type of map used for this table's index.
+     *
+     * @return the index's map type
+     */
+    public MapType getMapType() {
+        return mType;
+    } // getMapType
+
+    /************************************************************************************
+     * Get the name of the table.
+     *
+     * @return the table's name
+     */
+    public String getName() {
+        return name;
+    } // getName
+
+    /************************************************************************************
+     * Print this table.
      */
     public void print() {
         out.println("\n Table " + name);
@@ -479,7 +1427,7 @@ public class Table
         for (int i = 0; i < attribute.length; i++)
             out.print("---------------");
         out.println("-|");
-        for (Comparable[] tup : tuples) {
+        for (Comparable[] tup : live()) {
             out.print("| ");
             for (Comparable attr : tup)
                 out.printf("%15s", attr);
@@ -504,37 +1452,192 @@ public class Table
     } // printIndex
 
     /************************************************************************************
-     * Load the table with the given name into memory.
+     * Return the metrics of this table's index, to spot an index degrading as the
+     * table grows: for a LinHashMap its chain lengths, load factor, splits and buckets
+     * accessed per lookup (see LinHashMap.stats), otherwise the number of keys.
+     *
+     * @return the metrics by name
+     */
+    public Map<String, Number> indexStats() {
+        if (index instanceof LinHashMap)
+            return ((LinHashMap<KeyType, Comparable[]>) index).stats();
+        Map<String, Number> m = new LinkedHashMap<>();
+        m.put("keys", index.size());
+        return m;
+    } // indexStats
+
+    /************************************************************************************
+     * Load the table with the given name into memory. The tuples are read from the
+     * table's page file in large batches, and the index is rebuilt as they are
+     * inserted (see PageFile). Changes in the table's write-ahead log that are newer
+     * than the file are then replayed.
      *
      * @param name the name of the table to load
      */
     public static Table load(String name) {
         Table tab = null;
-        try {
-            ObjectInputStream ois = new ObjectInputStream(new FileInputStream(DIR + name + EXT));
-            tab = (Table) ois.readObject();
-            ois.close();
+        try (PageFile file = new PageFile(DIR + name + EXT)) {
+            Table t = new Table(file.name(), file.attribute(), file.domain(), file.key(),
+                    file.mapType(), file.storeType());
+            file.scan(rows -> {
+                if (!t.insertAll(rows))
+                    throw new IOException("load: a batch of tuples could not be inserted into " + name);
+            });
+
+            // redo the changes logged since the file was written
+            t.lsn = WriteAheadLog.replay(DIR + name + LOG, t.domain, file.lsn(), (l, op, before, after) -> {
+                switch (op) {
+                    case INSERT -> t.insert(after);
+                    case DELETE -> t.delete(keyOf(before, t.match(t.key)));
+                    case UPDATE -> t.update(keyOf(before, t.match(t.key)), after);
+                } // switch
+            });
+            tab = t;
         } catch (IOException ex) {
             out.println("load: IO Exception");
             ex.printStackTrace();
-        } catch (ClassNotFoundException ex) {
-            out.println("load: Class Not Found Exception");
-            ex.printStackTrace();
         } // try
         return tab;
     } // load
 
     /************************************************************************************
-     * Save this table in a file.
+     * Open the saved table with the given name read-only, by memory-mapping its
+     * page file (see MappedStore). Opening reads only the schema and page directory;
+     * tuples are decoded as operators scan them. The table has no index, so key
+     * lookups and joins scan its tuples, and inserting into it is not supported.
+     *
+     * @param name the name of the table to open
+     * @return the read-only table, or null if it cannot be opened
+     */
+    public static Table open(String name) {
+        Table tab = null;
+        try (PageFile file = new PageFile(DIR + name + EXT)) {
+            tab = new Table(file.name(), file.attribute(), file.domain(), file.key(),
+                    new MappedStore(file), file.mapType());
+        } catch (IOException ex) {
+            out.println("open: IO Exception");
+            ex.printStackTrace();
+        } // try
+        return tab;
+    } // open
+
+    /************************************************************************************
+     * Open the saved table with the given name as a disk-resident table whose pages
+     * are cached in the given buffer pool (see PagedStore), so that it may be larger
+     * than the heap. Like a memory-mapped table it has no index and does not support
+     * insert, but its tuples may be replaced in place, as long as each page still
+     * fits (see update). Call close when done with it.
+     *
+     * @param name the name of the table to open
+     * @param pool the buffer pool to cache the table's pages in
+     * @return the disk-resident table, or null if it cannot be opened
+     */
+    public static Table open(String name, BufferPool pool) {
+        Table tab = null;
+        try {
+            PagedStore store = new PagedStore(DIR + name + EXT, pool, true);
+            PageFile file = store.file();
+            tab = new Table(file.name(), file.attribute(), file.domain(), file.key(), store, file.mapType());
+        } catch (IOException ex) {
+            out.println("open: IO Exception");
+            ex.printStackTrace();
+        } // try
+        return tab;
+    } // open
+
+    /************************************************************************************
+     * Release the file of a disk-resident table, writing back its changed pages (a
+     * table held in memory has nothing to release).
+     */
+    public void close() {
+        if (tuples instanceof Closeable) {
+            try {
+                ((Closeable) tuples).close();
+            } catch (IOException ex) {
+                out.println("close: IO Exception");
+                ex.printStackTrace();
+            } // try
+        } // if
+    } // close
+
+    /************************************************************************************
+     * Log the changes made to this table from now on in a write-ahead log, so that
+     * they are durable without saving the whole table (see WriteAheadLog). Records
+     * are made durable in groups of syncEvery records and/or every syncMillis
+     * milliseconds (and on commit), and the table is saved (a checkpoint, which
+     * empties the log) after every checkpointEvery records.
+     *
+     * #usage movie.enableLog (1000, 10, 1000000)
+     *
+     * @param syncEvery        the number of pending records that triggers a group commit
+     * @param syncMillis       the interval of timed group commits (0 for none)
+     * @param _checkpointEvery the number of records that triggers a checkpoint (0 for none)
+     * @return whether the log could be opened
+     */
+    public boolean enableLog(int syncEvery, long syncMillis, long _checkpointEvery) {
+        if (tuples instanceof MappedStore || tuples instanceof PagedStore)
+            throw new UnsupportedOperationException("enableLog: " + name + " is disk-resident");
+        disableLog();
+        try {
+            wal = new WriteAheadLog(DIR + name + LOG, domain, lsn, syncEvery, syncMillis);
+            checkpointEvery = _checkpointEvery;
+            checkpointAt = checkpointEvery;
+            return true;
+        } catch (IOException ex) {
+            out.println("enableLog: IO Exception");
+            ex.printStackTrace();
+            return false;
+        } // try
+    } // enableLog
+
+    /************************************************************************************
+     * Make all the logged changes durable now (without waiting for the group commit).
+     */
+    public void commit() {
+        if (wal == null)
+            return;
+        try {
+            wal.commit();
+        } catch (IOException ex) {
+            out.println("commit: IO Exception");
+            ex.printStackTrace();
+        } // try
+    } // commit
+
+    /************************************************************************************
+     * Commit the logged changes and stop logging changes to this table.
      */
-    public void save() {
+    public void disableLog() {
+        if (wal == null)
+            return;
         try {
-            ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DIR + name + EXT));
-            oos.writeObject(this);
-            oos.close();
+            wal.close();
+        } catch (IOException ex) {
+            out.println("disableLog: IO Exception");
+            ex.printStackTrace();
+        } // try
+        wal = null;
+    } // disableLog
+
+    /************************************************************************************
+     * Save this table in a file, as a schema header followed by pages of binary
+     * encoded tuples (see PageFile). The file records the LSN of the last logged
+     * change it includes, so saving is a checkpoint: the write-ahead log is emptied.
+     * A failed save leaves the previous file (and the log) in place.
+     *
+     * @return whether the table was saved
+     */
+    public boolean save() {
+        compact();
+        try {
+            PageFile.write(DIR + name + EXT, name, attribute, domain, key, mType, getStoreType(), tuples, lsn);
+            if (wal != null)
+                wal.truncate();
+            return true;
         } catch (IOException ex) {
             out.println("save: IO Exception");
             ex.printStackTrace();
+            return false;
         } // try
     } // save
 
@@ -542,6 +1645,367 @@ public class Table
     // Private Methods
     // ----------------------------------------------------------------------------------
 
+    /************************************************************************************
+     * Replace the tuple with the given key by the given tuple (the values of an
+     * update), overwriting its row in place so that the tuple keeps its position.
+     *
+     * @param keyVal the key of the tuple to replace
+     * @param tup    the new tuple
+     * @return whether the tuple was replaced
+     */
+    private boolean update(KeyType keyVal, Comparable[] tup) {
+        boolean covers = indexCovers();
+        Comparable[] old = covers ? index.get(keyVal) : null;
+        int oldRow = (old == null) ? -1 : rowOf(keyVal, old);
+        if (!covers || old != null && oldRow < 0) {
+            // the index does not cover the (live) tuples: find the tuple by scanning
+            int[] cols = match(key);
+            Comparable[] vals = tup;
+            return update(t -> keyVal.equals(keyOf(t, cols)), String.join(" ", attribute), vals) > 0;
+        } // if
+
+        KeyType newKey = keyOf(tup, match(key));
+        boolean rekey = !keyVal.equals(newKey);
+        if (old == null || !typeCheck(tup) || newKey == null || rekey && index.containsKey(newKey))
+            return false;
+        if (violatesUnique(tup, old, oldRow))
+            return false;
+        if (!log(WriteAheadLog.Op.UPDATE, old, tup))
+            return false;
+
+        tuples.set(oldRow, tup);
+        secondaryRemove(old, oldRow);
+        secondaryAdd(tup, oldRow);
+        renumber(old, tup, oldRow);
+        if (index instanceof ColumnStore.RowIndex) {
+            if (rekey) {
+                index.remove(keyVal);
+                indexPut(newKey, tup, oldRow);
+            } // if
+        } else {
+            index.remove(keyVal);
+            index.put(newKey, tup);
+        } // if
+        checkpointIfDue();
+        return true;
+    } // update
+
+    /************************************************************************************
+     * Return the tuple with the given key, using the index when it covers the tuples.
+     *
+     * @param keyVal the key to look up
+     * @return the tuple, or null if there is none
+     */
+    private Comparable[] lookup(KeyType keyVal) {
+        if (indexCovers())
+            return index.get(keyVal);
+        int[] cols = match(key);
+        for (int i = 0; i < tuples.size(); i++) {
+            if (!deadRows.get(i) && keyVal.equals(keyAt(tuples, i, cols)))
+                return tuples.get(i);
+        } // for
+        return null;
+    } // lookup
+
+    /************************************************************************************
+     * Copy tuple t with the values at the given column positions replaced.
+     *
+     * @param t      the tuple to copy
+     * @param cols   the column positions to set
+     * @param values the new values
+     * @return the new tuple
+     */
+    private static Comparable[] assign(Comparable[] t, int[] cols, Comparable[] values) {
+        if (cols.length != values.length)
+            throw new IllegalArgumentException("update: " + cols.length + " attributes but "
+                    + values.length + " values");
+        Comparable[] tup = t.clone();
+        for (int j = 0; j < cols.length; j++)
+            tup[cols[j]] = values[j];
+        return tup;
+    } // assign
+
+    /************************************************************************************
+     * Determine whether a tuple would repeat the value of a unique secondary index held
+     * by another live tuple.
+     *
+     * @param tup  the new tuple
+     * @param old  the tuple it replaces (null if none)
+     * @param self the row number of the tuple it replaces (-1 if none or unknown)
+     * @return whether the tuple violates a unique index
+     */
+    private boolean violatesUnique(Comparable[] tup, Comparable[] old, int self) {
+        for (SecondaryIndex s : secondary) {
+            if (!s.isUnique())
+                continue;
+            KeyType k = keyOf(tup, s.cols());
+            int[] p = (k == null) ? null : s.posting(k);
+            if (p == null)
+                continue;
+            for (int i = 1; i <= p[0]; i++) {
+                int r = p[i];
+                if (r != self && isLive(r) && (old == null || tuples.get(r) != old))
+                    return true;
+            } // for
+        } // for
+        return false;
+    } // violatesUnique
+
+    /************************************************************************************
+     * Determine whether row r holds a tuple not yet deleted.
+     *
+     * @param r the row number
+     * @return whether the row is live
+     */
+    private boolean isLive(int r) {
+        return !deadRows.get(r);
+    } // isLive
+
+    /************************************************************************************
+     * Determine whether the index holds every live tuple, so that it may be used in
+     * place of a scan (a derived or disk-resident table has an empty index).
+     *
+     * @return whether the index covers the tuples
+     */
+    private boolean indexCovers() {
+        return index.size() == tuples.size() - deadCount;
+    } // indexCovers
+
+    /************************************************************************************
+     * Count the live tuples holding each key, for checking key collisions when the
+     * index does not cover the tuples.
+     *
+     * @param keyCols the key column positions
+     * @return the number of live tuples with each (non-null) key
+     */
+    private Map<KeyType, Integer> liveKeyCounts(int[] keyCols) {
+        Map<KeyType, Integer> counts = new HashMap<>();
+        for (int i = deadRows.nextClearBit(0); i < tuples.size(); i = deadRows.nextClearBit(i + 1)) {
+            KeyType k = keyAt(tuples, i, keyCols);
+            if (k != null)
+                counts.merge(k, 1, Integer::sum);
+        } // for
+        return counts;
+    } // liveKeyCounts
+
+    /************************************************************************************
+     * Return the live tuples: the tuple list itself when no row is dead, otherwise a
+     * copy leaving out the dead rows.
+     *
+     * @return the live tuples (not to be modified)
+     */
+    private List<Comparable[]> live() {
+        if (deadRows.isEmpty())
+            return tuples;
+        List<Comparable[]> rows = new ArrayList<>(tuples.size() - deadCount);
+        for (int i = deadRows.nextClearBit(0); i < tuples.size(); i = deadRows.nextClearBit(i + 1))
+            rows.add(tuples.get(i));
+        return rows;
+    } // live
+
+    /************************************************************************************
+     * Return the numbers of the live rows, in increasing order.
+     *
+     * @return the live row numbers, or null if every row is live
+     */
+    private int[] liveRows() {
+        if (deadRows.isEmpty())
+            return null;
+        int[] sel = new int[tuples.size() - deadCount];
+        int k = 0;
+        for (int i = deadRows.nextClearBit(0); i < tuples.size(); i = deadRows.nextClearBit(i + 1))
+            sel[k++] = i;
+        return sel;
+    } // liveRows
+
+    /************************************************************************************
+     * Return the row number of the tuple with the given key, found with the index. A
+     * column store's index holds row numbers; for a row-oriented tuple list the row
+     * numbers of the live tuples are first recorded by identity.
+     *
+     * @param keyVal the tuple's key
+     * @param tup    the tuple (as held by the index)
+     * @return the tuple's row number, or -1 if it is not a live tuple (the index is
+     *         stale, e.g., after repeated keys were inserted)
+     */
+    private int rowOf(KeyType keyVal, Comparable[] tup) {
+        Integer r;
+        if (index instanceof ColumnStore.RowIndex) {
+            r = ((ColumnStore.RowIndex) index).rowOf(keyVal);
+        } else {
+            if (rowNumber == null) {
+                rowNumber = new IdentityHashMap<>(2 * tuples.size());
+                for (int i = deadRows.nextClearBit(0); i < tuples.size(); i = deadRows.nextClearBit(i + 1))
+                    rowNumber.put(tuples.get(i), i);
+            } // if
+            r = rowNumber.get(tup);
+        } // if
+        return (r == null || deadRows.get(r)) ? -1 : r;
+    } // rowOf
+
+    /************************************************************************************
+     * Record that row r now holds tuple tup in place of tuple old, if the row numbers
+     * of a row-oriented tuple list are being kept (see rowOf).
+     *
+     * @param old the tuple leaving the row (null if none)
+     * @param tup the tuple entering the row (null if none)
+     * @param r   the row number
+     */
+    private void renumber(Comparable[] old, Comparable[] tup, int r) {
+        if (rowNumber == null)
+            return;
+        if (old != null)
+            rowNumber.remove(old);
+        if (tup != null)
+            rowNumber.put(tup, r);
+    } // renumber
+
+    /************************************************************************************
+     * Add row r, holding tuple tup, to the secondary and bitmap indexes.
+     *
+     * @param tup the tuple
+     * @param r   its row number
+     */
+    private void secondaryAdd(Comparable[] tup, int r) {
+        for (SecondaryIndex s : secondary) {
+            KeyType k = keyOf(tup, s.cols());
+            if (k != null)
+                s.add(k, r);
+        } // for
+        for (BitmapIndex b : bitmaps.values())
+            b.add(tup[b.col()], r);
+    } // secondaryAdd
+
+    /************************************************************************************
+     * Remove row r, holding tuple tup, from the secondary and bitmap indexes.
+     *
+     * @param tup the tuple
+     * @param r   its row number
+     */
+    private void secondaryRemove(Comparable[] tup, int r) {
+        for (SecondaryIndex s : secondary) {
+            KeyType k = keyOf(tup, s.cols());
+            if (k != null)
+                s.remove(k, r);
+        } // for
+        for (BitmapIndex b : bitmaps.values())
+            b.remove(tup[b.col()], r);
+    } // secondaryRemove
+
+    /************************************************************************************
+     * Rebuild the secondary and bitmap indexes after rows have moved.
+     */
+    private void rebuildSecondary() {
+        for (SecondaryIndex s : secondary) {
+            s.clear();
+            for (int i = 0; i < tuples.size(); i++) {
+                KeyType k = keyAt(tuples, i, s.cols());
+                if (k != null)
+                    s.add(k, i);
+            } // for
+        } // for
+        for (BitmapIndex b : bitmaps.values()) {
+            b.clear();
+            fillBitmap(b);
+        } // for
+    } // rebuildSecondary
+
+    /************************************************************************************
+     * Add every row of the table to a bitmap index.
+     *
+     * @param b the bitmap index
+     */
+    private void fillBitmap(BitmapIndex b) {
+        ColumnStore cs = (tuples instanceof ColumnStore) ? (ColumnStore) tuples : null;
+        for (int i = deadRows.nextClearBit(0); i < tuples.size(); i = deadRows.nextClearBit(i + 1))
+            b.add((cs == null) ? tuples.get(i)[b.col()] : cs.value(i, b.col()), i);
+    } // fillBitmap
+
+    /************************************************************************************
+     * Remove the dead rows from the tuple list in one pass. A column store's row index,
+     * the row numbers kept by identity and the secondary indexes are rebuilt, since
+     * the remaining rows move up.
+     */
+    private void compact() {
+        if (deadRows.isEmpty())
+            return;
+        if (tuples instanceof ColumnStore) {
+            ((ColumnStore) tuples).compact(deadRows);
+        } else {
+            int[] i = { 0 };
+            tuples.removeIf(t -> deadRows.get(i[0]++));
+        } // if
+        deadRows.clear();
+        deadCount = 0;
+        rowNumber = null;
+        if (index instanceof ColumnStore.RowIndex) {
+            ColumnStore.RowIndex ri = (ColumnStore.RowIndex) index;
+            ri.clear();
+            int[] cols = match(key);
+            for (int i = 0; i < tuples.size(); i++)
+                ri.putRow(keyAt(tuples, i, cols), i);
+        } // if
+        rebuildSecondary();
+    } // compact
+
+    /************************************************************************************
+     * Compact the tuple list once the dead rows make up more than MAX_DEAD of it, so
+     * that the cost of compacting is spread over many deletes.
+     */
+    private void compactIfDue() {
+        if (deadCount > MAX_DEAD * tuples.size())
+            compact();
+    } // compactIfDue
+
+    /************************************************************************************
+     * Append a change to the write-ahead log (if changes are being logged) before it
+     * is applied to the table.
+     *
+     * @param op     the operation
+     * @param before the tuple before the change (null for an insert)
+     * @param after  the tuple after the change (null for a delete)
+     * @return whether the change may be applied
+     */
+    private boolean log(WriteAheadLog.Op op, Comparable[] before, Comparable[] after) {
+        if (wal == null)
+            return true;
+        try {
+            lsn = wal.append(op, before, after);
+            return true;
+        } catch (IOException ex) {
+            out.println("log: IO Exception");
+            ex.printStackTrace();
+            return false;
+        } // try
+    } // log
+
+    /************************************************************************************
+     * Save the table (a checkpoint) once the log holds checkpointEvery records. If
+     * the save fails, the next attempt waits for another checkpointEvery records
+     * rather than rewriting the table after every change.
+     */
+    private void checkpointIfDue() {
+        if (wal == null || checkpointEvery <= 0 || wal.records() < checkpointAt)
+            return;
+        checkpointAt = save() ? checkpointEvery : wal.records() + checkpointEvery;
+    } // checkpointIfDue
+
+    /************************************************************************************
+     * Make a map (index) of the given map type.
+     *
+     * @param mType  the type of map to make
+     * @param classV the class of the map's values
+     * @return an empty map from keys to values
+     */
+    private static <V> Map<KeyType, V> makeMap(MapType mType, Class<V> classV) {
+        return switch (mType) {
+            case TREE_MAP -> new TreeMap<>();
+            case BPTREE_MAP -> new BPTreeMap<>(KeyType.class, classV);
+            case LINHASH_MAP -> new LinHashMap<>(KeyType.class, classV);
+            case EXTHASH_MAP -> new ExtHashMap<>(KeyType.class, classV);
+        }; // switch
+    } // makeMap
+
     /************************************************************************************
      * Determine whether the two tables (this and table2) are compatible, i.e., have
      * the same number of attributes each with the same corresponding domain.
@@ -603,10 +2067,589 @@ public class Table
         return tup;
     } // extract
 
+    /************************************************************************************
+     * Extract the values at the given (precomputed) column positions from tuple t.
+     *
+     * @param t    the tuple to extract from
+     * @param cols the column positions
+     * @return a smaller tuple extracted from tuple t
+     */
+    private static Comparable[] extract(Comparable[] t, int[] cols) {
+        Comparable[] tup = new Comparable[cols.length];
+        for (int j = 0; j < cols.length; j++)
+            tup[j] = t[cols[j]];
+        return tup;
+    } // extract
+
+    /************************************************************************************
+     * Use the index to find a superset of the tuples satisfying the condition, from
+     * its conjuncts: equalities on all key attributes give a point lookup, and
+     * comparisons on a single-attribute key give a range scan of an ordered index.
+     * Failing that, the secondary indexes are tried in the same way, and then the
+     * conjuncts answerable by bitmap indexes are intersected.
+     *
+     * @param condition the typed check condition
+     * @return the candidate tuples, or null if the index cannot be used
+     */
+    private List<Comparable[]> indexCandidates(Condition condition) {
+        List<Condition> conj = condition.conjuncts();
+
+        if (indexCovers()) {
+            // point lookup: an equality on every key attribute
+            KeyType keyVal = equalities(conj, key);
+            if (keyVal != null) {
+                Comparable[] tup = index.get(keyVal);
+                return (tup == null) ? List.of() : List.<Comparable[]>of(tup);
+            } // if
+
+            // range scan: bounds on a single-attribute key of an ordered index
+            Comparable[] b = (key.length == 1 && isOrderedIndex()) ? bounds(conj, key[0]) : null;
+            if (b != null)
+                return indexRange((b[0] == null) ? null : KeyType.of(b[0]), (b[1] == null) ? null : KeyType.of(b[1]));
+        } // if
+
+        // the same on a secondary index (equalities are tried first, as the more selective)
+        for (SecondaryIndex s : secondary) {
+            KeyType v = equalities(conj, s.attributes());
+            if (v != null)
+                return rowsAt(s.rows(v));
+        } // for
+        for (SecondaryIndex s : secondary) {
+            Comparable[] b = (s.attributes().length == 1 && s.isOrdered()) ? bounds(conj, s.attributes()[0]) : null;
+            if (b != null)
+                return rowsAt(s.rows((b[0] == null) ? null : KeyType.of(b[0]), (b[1] == null) ? null : KeyType.of(b[1])));
+        } // for
+
+        RoaringBitmap rows = null;
+        for (Condition c : bitmaps.isEmpty() ? List.<Condition>of() : conj) {
+            RoaringBitmap b = bitmapOf(c);
+            if (b != null)
+                rows = (rows == null) ? b : RoaringBitmap.and(rows, b);
+        } // for
+        return (rows == null) ? null : rowsAt(rows.toArray());
+    } // indexCandidates
+
+    /************************************************************************************
+     * Answer a condition with the bitmap indexes, combining the bitmaps of its
+     * comparisons with AND, OR and AND-NOT as the condition does (a negation keeps
+     * rows with nulls, as Condition.evaluate does).
+     *
+     * @param c the condition
+     * @return the bitmap of the rows satisfying it (not to be modified), or null if
+     *         some attribute it compares has no bitmap index
+     */
+    private RoaringBitmap bitmapOf(Condition c) {
+        Condition[] ch = c.children();
+        switch (c.op()) {
+            case AND, OR:
+                RoaringBitmap a = bitmapOf(ch[0]);
+                RoaringBitmap b = (a == null) ? null : bitmapOf(ch[1]);
+                if (b == null)
+                    return null;
+                return (c.op() == Condition.Op.AND) ? RoaringBitmap.and(a, b) : RoaringBitmap.or(a, b);
+            case NOT:
+                RoaringBitmap r = bitmapOf(ch[0]);
+                return (r == null) ? null : RoaringBitmap.andNot(allRows(), r);
+            default:
+                break;
+        } // switch
+
+        BitmapIndex bi = bitmaps.get(c.attribute());
+        if (bi == null)
+            return null;
+        Comparable[] v = c.values();
+        return switch (c.op()) {
+            case EQ -> bi.eq(v[0]);
+            case NE -> RoaringBitmap.andNot(allRows(), bi.eq(v[0]));
+            case LT -> bi.range(null, false, v[0], false);
+            case LE -> bi.range(null, false, v[0], true);
+            case GT -> bi.range(v[0], false, null, false);
+            case GE -> bi.range(v[0], true, null, false);
+            case BETWEEN -> bi.range(v[0], true, v[1], true);
+            case IN -> bi.in(v);
+            default -> null;
+        }; // switch
+    } // bitmapOf
+
+    /************************************************************************************
+     * Return the bitmap of the live rows, which a negation is taken against.
+     *
+     * @return the bitmap of the live row numbers
+     */
+    private RoaringBitmap allRows() {
+        RoaringBitmap all = RoaringBitmap.range(tuples.size());
+        for (int r = deadRows.nextSetBit(0); r >= 0; r = deadRows.nextSetBit(r + 1))
+            all.remove(r);
+        return all;
+    } // allRows
+
+    /************************************************************************************
+     * Return the value the conjuncts require (by equalities) of the given attributes.
+     *
+     * @param conj  the conjuncts of a condition
+     * @param attrs the attributes
+     * @return the value of the attributes, or null if some attribute has no equality
+     */
+    private static KeyType equalities(List<Condition> conj, String[] attrs) {
+        Comparable[] val = new Comparable[attrs.length];
+        int found = 0;
+        for (Condition c : conj) {
+            int k = Arrays.asList(attrs).indexOf(c.attribute());
+            if (c.op() == Condition.Op.EQ && k >= 0 && val[k] == null) {
+                val[k] = c.values()[0];
+                found++;
+            } // if
+        } // for
+        return (found == attrs.length) ? KeyType.of(val) : null;
+    } // equalities
+
+    /************************************************************************************
+     * Return the tightest bounds the conjuncts put on the given attribute.
+     *
+     * @param conj the conjuncts of a condition
+     * @param attr the attribute
+     * @return the lower and upper bound (either null if unbounded), or null if neither
+     */
+    private static Comparable[] bounds(List<Condition> conj, String attr) {
+        Comparable lo = null, hi = null;
+        for (Condition c : conj) {
+            if (!attr.equals(c.attribute()))
+                continue;
+            Comparable[] v = c.values();
+            switch (c.op()) {
+                case GT, GE -> lo = max(lo, v[0]);
+                case LT, LE -> hi = min(hi, v[0]);
+                case BETWEEN -> { lo = max(lo, v[0]); hi = min(hi, v[1]); }
+                default -> { }
+            } // switch
+        } // for
+        return (lo == null && hi == null) ? null : new Comparable[] { lo, hi };
+    } // bounds
+
+    /************************************************************************************
+     * Return the tuples whose keys are in the range lo to hi (inclusive) by scanning
+     * an ordered index (TreeMap or BPTreeMap, or a column store's row index over one).
+     *
+     * @param lo the lowest key (null for no lower bound)
+     * @param hi the highest key (null for no upper bound)
+     * @return the tuples in key order, or null if the index is not ordered
+     */
+    @SuppressWarnings("unchecked")
+    private List<Comparable[]> indexRange(KeyType lo, KeyType hi) {
+        List<Comparable[]> rows = new ArrayList<>();
+        if (lo != null && hi != null && lo.compareTo(hi) > 0)
+            return rows;
+
+        if (index instanceof NavigableMap) {
+            var map = (NavigableMap<KeyType, Comparable[]>) index;
+            if (lo != null)
+                map = map.tailMap(lo, true);
+            if (hi != null)
+                map = map.headMap(hi, true);
+            rows.addAll(map.values());
+        } else if (index instanceof BPTreeMap) {
+            var it = ((BPTreeMap<KeyType, Comparable[]>) index).rangeIterator(lo, hi);
+            while (it.hasNext())
+                rows.add(it.next().getValue());
+        } else if (index instanceof ColumnStore.RowIndex && ((ColumnStore.RowIndex) index).isOrdered()) {
+            var it = ((ColumnStore.RowIndex) index).rangeIterator(lo, hi);
+            while (it.hasNext())
+                rows.add(it.next().getValue());
+        } else {
+            return null;
+        } // if
+        return rows;
+    } // indexRange
+
+    /************************************************************************************
+     * Determine whether the index keeps keys in order and covers every tuple.
+     *
+     * @return whether the index can be scanned in key order
+     */
+    private boolean isOrderedIndex() {
+        boolean ordered = index instanceof SortedMap || index instanceof BPTreeMap
+                || index instanceof ColumnStore.RowIndex && ((ColumnStore.RowIndex) index).isOrdered();
+        return ordered && indexCovers();
+    } // isOrderedIndex
+
+    /************************************************************************************
+     * Collect the tuples whose bits are set in the selection bitmap. A column store
+     * gathers the selected rows column by column.
+     *
+     * @param bits the selection bitmap over tuples
+     * @return the selected tuples
+     */
+    private List<Comparable[]> gather(long[] bits) {
+        int n = 0;
+        for (long w : bits)
+            n += Long.bitCount(w);
+        int[] sel = new int[n];
+        int k = 0;
+        for (int w = 0; w < bits.length; w++) {
+            for (long b = bits[w]; b != 0; b &= b - 1)
+                sel[k++] = (w << 6) + Long.numberOfTrailingZeros(b);
+        } // for
+
+        return rowsAt(sel);
+    } // gather
+
+    /************************************************************************************
+     * Return the tuples at the given row numbers (copying the rows of a column store
+     * into a new column store).
+     *
+     * @param sel the row numbers, in increasing order
+     * @return the tuples
+     */
+    private List<Comparable[]> rowsAt(int[] sel) {
+        if (tuples instanceof ColumnStore)
+            return ((ColumnStore) tuples).gather(sel, sel.length, null);
+
+        List<Comparable[]> rows = new ArrayList<>(sel.length);
+        for (int i : sel)
+            rows.add(tuples.get(i));
+        return rows;
+    } // rowsAt
+
+    /************************************************************************************
+     * Return the larger of two values, treating null as no value.
+     */
+    @SuppressWarnings("unchecked")
+    private static Comparable max(Comparable a, Comparable b) {
+        return (a == null || b.compareTo(a) > 0) ? b : a;
+    } // max
+
+    /************************************************************************************
+     * Return the smaller of two values, treating null as no value.
+     */
+    @SuppressWarnings("unchecked")
+    private static Comparable min(Comparable a, Comparable b) {
+        return (a == null || b.compareTo(a) < 0) ? b : a;
+    } // min
+
+    /************************************************************************************
+     * Add the key of a newly stored tuple to the index. A column store's index
+     * records the tuple's row number instead of the tuple itself.
+     *
+     * @param k   the tuple's key
+     * @param tup the tuple
+     * @param row the tuple's row number in tuples
+     */
+    private void indexPut(KeyType k, Comparable[] tup, int row) {
+        if (index instanceof ColumnStore.RowIndex)
+            ((ColumnStore.RowIndex) index).putRow(k, row);
+        else
+            index.put(k, tup);
+    } // indexPut
+
+    /************************************************************************************
+     * Form the key made of the values at the given (precomputed) column positions
+     * of tuple i in the list, reading a column store's cells directly so that the
+     * tuple is not materialized.
+     *
+     * @param tups the list of tuples (possibly a ColumnStore)
+     * @param i    the position of the tuple in the list
+     * @param cols the column positions making up the key
+     * @return the key, or null if any of its values is null
+     */
+    private static KeyType keyAt(List<Comparable[]> tups, int i, int[] cols) {
+        if (!(tups instanceof ColumnStore))
+            return keyOf(tups.get(i), cols);
+
+        return ((ColumnStore) tups).key(i, cols);
+    } // keyAt
+
+    /************************************************************************************
+     * Form the key made of the values at the given (precomputed) column positions
+     * of tuple t.
+     *
+     * @param t    the tuple to extract the key from
+     * @param cols the column positions making up the key
+     * @return the key, or null if any of its values is null
+     */
+    private static KeyType keyOf(Comparable[] t, int[] cols) {
+        Comparable[] keyVal = new Comparable[cols.length];
+        for (int j = 0; j < cols.length; j++) {
+            if ((keyVal[j] = t[cols[j]]) == null)
+                return null;
+        } // for
+        return KeyType.of(keyVal);
+    } // keyOf
+
+    /************************************************************************************
+     * Return the primary key column positions if this table and (compatible) table2
+     * have the same primary key at the same positions, so that set operations may
+     * identify tuples by their keys.
+     *
+     * @param table2 the rhs table
+     * @return the key column positions, or null if tuples must be compared whole
+     */
+    private int[] sharedKey(Table table2) {
+        if (!Arrays.equals(key, table2.key))
+            return null;
+        int[] cols = new int[key.length];
+        for (int j = 0; j < key.length; j++) {
+            cols[j] = col(key[j]);
+            if (cols[j] < 0 || cols[j] != table2.col(key[j]))
+                return null;
+        } // for
+        return cols;
+    } // sharedKey
+
+    /************************************************************************************
+     * Return the hash key identifying tuple i for the set operations: its primary
+     * key when cols is given, otherwise the whole tuple viewed as a list (which
+     * hashes and compares element-wise, nulls included, without copying).
+     *
+     * @param tups the tuples
+     * @param i    the tuple position
+     * @param cols the key column positions (null to use the whole tuple)
+     * @return the hash key for the tuple
+     */
+    private static Object setKey(List<Comparable[]> tups, int i, int[] cols) {
+        return (cols == null) ? Arrays.asList(tups.get(i)) : keyAt(tups, i, cols);
+    } // setKey
+
+    /************************************************************************************
+     * Append to rows each tuple whose hash key has not been seen before and is not
+     * in the excluded set.
+     *
+     * @param tups     the tuples to scan
+     * @param dead     the dead rows of tups (skipped)
+     * @param cols     the key column positions (null to use the whole tuple)
+     * @param seen     the hash keys seen so far (updated)
+     * @param excluded the hash keys to leave out (may be null)
+     * @param rows     the list receiving the distinct tuples
+     */
+    private static void addDistinct(List<Comparable[]> tups, BitSet dead, int[] cols, Set<Object> seen,
+            Set<?> excluded, List<Comparable[]> rows) {
+        for (int i = dead.nextClearBit(0); i < tups.size(); i = dead.nextClearBit(i + 1)) {
+            Object k = setKey(tups, i, cols);
+            if ((excluded == null || !excluded.contains(k)) && seen.add(k))
+                rows.add(tups.get(i));
+        } // for
+    } // addDistinct
+
+    /************************************************************************************
+     * Determine whether the given attributes are exactly the primary key (in any
+     * order) and the index holds every tuple, so that it may be probed for them.
+     *
+     * @param attrs the attribute names to check
+     * @return whether an index lookup on attrs finds all matching tuples
+     */
+    private boolean isIndexedOn(String[] attrs) {
+        return attrs.length == key.length && indexCovers()
+                && new HashSet<>(Arrays.asList(attrs)).containsAll(Arrays.asList(key));
+    } // isIndexedOn
+
+    /************************************************************************************
+     * Perform an index nested-loop join: for each outer tuple, probe the inner
+     * table's primary-key index with the outer tuple's join values. Each probe gets
+     * its own KeyType, read straight from a column store's cells when the outer
+     * tuples are column-stored. The join attributes of the inner table must be its
+     * primary key (see isIndexedOn).
+     *
+     * @param outerTab   the table driving the join (its live tuples)
+     * @param outerCols  the join column positions in the outer tuples
+     * @param innerAttrs the join attributes of the inner table
+     * @param inner      the table whose index is probed
+     * @param outerLeft  whether outer tuples go on the left of the result tuples
+     * @return the joined tuples
+     */
+    private static List<Comparable[]> indexJoin(Table outerTab, int[] outerCols,
+            String[] innerAttrs, Table inner, boolean outerLeft) {
+        List<Comparable[]> outer = outerTab.tuples;
+        // arrange the outer join columns in the order of the inner primary key
+        int[] probeCols = new int[inner.key.length];
+        for (int j = 0; j < probeCols.length; j++) {
+            probeCols[j] = outerCols[Arrays.asList(innerAttrs).indexOf(inner.key[j])];
+        } // for
+
+        // a column store's cells are read directly; its tuple is only built on a match
+        ColumnStore cs = (outer instanceof ColumnStore) ? (ColumnStore) outer : null;
+
+        return Parallel.collect(outer.size(), (from, to, out) -> {
+            for (int i = from; i < to; i++) {
+                // a key caches its hash, so each probe gets its own (unboxed for an int key)
+                if (outerTab.deadRows.get(i))
+                    continue;
+                Comparable[] tup = (cs == null) ? outer.get(i) : null;
+                KeyType probe = (cs == null) ? keyOf(tup, probeCols) : cs.key(i, probeCols);
+                if (probe == null)
+                    continue;
+                Comparable[] match = inner.index.get(probe);
+                if (match != null) {
+                    if (tup == null)
+                        tup = cs.get(i);
+                    out.add(outerLeft ? ArrayUtil.concat(tup, match) : ArrayUtil.concat(match, tup));
+                } // if
+            } // for
+        });
+    } // indexJoin
+
+    /************************************************************************************
+     * Return the secondary index on exactly the given attributes.
+     *
+     * @param attrs the attribute names
+     * @return the secondary index, or null if there is none
+     */
+    private SecondaryIndex secondaryOn(String[] attrs) {
+        for (SecondaryIndex s : secondary) {
+            if (s.isOn(attrs))
+                return s;
+        } // for
+        return null;
+    } // secondaryOn
+
+    /************************************************************************************
+     * Perform an index nested-loop join through a secondary index of the inner table:
+     * for each outer tuple, the index gives the rows of the inner tuples sharing its
+     * join values (there may be many).
+     *
+     * @param outerTab   the table to iterate over (its live tuples)
+     * @param outerCols  the (precomputed) outer join column positions
+     * @param innerAttrs the inner join attributes (in the order of the outer ones)
+     * @param inner      the table whose secondary index is probed
+     * @param s          the secondary index on innerAttrs
+     * @param outerLeft  whether the outer tuple goes first in each result tuple
+     * @return the joined tuples
+     */
+    private static List<Comparable[]> secondaryJoin(Table outerTab, int[] outerCols,
+            String[] innerAttrs, Table inner, SecondaryIndex s, boolean outerLeft) {
+        List<Comparable[]> outer = outerTab.tuples;
+        // arrange the outer join columns in the order of the index's attributes
+        String[] indexed = s.attributes();
+        int[] probeCols = new int[indexed.length];
+        for (int j = 0; j < probeCols.length; j++)
+            probeCols[j] = outerCols[Arrays.asList(innerAttrs).indexOf(indexed[j])];
+
+        ColumnStore cs = (outer instanceof ColumnStore) ? (ColumnStore) outer : null;
+
+        return Parallel.collect(outer.size(), (from, to, out) -> {
+            for (int i = from; i < to; i++) {
+                if (outerTab.deadRows.get(i))
+                    continue;
+                Comparable[] tup = (cs == null) ? outer.get(i) : null;
+                KeyType probe = (cs == null) ? keyOf(tup, probeCols) : cs.key(i, probeCols);
+                if (probe == null)
+                    continue;
+                int[] p = s.posting(probe);
+                if (p == null)
+                    continue;
+                if (tup == null)
+                    tup = cs.get(i);
+                for (int k = 1; k <= p[0]; k++) {
+                    Comparable[] match = inner.tuples.get(p[k]);
+                    out.add(outerLeft ? ArrayUtil.concat(tup, match) : ArrayUtil.concat(match, tup));
+                } // for
+            } // for
+        });
+    } // secondaryJoin
+
+    /************************************************************************************
+     * End an operator's metrics span with the number of rows in its result.
+     *
+     * @param span   the operator's span
+     * @param result the operator's result (null if it failed)
+     * @return the result
+     */
+    private static Table done(Metrics.Span span, Table result) {
+        span.end((result == null) ? 0 : result.tuples.size());
+        return result;
+    } // done
+
+    /************************************************************************************
+     * End an insertion's metrics span with the number of rows inserted.
+     *
+     * @param span the insertion's span
+     * @param ok   whether the rows were inserted
+     * @param rows the number of rows to insert
+     * @return whether the rows were inserted
+     */
+    private static boolean done(Metrics.Span span, boolean ok, int rows) {
+        span.end(ok ? rows : 0);
+        return ok;
+    } // done
+
+    /************************************************************************************
+     * Compare tuple t1 on columns cols1 with tuple t2 on columns cols2, column by
+     * column (negative => less than, zero => equals, positive => greater than).
+     *
+     * @param t1    the first tuple
+     * @param cols1 the column positions to compare in t1
+     * @param t2    the second tuple
+     * @param cols2 the column positions to compare in t2
+     * @return resultant integer that's negative, zero or positive
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareCols(Comparable[] t1, int[] cols1, Comparable[] t2, int[] cols2) {
+        for (int j = 0; j < cols1.length; j++) {
+            int cmp = t1[cols1[j]].compareTo(t2[cols2[j]]);
+            if (cmp != 0)
+                return cmp;
+        } // for
+        return 0;
+    } // compareCols
+
+    /************************************************************************************
+     * Return the tuples of this table in order on the given columns, skipping
+     * tuples with a null value in any of them. When the columns are a prefix of
+     * the primary key and the index is ordered (TreeMap or BPTreeMap) and covers
+     * every tuple, the index
+     * is scanned directly; otherwise a sorted copy of the tuples is made.
+     *
+     * @param cols the column positions to order on
+     * @return an iterator over the tuples in order
+     */
+    private Iterator<Comparable[]> sortedRun(int[] cols) {
+        if (isOrderedIndex() && isKeyPrefix(cols)) {
+            return index.values().iterator();
+        } // if
+
+        Comparable[][] run = live().stream().filter(t -> keyOf(t, cols) != null)
+                .toArray(Comparable[][]::new);
+        Arrays.sort(run, (t1, t2) -> compareCols(t1, cols, t2, cols));
+        return Arrays.asList(run).iterator();
+    } // sortedRun
+
+    /************************************************************************************
+     * Determine whether the given columns are, in order, a prefix of the primary key.
+     *
+     * @param cols the column positions to check
+     * @return whether cols is a prefix of the primary key columns
+     */
+    private boolean isKeyPrefix(int[] cols) {
+        if (cols.length > key.length)
+            return false;
+        int[] keyCols = match(key);
+        for (int j = 0; j < cols.length; j++) {
+            if (cols[j] != keyCols[j])
+                return false;
+        } // for
+        return true;
+    } // isKeyPrefix
+
+    /************************************************************************************
+     * Concatenate the attribute names of this table and table2 for a join result,
+     * appending "2" to any attribute of table2 that also occurs in this table.
+     * Neither table's attribute array is modified.
+     *
+     * @param table2 the rhs table in the join operation
+     * @return the attribute names of the join result
+     */
+    private String[] joinAttributes(Table table2) {
+        String[] attrs = ArrayUtil.concat(attribute, table2.attribute);
+        for (int j = attribute.length; j < attrs.length; j++) {
+            if (col(attrs[j]) >= 0)
+                attrs[j] = attrs[j] + "2";
+        } // for
+        return attrs;
+    } // joinAttributes
+
     /************************************************************************************
      * Check the size of the tuple (number of elements in list) as well as the type
      * of
-     * each value to ensure it is from the right domain.
+     * each value to ensure it is from the right domain, and that the tuple fits in a
+     * page when the table is saved (see PageFile.MAX_TUPLE).
      *
      * @param t the tuple as a list of attribute values
      * @return whether the tuple has the right size and values that comply
@@ -623,6 +2666,11 @@ public class Table
             if (!domain[i].isInstance(t[i]))
                 return false;
 
+        // a tuple never spans pages, so a larger one could not be saved
+        if (!PageFile.fits(t)) {
+            out.println("typeCheck: tuple is larger than a page (" + PageFile.MAX_TUPLE + " bytes)");
+            return false;
+        } // if
         return true;
     } // typeCheck
 
@@ -663,4 +2711,85 @@ public class Table
         return obj;
     } // extractDom
 
+    /************************************************************************************
+     * An open-addressing hash set of tuples used for duplicate elimination. A tuple
+     * is probed by its values at the given column positions, so the projected copy
+     * is only made when the tuple is not already present.
+     */
+    private static final class TupleSet {
+
+        /**
+         * The hash table slots (null when empty).
+         */
+        private Comparable[][] slot = new Comparable[16][];
+
+        /**
+         * The number of tuples in the set.
+         */
+        private int size = 0;
+
+        /********************************************************************************
+         * Add the projection of tuple t onto cols unless an equal tuple is present.
+         *
+         * @param t    the tuple to add
+         * @param cols the column positions to project onto (null for all of t, which
+         *             is then added without copying)
+         * @return the tuple added, or null if it was a duplicate
+         */
+        Comparable[] add(Comparable[] t, int[] cols) {
+            int mask = slot.length - 1;
+            int s = hash(t, cols) & mask;
+            for (Comparable[] u; (u = slot[s]) != null; s = (s + 1) & mask) {
+                if (same(u, t, cols))
+                    return null;
+            } // for
+
+            Comparable[] tup = (cols == null) ? t : extract(t, cols);
+            slot[s] = tup;
+            if (++size > slot.length >> 1)
+                resize();
+            return tup;
+        } // add
+
+        /********************************************************************************
+         * Hash the values of tuple t at the given column positions (null for all).
+         */
+        private static int hash(Comparable[] t, int[] cols) {
+            int n = (cols == null) ? t.length : cols.length;
+            int h = 0;
+            for (int j = 0; j < n; j++)
+                h = 31 * h + Objects.hashCode(t[(cols == null) ? j : cols[j]]);
+            return h ^ (h >>> 16);
+        } // hash
+
+        /********************************************************************************
+         * Determine whether stored tuple u equals tuple t projected onto cols.
+         */
+        private static boolean same(Comparable[] u, Comparable[] t, int[] cols) {
+            for (int j = 0; j < u.length; j++) {
+                if (!Objects.equals(u[j], t[(cols == null) ? j : cols[j]]))
+                    return false;
+            } // for
+            return true;
+        } // same
+
+        /********************************************************************************
+         * Double the number of slots and reinsert the stored tuples.
+         */
+        private void resize() {
+            Comparable[][] old = slot;
+            slot = new Comparable[old.length << 1][];
+            int mask = slot.length - 1;
+            for (Comparable[] u : old) {
+                if (u == null)
+                    continue;
+                int s = hash(u, null) & mask;
+                while (slot[s] != null)
+                    s = (s + 1) & mask;
+                slot[s] = u;
+            } // for
+        } // resize
+
+    } // TupleSet class
+
 } // Table class
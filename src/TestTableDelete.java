@@ -0,0 +1,84 @@
+package src;
+
+/*****************************************************************************************
+* @file  TestTableDelete.java
+*
+* @author Arjun V. Sivanesan
+*/
+
+import static java.lang.System.out;
+import java.io.File;
+
+/*****************************************************************************************
+ * This class tests that deleting from a saved table opened as a disk-resident table
+ * (memory-mapped or paged through a buffer pool) is refused before any tuple is
+ * marked dead, leaving the table intact.
+ */
+public class TestTableDelete {
+    /*************************************************************************************
+     * The main method is the driver for TestTableDelete.
+     *
+     * @param args the command-line arguments
+     */
+
+    public static void main(String[] args) {
+
+        // save a table of 10000 students (save expects the store directory to exist)
+        new File("store").mkdirs();
+        var student = new Table("TestDelete", "id name", "Integer String", "id");
+        for (var i = 0; i < 10000; i++)
+            student.insert(new Comparable[] { i, "name" + i });
+        student.save();
+
+        // a memory-mapped table refuses both deletes and updates
+        var mapped = Table.open("TestDelete");
+        check("mapped delete (predicate)", () -> mapped.delete(t -> (Integer) t[0] < 8000));
+        check("mapped delete (key)", () -> mapped.delete(new KeyType(5)));
+        check("mapped update", () -> mapped.update(new KeyType(5), "name", "x"));
+        out.println("mapped rows after deletes: " + count(mapped) + " (expected 10000)");
+
+        // a paged table refuses deletes, even ones too small to compact
+        var pool = new BufferPool(1 << 20, new BufferPool.Lru());
+        var paged = Table.open("TestDelete", pool);
+        check("paged delete (predicate)", () -> paged.delete(t -> (Integer) t[0] < 10));
+        check("paged delete (key)", () -> paged.delete(new KeyType(5)));
+        out.println("paged rows after deletes: " + count(paged) + " (expected 10000)");
+        paged.close();
+
+        // the table held in memory still deletes
+        out.println("in-memory deleted: " + student.delete(t -> (Integer) t[0] < 8000) + " (expected 8000)");
+        out.println("in-memory rows after delete: " + count(student) + " (expected 2000)");
+
+    } // main
+
+    /*************************************************************************************
+     * Run a change that should be refused and print whether it was.
+     *
+     * @param what   the description of the change
+     * @param change the change to run
+     */
+    private static void check(String what, Runnable change) {
+        try {
+            change.run();
+            out.println(what + ": FAILED, not refused");
+        } catch (UnsupportedOperationException ex) {
+            out.println(what + ": refused (" + ex.getMessage() + ")");
+        } // try
+    } // check
+
+    /*************************************************************************************
+     * Count the live tuples of a table by scanning it.
+     *
+     * @param tab the table
+     * @return the number of tuples
+     */
+    private static int count(Table tab) {
+        var n = new int[] { 0 };
+        tab.select(t -> {
+            n[0]++;
+            return false;
+        });
+        return n[0];
+    } // count
+
+} // TestTableDelete
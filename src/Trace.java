@@ -0,0 +1,111 @@
+package src;
+
+/****************************************************************************************
+ * @file  Trace.java
+ */
+
+import java.util.*;
+
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * This class provides switchable trace output for the database. Each message belongs
+ * to a channel (DDL, DML, RA or INDEX) and is printed as "CHANNEL> message" only when
+ * that channel is enabled. All channels are off by default. Callers guard each message
+ * with on (channel) so that, when tracing is off, no message string is ever built:
+ *
+ *     if (Trace.on (RA)) Trace.log (RA, name + ".select (" + predicate + ")");
+ *
+ * Channels may be enabled at start-up with the "trace" system property, e.g.,
+ * java -Dtrace=DDL,DML,RA ... (or -Dtrace=ALL), or at run-time with enable. Unknown
+ * channel names are ignored with a warning.
+ */
+public final class Trace {
+    /**
+     * The trace channels.
+     */
+    public enum Channel {
+        DDL, DML, RA, INDEX
+    } // Channel
+
+    /**
+     * Whether each channel (by ordinal) is enabled.
+     */
+    private static final boolean[] enabled = new boolean[Channel.values().length];
+
+    static {
+        String prop = System.getProperty("trace");
+        if (prop != null) {
+            for (String c : prop.split("[, ]+")) {
+                if (c.equalsIgnoreCase("ALL"))
+                    Arrays.fill(enabled, true);
+                else if (!c.isEmpty()) {
+                    try {
+                        enabled[Channel.valueOf(c.toUpperCase()).ordinal()] = true;
+                    } catch (IllegalArgumentException ex) {
+                        // an unknown channel must not keep the class from loading
+                        System.err.println("Trace: unknown channel " + c + " ignored");
+                    } // try
+                } // if
+            } // for
+        } // if
+    } // static
+
+    /************************************************************************************
+     * This class only has static members.
+     */
+    private Trace() {
+    } // constructor
+
+    /************************************************************************************
+     * Determine whether the given channel is enabled.
+     *
+     * @param c the trace channel
+     * @return whether messages on the channel are printed
+     */
+    public static boolean on(Channel c) {
+        return enabled[c.ordinal()];
+    } // on
+
+    /************************************************************************************
+     * Enable the given channels (all channels if none are given).
+     *
+     * @param cs the trace channels to enable
+     */
+    public static void enable(Channel... cs) {
+        set(true, cs);
+    } // enable
+
+    /************************************************************************************
+     * Disable the given channels (all channels if none are given).
+     *
+     * @param cs the trace channels to disable
+     */
+    public static void disable(Channel... cs) {
+        set(false, cs);
+    } // disable
+
+    /************************************************************************************
+     * Print the message on the given channel (callers should check on (c) first).
+     *
+     * @param c   the trace channel
+     * @param msg the message to print
+     */
+    public static void log(Channel c, String msg) {
+        out.println(c + "> " + msg);
+    } // log
+
+    /************************************************************************************
+     * Turn the given channels (all channels if none are given) on or off.
+     *
+     * @param value whether to enable the channels
+     * @param cs    the trace channels
+     */
+    private static void set(boolean value, Channel[] cs) {
+        if (cs.length == 0)
+            Arrays.fill(enabled, value);
+        for (Channel c : cs)
+            enabled[c.ordinal()] = value;
+    } // set
+
+} // Trace class
@@ -6,6 +6,8 @@ package src;
  * @author   Sadiq Charaniya, John Miller
  */
 
+import java.io.IOException;
+
 /*****************************************************************************************
  * This interface can be used for generating tuples to populate a database.
  */
@@ -39,6 +41,50 @@ public interface TupleGenerator {
     void addRelSchema(String name, String attribute, String domain,
             String primaryKey, String[][] foreignKey);
 
+    /*************************************************************************************
+     * Add the relational schema for a given table, with the distributions its
+     * attributes' values are drawn from (uniform for the attributes not listed).
+     * A distribution is given as { "attrName", "kind", params... }, where the kind
+     * is one of
+     *
+     *     "uniform"              uniform values (the default)
+     *     "zipf", s              Zipf with skew s > 0: value (or row) r with
+     *                            probability proportional to 1 / (r + 1)^s
+     *     "normal", mean, sd     normal (rounded for Integer and String domains)
+     *     "sequential"           the row number
+     *     "card", c              exactly c distinct values 0 until c (fewer if the
+     *                            table has fewer rows)
+     *
+     * For a foreign key, named as in foreignKey (e.g., "crsCode semester"), the
+     * distribution picks the referenced row, giving skewed fan-out (hot keys).
+     * Primary-key attributes must stay unique, so they take only "uniform" and
+     * "sequential".
+     *
+     * @param name         the table's name
+     * @param attribute    the array holding the table's attributes
+     * @param domain       the array holding the table's domains
+     * @param primaryKey   the array of primary keys
+     * @param foreignKey   the array of foreign keys
+     * @param distribution the array of distributions, e.g., {{ "grade", "card", "5" },
+     *                     { "studId", "zipf", "1.2" }}
+     */
+    void addRelSchema(String name, String[] attribute, String[] domain,
+            String[] primaryKey, String[][] foreignKey, String[][] distribution);
+
+    /*************************************************************************************
+     * Add the relational schema for a given table, with the distributions of its
+     * attributes' values. This is convenience method.
+     *
+     * @param name         the table's name
+     * @param attribute    the string embedding the table's attributes
+     * @param domain       the string embedding the table's domains
+     * @param primaryKey   the string embedding the table's primary keys
+     * @param foreignKey   the array of foreign keys
+     * @param distribution the array of distributions
+     */
+    void addRelSchema(String name, String attribute, String domain,
+            String primaryKey, String[][] foreignKey, String[][] distribution);
+
     /*************************************************************************************
      * Generate tuples for all of the tables.
      * 
@@ -48,4 +94,14 @@ public interface TupleGenerator {
      */
     Comparable[][][] generate(int[] nTuples);
 
+    /*************************************************************************************
+     * Generate tuples for all of the tables, sending them to the sink in batches
+     * instead of returning them, so that the tables need not fit in memory.
+     *
+     * @param nTuples the int array that contains the number of tuple for each table
+     * @param sink    the receiver of the tuples
+     * @throws IOException if the sink fails
+     */
+    void generate(int[] nTuples, TupleSink sink) throws IOException;
+
 } // TupleGenerator
@@ -7,7 +7,10 @@ package src;
  */
 
 import static java.lang.System.out;
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
 
 /*****************************************************************************************
  * This class is used to populate a database (collection of tables) with
@@ -15,18 +18,61 @@ import java.util.*;
  * generated values that satisfy the following integrity constraints: domain,
  * primary
  * keys and foreign key constraints.
+ *
+ * Generation is reproducible: every row draws its values from its own random number
+ * generator, seeded from the generator's seed, the table and the row number, so the
+ * rows come out the same whether they are generated sequentially or in parallel (see
+ * Parallel). Key attributes take unique values from a seeded permutation of the row
+ * numbers (instead of drawing random values until an unused one turns up), and tables
+ * that do not reference one another are generated at the same time.
+ *
+ * Tuples are generated in batches and handed to a TupleSink, so the tables never need
+ * to be in memory together. Only the columns that foreign keys refer to are kept for
+ * the tables still to come: Integer and String keys are recomputed from their
+ * permutation when a referencing row samples them, and other referenced columns are
+ * stored as one array of values.
+ *
+ * Values are uniform unless addRelSchema gives an attribute a distribution (Zipf,
+ * normal, sequential or a fixed cardinality); for a foreign key the distribution
+ * picks the referenced rows, so joins can see skewed fan-out and hot keys.
  */
 public class TupleGeneratorImpl
         implements TupleGenerator {
+    /**
+     * The smallest range of values for key attributes (the range of non-key values).
+     */
+    private static final int RANGE = 1000000;
+
+    /**
+     * The increment mixing row and table numbers into seeds (the golden ratio).
+     */
+    private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The number of tuples generated (and sent to the sink) at a time.
+     */
+    private static final int BATCH = 1 << 16;
+
+    /**
+     * The seed of the generator.
+     */
+    private final long seed;
+
     /**
      * Counter for table numbers
      */
     private int counter = 0;
 
     /**
-     * Initializations
+     * The number of tuples generated for each table.
      */
-    private HashMap<String, Comparable[][]> result = new HashMap<>();
+    private Map<String, Integer> size = new ConcurrentHashMap<>();
+
+    /**
+     * The columns foreign keys refer to, by table: the value of a column for a row
+     * number (null for the columns not referred to).
+     */
+    private Map<String, IntFunction<Comparable>[]> resident = new ConcurrentHashMap<>();
 
     private HashMap<Integer, String> tableIndex = new HashMap<>();
 
@@ -38,6 +84,25 @@ public class TupleGeneratorImpl
 
     HashMap<String, String[][]> tablefks = new HashMap<>();
 
+    private HashMap<String, String[][]> tableDist = new HashMap<>();
+
+    /*******************************************************************************************
+     * Construct a tuple generator with a random seed.
+     */
+    public TupleGeneratorImpl() {
+        this(new Random().nextLong());
+    } // constructor
+
+    /*******************************************************************************************
+     * Construct a tuple generator with the given seed: generators with the same seed
+     * and schemas generate the same tuples.
+     *
+     * @param _seed the seed for the random values
+     */
+    public TupleGeneratorImpl(long _seed) {
+        seed = _seed;
+    } // constructor
+
     /*******************************************************************************************
      * Adding relation to Schema.
      * 
@@ -49,11 +114,49 @@ public class TupleGeneratorImpl
      */
     public void addRelSchema(String name, String[] attribute, String[] domain,
             String[] primaryKey, String[][] foreignKey) {
+        addRelSchema(name, attribute, domain, primaryKey, foreignKey, null);
+    } // addRelSchema
+
+    /*******************************************************************************************
+     * Adding relation to Schema, with the distributions of the attributes' values (see
+     * TupleGenerator).
+     *
+     * @param name         the name of the table
+     * @param attribute    the array of attributes
+     * @param domain       the array of domains
+     * @param primaryKey   the array of primary keys
+     * @param foriegnKey   the array of foriegn keys
+     * @param distribution the array of distributions
+     * @throws IllegalArgumentException if a distribution is malformed, names an unknown
+     *                                  attribute or would repeat key values
+     */
+    public void addRelSchema(String name, String[] attribute, String[] domain,
+            String[] primaryKey, String[][] foreignKey, String[][] distribution) {
+        for (var d = 0; distribution != null && d < distribution.length; d++) {
+            var spec = distribution[d];
+            Distribution.of(spec, 1); // check the kind and parameters
+            boolean isFk = false, inFk = false;
+            for (var f = 0; foreignKey != null && f < foreignKey.length; f++) {
+                isFk |= foreignKey[f][0].equals(spec[0]);
+                inFk |= Arrays.asList(foreignKey[f][0].split(" ")).contains(spec[0]);
+            } // for
+            if (isFk)
+                continue;
+            if (!Arrays.asList(attribute).contains(spec[0]) || inFk)
+                throw new IllegalArgumentException("addRelSchema: " + name + " has no attribute or foreign key "
+                        + spec[0] + " to distribute");
+            if (Arrays.asList(primaryKey).contains(spec[0]) && !spec[1].equals("uniform")
+                    && !spec[1].equals("sequential"))
+                throw new IllegalArgumentException("addRelSchema: key attribute " + spec[0]
+                        + " must be uniform or sequential, not " + spec[1]);
+        } // for
+
         tableIndex.put(counter, name);
         tableAttr.put(name, attribute);
         tableDomain.put(name, domain);
         tablepks.put(name, primaryKey);
         tablefks.put(name, foreignKey);
+        tableDist.put(name, distribution);
         counter++;
     } // addRelSchema
 
@@ -72,217 +175,477 @@ public class TupleGeneratorImpl
                 primaryKey.split(" "), foreignKey);
     } // addRelSchema
 
+    /*******************************************************************************************
+     * Adding relation to Schema, with the distributions of the attributes' values.
+     * Convenience method.
+     *
+     * @param name         the name of the table
+     * @param attribute    the string embedding the table's attributes
+     * @param domain       the string embedding the table's domains
+     * @param primaryKey   the string embedding the table's primary keys
+     * @param foriegnKey   the array of foriegn keys
+     * @param distribution the array of distributions
+     */
+    public void addRelSchema(String name, String attribute, String domain,
+            String primaryKey, String[][] foreignKey, String[][] distribution) {
+        addRelSchema(name, attribute.split(" "), domain.split(" "),
+                primaryKey.split(" "), foreignKey, distribution);
+    } // addRelSchema
+
     /***********************************************************************************
-     * Generates random tuples that satisfy all the integrity constraints.
+     * Generates random tuples that satisfy all the integrity constraints, collecting
+     * them in memory (see generate (int [], TupleSink) for tables too large for that).
      * 
      * @param tuples the number of tuples for each table
      * @return tempResult contains tuples for all the tables in the order they were
      *         added
      */
     public Comparable[][][] generate(int[] tuples) {
-        var rand = new Random();
-        var tableName = "";
-        var pKeys = new HashSet<String>();
-        var pKeyValues = new HashSet<Comparable<?>>();
-        var fKeys = new HashSet<String>();
-        var fkIndex = new ArrayList<String>();
-
-        String[] attribute;
-        String[] domain;
-        String[] pks;
-        String[][] fks;
-        int iVal;
-        String sVal;
-        double dVal;
+        Map<String, List<Comparable[]>> result = new ConcurrentHashMap<>();
+        try {
+            generate(tuples, new TupleSink() {
+                public void open(String table, String[] attribute, Class[] domain, String[] key) {
+                    result.put(table, new ArrayList<>());
+                } // open
+
+                public void accept(String table, List<Comparable[]> batch) {
+                    result.get(table).addAll(batch);
+                } // accept
+
+                public void close(String table) {
+                } // close
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex); // the collecting sink does no I/O
+        } // try
+
+        var tempResult = new Comparable[tuples.length][][];
 
         for (var i = 0; i < tuples.length; i++) {
-            tableName = tableIndex.get(i);
-            attribute = tableAttr.get(tableName);
-            domain = tableDomain.get(tableName);
-            pks = tablepks.get(tableName);
-            fks = tablefks.get(tableName);
-            var subResult = new Comparable[tuples[i]][attribute.length];
-
-            // out.println (tableName);
-            for (var n = 0; n < pks.length; n++)
-                pKeys.add(pks[n]);
-
-            // ----------------------------------------------------
-            // Handle the case where the table has no foreign keys
-
-            if (fks == null) {
-                for (var j = 0; j < tuples[i]; j++) {
-                    for (var k = 0; k < attribute.length; k++) {
-                        if (pKeys.contains(attribute[k])) { // key requires uniqueness
-
-                            switch (domain[k]) {
-                                case "Integer":
-                                    for (iVal = rand.nextInt(1000000); pKeyValues
-                                            .contains(iVal); iVal = rand.nextInt(1000000))
-                                        ;
-                                    subResult[j][k] = iVal;
-                                    pKeyValues.add(iVal);
-                                    break;
-                                case "String":
-                                    for (sVal = attribute[k] + rand.nextInt(1000000); pKeyValues
-                                            .contains(sVal); sVal = attribute[k] + rand.nextInt(1000000))
-                                        ;
-                                    subResult[j][k] = sVal;
-                                    pKeyValues.add(sVal);
-                                    break;
-                                case "Double":
-                                    for (dVal = rand.nextInt(1000000) * rand.nextDouble(); pKeyValues
-                                            .contains(dVal); dVal = rand.nextInt(1000000) * rand.nextDouble())
-                                        ;
-                                    subResult[j][k] = dVal;
-                                    pKeyValues.add(dVal);
-                                    break;
-                                default:
-                                    throw new IllegalArgumentException("Invalid type in switch: " + domain[k]);
-                            } // switch
+            tempResult[i] = result.get(tableIndex.get(i)).toArray(new Comparable[0][]);
+        } // for
 
-                        } else { // non-key does not require uniqueness
+        return tempResult;
+    } // generate
 
-                            switch (domain[k]) {
-                                case "Integer":
-                                    subResult[j][k] = rand.nextInt(1000000);
-                                    break;
-                                case "String":
-                                    subResult[j][k] = attribute[k] + rand.nextInt(1000000);
-                                    break;
-                                case "Double":
-                                    subResult[j][k] = rand.nextInt(100000) * rand.nextDouble();
-                                    break;
-                                default:
-                                    throw new IllegalArgumentException("Invalid type in switch: " + domain[k]);
-                            } // switch
+    /***********************************************************************************
+     * Generates random tuples that satisfy all the integrity constraints, sending them
+     * to the sink in batches. The tables are generated in waves: a table is generated
+     * once every table it references has been, and the tables of one wave are
+     * generated concurrently.
+     *
+     * @param tuples the number of tuples for each table
+     * @param sink   the receiver of the tuples
+     * @throws IOException if the sink fails
+     */
+    public void generate(int[] tuples, TupleSink sink) throws IOException {
+        size.clear();
+        resident.clear();
 
-                        } // if
-                    } // for
+        // the wave of each table: one past the latest wave of the tables it references
+        int[] wave = new int[tuples.length];
+        int waves = 0;
+        for (var i = 0; i < tuples.length; i++) {
+            var tableName = tableIndex.get(i);
+            var fks = tablefks.get(tableName);
+            for (var n = 0; fks != null && n < fks.length; n++) {
+                int ref = indexOf(fks[n][1]);
+                if (ref < 0 || ref >= i) {
+                    out.println(
+                            "Foreign Key Error: table containing referencing key cannot be populated before referenced table");
+                    out.println("Possible Solution: Add '" + fks[n][1] + "' table before adding '"
+                            + tableName + "' table.");
+                    System.exit(0);
+                } // if
+                wave[i] = Math.max(wave[i], wave[ref] + 1);
+            } // for
+            waves = Math.max(waves, wave[i] + 1);
+        } // for
+
+        // the columns of each table that foreign keys refer to
+        Map<String, boolean[]> referenced = new HashMap<>();
+        for (var i = 0; i < tuples.length; i++) {
+            var fks = tablefks.get(tableIndex.get(i));
+            for (var f = 0; fks != null && f < fks.length; f++) {
+                var refAttr = Arrays.asList(tableAttr.get(fks[f][1]));
+                var isRef = referenced.computeIfAbsent(fks[f][1], k -> new boolean[refAttr.size()]);
+                for (String a : fks[f][2].split(" "))
+                    isRef[refAttr.indexOf(a)] = true;
+            } // for
+        } // for
+
+        try {
+            for (var w = 0; w < waves; w++) {
+                List<Runnable> tasks = new ArrayList<>();
+                for (var i = 0; i < tuples.length; i++) {
+                    if (wave[i] == w) {
+                        int t = i;
+                        tasks.add(() -> {
+                            try {
+                                generateTable(t, tuples[t], referenced.get(tableIndex.get(t)), sink);
+                            } catch (IOException ex) {
+                                throw new UncheckedIOException(ex);
+                            } // try
+                        });
+                    } // if
                 } // for
+                Parallel.all(tasks);
+            } // for
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } finally {
+            size.clear();
+            resident.clear();
+        } // try
+    } // generate
+
+    /***********************************************************************************
+     * Generate the tuples of one table, a batch at a time, each batch in parallel
+     * chunks of rows, and keep the columns later tables refer to.
+     *
+     * @param t          the table number
+     * @param n          the number of tuples
+     * @param referenced which columns foreign keys refer to (null for none)
+     * @param sink       the receiver of the tuples
+     * @throws IOException if the sink fails
+     */
+    @SuppressWarnings("unchecked")
+    private void generateTable(int t, int n, boolean[] referenced, TupleSink sink) throws IOException {
+        var tableName = tableIndex.get(t);
+        var attribute = tableAttr.get(tableName);
+        var domain = tableDomain.get(tableName);
+        var pKeys = new HashSet<>(Arrays.asList(tablepks.get(tableName)));
+        var fks = tablefks.get(tableName);
+        long tableSeed = mix(seed + t * GOLDEN);
+
+        // the distribution specifications by attribute (or foreign key) name
+        Map<String, String[]> specs = new HashMap<>();
+        var distribution = tableDist.get(tableName);
+        for (var d = 0; distribution != null && d < distribution.length; d++)
+            specs.put(distribution[d][0], distribution[d]);
+
+        // the foreign keys: the referencing columns, referenced columns and their sizes
+        var fkCols = new ArrayList<int[]>();
+        var fkRefs = new ArrayList<IntFunction<Comparable>[]>();
+        var fkSizes = new ArrayList<Integer>();
+        var fkDists = new ArrayList<Distribution>();
+        var isFk = new boolean[attribute.length];
+        for (var f = 0; fks != null && f < fks.length; f++) {
+            String[] sfks = fks[f][0].split(" ");
+            String[] rfks = fks[f][2].split(" ");
+            String[] tempAtr = tableAttr.get(fks[f][1]);
+            var refColumns = resident.get(fks[f][1]);
+            int[] cols = new int[sfks.length];
+            IntFunction<Comparable>[] refs = new IntFunction[sfks.length];
+            for (var a = 0; a < sfks.length; a++) {
+                cols[a] = Arrays.asList(attribute).indexOf(sfks[a]);
+                refs[a] = refColumns[Arrays.asList(tempAtr).indexOf(rfks[a])];
+                isFk[cols[a]] = true;
+            } // for
+            fkCols.add(cols);
+            fkRefs.add(refs);
+            fkSizes.add(size.get(fks[f][1]));
+            fkDists.add(Distribution.of(specs.get(fks[f][0]), size.get(fks[f][1])));
+        } // for
 
-                // -------------------------------------------------
-                // Handle the case where the table has foreign keys (maintain referential
-                // integrity)
+        // key attributes (other than foreign keys) take values from a permutation of the rows,
+        // unless they are sequential; other attributes may follow a given distribution
+        var perm = new Permutation[attribute.length];
+        var seq = new boolean[attribute.length];
+        var dist = new Distribution[attribute.length];
+        var classes = new Class[attribute.length];
+        for (var k = 0; k < attribute.length; k++) {
+            if (!domain[k].equals("Integer") && !domain[k].equals("String") && !domain[k].equals("Double"))
+                throw new IllegalArgumentException("Invalid type in switch: " + domain[k]);
+            var spec = specs.get(attribute[k]);
+            if (pKeys.contains(attribute[k]) && !isFk[k]) {
+                seq[k] = spec != null && spec[1].equals("sequential");
+                if (!seq[k])
+                    perm[k] = new Permutation(Math.max(RANGE, n), mix(tableSeed ^ k));
+            } else if (!isFk[k]) {
+                dist[k] = Distribution.of(spec, RANGE);
+            } // if
+            try {
+                classes[k] = Class.forName("java.lang." + domain[k]);
+            } catch (ClassNotFoundException ex) {
+                throw new IllegalStateException(ex); // the domains were checked above
+            } // try
+        } // for
 
+        // the referenced columns: recomputed from the permutation, or stored as generated
+        var refColumns = new IntFunction[attribute.length];
+        var stored = new Comparable[attribute.length][];
+        for (var k = 0; referenced != null && k < attribute.length; k++) {
+            if (!referenced[k])
+                continue;
+            var p = perm[k];
+            var name = attribute[k];
+            if (p != null && domain[k].equals("Integer")) {
+                refColumns[k] = j -> (int) p.apply(j);
+            } else if (p != null && domain[k].equals("String")) {
+                refColumns[k] = j -> name + (int) p.apply(j);
+            } else if (seq[k] && domain[k].equals("Integer")) {
+                refColumns[k] = j -> j;
+            } else if (seq[k] && domain[k].equals("String")) {
+                refColumns[k] = j -> name + j;
             } else {
-                for (var j = 0; j < tuples[i]; j++) {
-                    for (var n = 0; n < fks.length; n++) {
-
-                        if (!fks[n][0].contains(" ")) {
-                            fkIndex.add(n, fks[n][0]);
-                            var fkTable = result.get(fks[n][1]);
-                            int s;
-                            for (s = 0; s < attribute.length; s++) {
-                                if (attribute[s].equals(fks[n][0]))
-                                    break;
-                            } // for
-                            String[] tempAtr = tableAttr.get(fks[n][1]);
-                            int x;
-                            for (x = 0; x < tempAtr.length; x++) {
-                                if (tempAtr[x].equals(fks[n][2]))
-                                    break;
-                            } // for
-                            subResult[j][s] = fkTable[rand.nextInt(fkTable.length)][x];
-
-                        } else {
-                            String[] sfks = fks[n][0].split(" ");
-                            String[] rfks = fks[n][2].split(" ");
-                            for (var z = 0; z < fks[n][0].split(" ").length; z++) {
-                                fkIndex.add(n + z, fks[n][0].split(" ")[z]);
-                            } // for
-                            Comparable[][] fkTable = result.get(fks[n][1]);
-                            if (fkTable == null) {
-                                out.println(
-                                        "Foreign Key Error: table containing referencing key cannot be populated before referenced table");
-                                out.println("Possible Solution: Add '" + fks[n][1] + "' table before adding '"
-                                        + tableName + "' table.");
-                                System.exit(0);
-                            } // if
-                            int t = rand.nextInt(fkTable.length);
-                            for (var a = 0; a < sfks.length; a++) {
-                                int b;
-                                for (b = 0; b < attribute.length; b++) {
-                                    if (attribute[b].equals(sfks[a]))
-                                        break;
-                                } // for
-                                String[] tempAtr = tableAttr.get(fks[n][1]);
-                                int c;
-                                for (c = 0; c < tempAtr.length; c++) {
-                                    if (tempAtr[c].equals(rfks[a]))
-                                        break;
-                                } // for
-                                subResult[j][b] = fkTable[t][c];
-                            } // for
-                        } // if
+                var values = stored[k] = new Comparable[n];
+                refColumns[k] = j -> values[j];
+            } // if
+        } // for
+
+        sink.open(tableName, attribute, classes, tablepks.get(tableName));
+        for (var b = 0; b < n; b += BATCH) {
+            int base = b;
+            var batch = new Comparable[Math.min(BATCH, n - b)][];
+            Parallel.forRange(batch.length, (from, to) -> {
+                for (var i = from; i < to; i++) {
+                    int j = base + i;
+                    var rand = new SplittableRandom(mix(tableSeed + j * GOLDEN));
+                    var tup = new Comparable[attribute.length];
+
+                    // maintain referential integrity by copying the key of a referenced tuple
+                    for (var f = 0; f < fkCols.size(); f++) {
+                        var d = fkDists.get(f);
+                        int row = (d == null) ? rand.nextInt(fkSizes.get(f)) : d.row(rand, j);
+                        int[] cols = fkCols.get(f);
+                        var refs = fkRefs.get(f);
+                        for (var a = 0; a < cols.length; a++)
+                            tup[cols[a]] = refs[a].apply(row);
                     } // for
 
                     for (var k = 0; k < attribute.length; k++) {
-                        if (!fkIndex.contains(attribute[k])) {
-                            if (pKeys.contains(attribute[k])) {
-
-                                switch (domain[k]) {
-                                    case "Integer":
-                                        for (iVal = rand.nextInt(1000000); pKeyValues
-                                                .contains(iVal); iVal = rand.nextInt(1000000))
-                                            ;
-                                        subResult[j][k] = iVal;
-                                        pKeyValues.add(iVal);
-                                        break;
-                                    case "String":
-                                        for (sVal = attribute[k] + rand.nextInt(1000000); pKeyValues
-                                                .contains(sVal); sVal = attribute[k] + rand.nextInt(1000000))
-                                            ;
-                                        subResult[j][k] = sVal;
-                                        pKeyValues.add(sVal);
-                                        break;
-                                    case "Double":
-                                        for (dVal = rand.nextInt(1000000) * rand.nextDouble(); pKeyValues
-                                                .contains(dVal); dVal = rand.nextInt(1000000) * rand.nextDouble())
-                                            ;
-                                        subResult[j][k] = dVal;
-                                        pKeyValues.add(dVal);
-                                        break;
-                                    default:
-                                        throw new IllegalArgumentException("Invalid type in switch: " + domain[k]);
-                                } // if
-
-                            } else {
-
-                                switch (domain[k]) {
-                                    case "Integer":
-                                        subResult[j][k] = rand.nextInt(1000000);
-                                        break;
-                                    case "String":
-                                        subResult[j][k] = attribute[k] + rand.nextInt(1000000);
-                                        break;
-                                    case "Double":
-                                        subResult[j][k] = rand.nextInt(1000000) * rand.nextDouble();
-                                        break;
-                                    default:
-                                        throw new IllegalArgumentException("Invalid type in switch: " + domain[k]);
-                                } // if
-
-                            } // if
+                        if (isFk[k])
+                            continue;
+                        if (perm[k] != null) { // key requires uniqueness
+                            int v = (int) perm[k].apply(j);
+                            tup[k] = switch (domain[k]) {
+                                case "Integer" -> v;
+                                case "String" -> attribute[k] + v;
+                                default -> v + rand.nextDouble();
+                            }; // switch
+                        } else if (seq[k]) { // the row number is unique as well
+                            tup[k] = switch (domain[k]) {
+                                case "Integer" -> j;
+                                case "String" -> attribute[k] + j;
+                                default -> (double) j;
+                            }; // switch
+                        } else if (dist[k] != null) { // non-key with a given distribution
+                            double x = dist[k].next(rand, j);
+                            tup[k] = switch (domain[k]) {
+                                case "Integer" -> (int) Math.round(x);
+                                case "String" -> attribute[k] + Math.round(x);
+                                default -> x;
+                            }; // switch
+                        } else { // non-key does not require uniqueness
+                            tup[k] = switch (domain[k]) {
+                                case "Integer" -> rand.nextInt(RANGE);
+                                case "String" -> attribute[k] + rand.nextInt(RANGE);
+                                default -> rand.nextInt(RANGE) * rand.nextDouble();
+                            }; // switch
                         } // if
                     } // for
+                    for (var k = 0; k < attribute.length; k++) {
+                        if (stored[k] != null)
+                            stored[k][j] = tup[k];
+                    } // for
+                    batch[i] = tup;
                 } // for
-            } // if
-
-            pKeys.clear();
-            fkIndex.clear();
-            result.put(tableName, subResult);
+            });
+            sink.accept(tableName, Arrays.asList(batch));
         } // for
+        sink.close(tableName);
 
-        var tempResult = new Comparable[result.size()][][];
+        size.put(tableName, n);
+        if (referenced != null)
+            resident.put(tableName, refColumns);
+    } // generateTable
 
-        for (var i = 0; i < result.size(); i++) {
-            tableName = tableIndex.get(i);
-            Comparable[][] subTable = result.get(tableName);
-            tempResult[i] = subTable;
+    /***********************************************************************************
+     * Return the number of the table with the given name.
+     *
+     * @param name the table's name
+     * @return the table number, or -1 if there is no such table
+     */
+    private int indexOf(String name) {
+        for (var entry : tableIndex.entrySet()) {
+            if (entry.getValue().equals(name))
+                return entry.getKey();
         } // for
+        return -1;
+    } // indexOf
 
-        return tempResult;
-    } // generate
+    /***********************************************************************************
+     * Scramble the bits of x (the SplitMix64 finalizer), e.g., to derive seeds.
+     *
+     * @param x the value to scramble
+     * @return the scrambled value
+     */
+    static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    } // mix
+
+    /***********************************************************************************
+     * A seeded permutation of the numbers 0 until m: a four-round Feistel network on
+     * the smallest even number of bits covering m, cycle-walking past values of m or
+     * more. Distinct row numbers give distinct values, so keys need no set of the
+     * values used, and any row's value is computed on its own.
+     */
+    static final class Permutation {
+
+        private final long m;
+        private final int half;
+        private final long mask;
+        private final long[] roundKey = new long[4];
+
+        Permutation(long _m, long seed) {
+            m = _m;
+            int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(m - 1));
+            half = (bits + 1) / 2;
+            mask = (1L << half) - 1;
+            for (var i = 0; i < roundKey.length; i++)
+                roundKey[i] = mix(seed + (i + 1) * GOLDEN);
+        } // constructor
+
+        long apply(long x) {
+            do {
+                long l = x >>> half, r = x & mask;
+                for (long key : roundKey) {
+                    long f = l ^ (mix(r ^ key) & mask);
+                    l = r;
+                    r = f;
+                } // for
+                x = (l << half) | r;
+            } while (x >= m);
+            return x;
+        } // apply
+
+    } // Permutation class
+
+    /***********************************************************************************
+     * A distribution of values 0 until n (or of rows of a referenced table), as given
+     * to addRelSchema: Zipf, normal, sequential or a fixed number of distinct values.
+     * Zipf values are drawn by rejection-inversion (Hormann and Derflinger), taking
+     * constant expected time and no tables, whatever n.
+     */
+    static final class Distribution {
+
+        private final String kind;
+        private final long n;
+        private final double a, b;
+        private double hX1, hN, sCoef; // for Zipf
+
+        /*******************************************************************************
+         * Return the distribution for the given specification over n values.
+         *
+         * @param spec the specification: { attribute, kind, params... } (may be null)
+         * @param n    the number of values (or rows)
+         * @return the distribution, or null for uniform
+         * @throws IllegalArgumentException if the specification is malformed
+         */
+        static Distribution of(String[] spec, long n) {
+            if (spec != null && spec.length < 2)
+                throw new IllegalArgumentException("Distribution: no kind given for " + Arrays.toString(spec));
+            if (spec == null || spec[1].equals("uniform") && spec.length == 2)
+                return null;
+            return new Distribution(spec, n);
+        } // of
+
+        private Distribution(String[] spec, long _n) {
+            kind = spec[1];
+            n = Math.max(1, _n);
+            int params = switch (kind) {
+                case "zipf", "card" -> 1;
+                case "normal" -> 2;
+                case "sequential", "uniform" -> 0;
+                default -> throw new IllegalArgumentException("Distribution: unknown kind " + kind);
+            }; // switch
+            if (spec.length != params + 2)
+                throw new IllegalArgumentException("Distribution: " + kind + " takes " + params + " parameters");
+            try {
+                a = (params > 0) ? Double.parseDouble(spec[2]) : 0;
+                b = (params > 1) ? Double.parseDouble(spec[3]) : 0;
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Distribution: bad parameter for " + kind + ": " + ex.getMessage());
+            } // try
+            if (kind.equals("zipf") && !(a > 0) || kind.equals("card") && !(a >= 1) || kind.equals("normal") && !(b >= 0))
+                throw new IllegalArgumentException("Distribution: parameter out of range for " + kind);
+
+            if (kind.equals("zipf")) {
+                hX1 = hIntegral(1.5) - 1;
+                hN = hIntegral(n + 0.5);
+                sCoef = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+            } // if
+        } // constructor
+
+        /*******************************************************************************
+         * Draw the value for row j.
+         *
+         * @param rand the row's random number generator
+         * @param j    the row number
+         * @return the value (a whole number except for normal)
+         */
+        double next(SplittableRandom rand, long j) {
+            return switch (kind) {
+                case "zipf" -> zipf(rand) - 1;
+                case "normal" -> a + b * rand.nextGaussian();
+                case "sequential" -> j;
+                default -> (j < a) ? j : rand.nextLong((long) a); // card
+            }; // switch
+        } // next
+
+        /*******************************************************************************
+         * Draw the referenced row for row j: the value, wrapped (sequential and card)
+         * or clamped (zipf and normal) to 0 until n.
+         *
+         * @param rand the row's random number generator
+         * @param j    the row number
+         * @return the row number
+         */
+        int row(SplittableRandom rand, long j) {
+            long r = Math.round(next(rand, j));
+            if (kind.equals("sequential") || kind.equals("card"))
+                return (int) Math.floorMod(r, n);
+            return (int) Math.max(0, Math.min(n - 1, r));
+        } // row
+
+        // rank 1 to n with probability proportional to 1 / rank^a
+        private long zipf(SplittableRandom rand) {
+            for (;;) {
+                double u = hN + rand.nextDouble() * (hX1 - hN);
+                double x = hIntegralInverse(u);
+                long k = Math.max(1, Math.min(n, (long) (x + 0.5)));
+                if (k - x <= sCoef || u >= hIntegral(k + 0.5) - h(k))
+                    return k;
+            } // for
+        } // zipf
+
+        private double h(double x) {
+            return Math.exp(-a * Math.log(x));
+        } // h
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return helper2((1 - a) * logX) * logX;
+        } // hIntegral
+
+        private double hIntegralInverse(double x) {
+            double t = Math.max(-1, x * (1 - a));
+            return Math.exp(helper1(t) * x);
+        } // hIntegralInverse
+
+        // log (1 + x) / x, accurate near 0
+        private static double helper1(double x) {
+            return (Math.abs(x) > 1e-8) ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1 / 3.0 - 0.25 * x));
+        } // helper1
+
+        // (exp (x) - 1) / x, accurate near 0
+        private static double helper2(double x) {
+            return (Math.abs(x) > 1e-8) ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+        } // helper2
+
+    } // Distribution class
 
 } // TestGeneratorImpl class
@@ -0,0 +1,154 @@
+package src;
+
+/****************************************************************************************
+ * @file  TupleSink.java
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This interface receives the tuples of a TupleGenerator as they are generated, a
+ * batch at a time, so that a database larger than memory can be generated (see
+ * TupleGenerator.generate (int [], TupleSink)). For each table the generator calls
+ * open, then accept for each batch (in row order), then close, all from one thread;
+ * different tables may be generated (and so received) concurrently. A batch belongs
+ * to the sink once accepted.
+ *
+ * The factories below send the tuples to tables (bulk inserts), to table files that
+ * Table.load reads, or to CSV files.
+ */
+public interface TupleSink {
+
+    /************************************************************************************
+     * Start receiving the tuples of a table.
+     *
+     * @param table     the table's name
+     * @param attribute the table's attributes
+     * @param domain    the table's domains
+     * @param key       the table's primary key
+     * @throws IOException if the table's destination cannot be opened
+     */
+    void open(String table, String[] attribute, Class[] domain, String[] key) throws IOException;
+
+    /************************************************************************************
+     * Receive the next batch of tuples of a table.
+     *
+     * @param table the table's name
+     * @param batch the tuples
+     * @throws IOException if the tuples cannot be written
+     */
+    void accept(String table, List<Comparable[]> batch) throws IOException;
+
+    /************************************************************************************
+     * Finish receiving the tuples of a table.
+     *
+     * @param table the table's name
+     * @throws IOException if the table's destination cannot be completed
+     */
+    void close(String table) throws IOException;
+
+    /************************************************************************************
+     * Return a sink that bulk inserts each table's tuples into the given table of the
+     * same name (see Table.insertAll). Tables without a match are skipped.
+     *
+     * @param tables the tables to populate
+     * @return the sink
+     */
+    static TupleSink of(Table... tables) {
+        Map<String, Table> byName = new HashMap<>();
+        for (Table t : tables)
+            byName.put(t.getName(), t);
+
+        return new TupleSink() {
+            public void open(String table, String[] attribute, Class[] domain, String[] key) {
+            } // open
+
+            public void accept(String table, List<Comparable[]> batch) throws IOException {
+                Table t = byName.get(table);
+                if (t != null && !t.insertAll(batch))
+                    throw new IOException("accept: a batch of tuples could not be inserted into " + table);
+            } // accept
+
+            public void close(String table) {
+            } // close
+        };
+    } // of
+
+    /************************************************************************************
+     * Return a sink that writes each table to a table file (dir + name + ".dbf") that
+     * Table.load reads, without holding the table in memory (see PageFile.Writer).
+     *
+     * @param dir   the directory of the files (ending with a separator)
+     * @param mType the map type the loaded tables will index with
+     * @param sType the storage layout of the loaded tables
+     * @return the sink
+     */
+    static TupleSink pageFiles(String dir, Table.MapType mType, Table.StoreType sType) {
+        Map<String, PageFile.Writer> writers = Collections.synchronizedMap(new HashMap<>());
+
+        return new TupleSink() {
+            public void open(String table, String[] attribute, Class[] domain, String[] key) throws IOException {
+                writers.put(table, new PageFile.Writer(dir + table + ".dbf", table, attribute, domain, key,
+                        mType, sType, 0));
+            } // open
+
+            public void accept(String table, List<Comparable[]> batch) throws IOException {
+                writers.get(table).append(batch);
+            } // accept
+
+            public void close(String table) throws IOException {
+                try (PageFile.Writer w = writers.remove(table)) {
+                    w.commit();
+                } // try
+            } // close
+        };
+    } // pageFiles
+
+    /************************************************************************************
+     * Return a sink that writes each table to a CSV file (dir + name + ".csv"): a line
+     * of attribute names, then a line per tuple. Values holding commas, quotes or line
+     * breaks are quoted, and nulls are left empty.
+     *
+     * @param dir the directory of the files (ending with a separator)
+     * @return the sink
+     */
+    static TupleSink csv(String dir) {
+        Map<String, Writer> writers = Collections.synchronizedMap(new HashMap<>());
+
+        return new TupleSink() {
+            public void open(String table, String[] attribute, Class[] domain, String[] key) throws IOException {
+                Writer w = Files.newBufferedWriter(Paths.get(dir + table + ".csv"), StandardCharsets.UTF_8);
+                writers.put(table, w);
+                line(w, attribute);
+            } // open
+
+            public void accept(String table, List<Comparable[]> batch) throws IOException {
+                Writer w = writers.get(table);
+                for (Comparable[] tup : batch)
+                    line(w, tup);
+            } // accept
+
+            public void close(String table) throws IOException {
+                writers.remove(table).close();
+            } // close
+
+            private void line(Writer w, Object[] values) throws IOException {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0)
+                        w.write(',');
+                    if (values[i] == null)
+                        continue;
+                    String s = values[i].toString();
+                    if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0)
+                        s = '"' + s.replace("\"", "\"\"") + '"';
+                    w.write(s);
+                } // for
+                w.write('\n');
+            } // line
+        };
+    } // csv
+
+} // TupleSink interface
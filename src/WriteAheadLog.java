@@ -0,0 +1,356 @@
+package src;
+
+/****************************************************************************************
+ * @file  WriteAheadLog.java
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+/****************************************************************************************
+ * This class provides an append-only write-ahead log of changes to a table, so that
+ * changes become durable without rewriting the table file. Each record holds a log
+ * sequence number (LSN), an operation and its tuples (encoded as in a PageFile): the
+ * new tuple for an INSERT, the old tuple for a DELETE and both for an UPDATE. Records
+ * are framed by their length and protected by a CRC:
+ *
+ *     record:  payload length (int), LSN (long), op (byte), payload, CRC-32 (int)
+ *
+ * Appends are buffered and made durable in groups (group commit): the buffer is
+ * written and forced to the device once syncEvery records are pending, every
+ * syncMillis milliseconds (if positive) by a background thread, or on commit. The
+ * records appended since the table file was last written are replayed when the table
+ * is loaded; writing the table file (a checkpoint) records the last LSN it reflects,
+ * and the log is then truncated. Replay stops at the first torn or corrupt record.
+ */
+public class WriteAheadLog
+        implements Closeable {
+    /**
+     * The logged operations.
+     */
+    public enum Op {
+        INSERT, DELETE, UPDATE
+    } // Op
+
+    /**
+     * Receives the records of a log during replay: the tuple before the change (null
+     * for an INSERT) and after it (null for a DELETE).
+     */
+    public interface Redo {
+        void apply(long lsn, Op op, Comparable[] before, Comparable[] after);
+    } // Redo
+
+    /**
+     * The bytes in a record before its payload (length, LSN and op).
+     */
+    private static final int RECORD_HEADER = 13;
+
+    /**
+     * The size of the append buffer in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The channel the log is appended through.
+     */
+    private final FileChannel ch;
+
+    /**
+     * The attribute domains of the logged tuples.
+     */
+    private final Class[] domain;
+
+    /**
+     * The number of pending records that triggers a group commit.
+     */
+    private final int syncEvery;
+
+    /**
+     * The records appended but not yet written to the channel.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * The scratch buffers for encoding the tuples before and after a change.
+     */
+    private ByteBuffer scratchBefore = ByteBuffer.allocate(256), scratchAfter = ByteBuffer.allocate(256);
+
+    /**
+     * The thread running the timed group commits (null if none).
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * The LSN of the last record appended.
+     */
+    private long lsn;
+
+    /**
+     * The number of records appended since the last commit.
+     */
+    private int pending = 0;
+
+    /**
+     * The number of records in the log (since it was last truncated).
+     */
+    private long records = 0;
+
+    /**
+     * The number of group commits (forces) performed.
+     */
+    private long syncs = 0;
+
+    /************************************************************************************
+     * Open (or create) the log at the given path for appending. A torn record left at
+     * the end by a crash is cut off.
+     *
+     * @param path       the path of the log file
+     * @param _domain    the attribute domains of the logged tuples
+     * @param lastLsn    the LSN already reflected in the table (new LSNs follow it)
+     * @param _syncEvery the number of pending records that triggers a group commit
+     * @param syncMillis the interval of timed group commits (0 for none)
+     * @throws IOException if the log cannot be opened
+     */
+    public WriteAheadLog(String path, Class[] _domain, long lastLsn, int _syncEvery, long syncMillis)
+            throws IOException {
+        domain = _domain;
+        syncEvery = Math.max(1, _syncEvery);
+        ch = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        // find the end of the valid records (and the last LSN used)
+        long[] last = { lastLsn };
+        long[] count = { 0 };
+        long end = scan(ch, domain, (l, op, before, after) -> {
+            last[0] = Math.max(last[0], l);
+            count[0]++;
+        });
+        ch.truncate(end);
+        ch.position(end);
+        lsn = last[0];
+        records = count[0];
+
+        if (syncMillis > 0) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "wal-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.scheduleWithFixedDelay(() -> {
+                try {
+                    commit();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                } // try
+            }, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        } else {
+            timer = null;
+        } // if
+    } // constructor
+
+    /************************************************************************************
+     * Append a record to the log. It is durable once its group is committed.
+     *
+     * @param op     the operation
+     * @param before the tuple before the change (null for an INSERT)
+     * @param after  the tuple after the change (null for a DELETE)
+     * @return the record's LSN
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized long append(Op op, Comparable[] before, Comparable[] after) throws IOException {
+        int len = 0;
+        if (before != null)
+            len += (scratchBefore = PageFile.encode(before, domain, scratchBefore)).position();
+        if (after != null)
+            len += (scratchAfter = PageFile.encode(after, domain, scratchAfter)).position();
+        if (len > BUFFER_SIZE - RECORD_HEADER - 4)
+            throw new IOException("append: a record of " + len + " bytes is too large for the log");
+        if (buffer.remaining() < RECORD_HEADER + len + 4)
+            drain();
+
+        CRC32 crc = new CRC32();
+        int start = buffer.position();
+        buffer.putInt(len).putLong(++lsn).put((byte) op.ordinal());
+        if (before != null)
+            buffer.put(scratchBefore.flip());
+        if (after != null)
+            buffer.put(scratchAfter.flip());
+        crc.update(buffer.duplicate().position(start + 4).limit(buffer.position()));
+        buffer.putInt((int) crc.getValue());
+        records++;
+
+        if (++pending >= syncEvery)
+            commit();
+        return lsn;
+    } // append
+
+    /************************************************************************************
+     * Make all appended records durable: write them and force the log to the device.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void commit() throws IOException {
+        if (pending == 0 && buffer.position() == 0)
+            return;
+        drain();
+        ch.force(false);
+        pending = 0;
+        syncs++;
+    } // commit
+
+    /************************************************************************************
+     * Empty the log after a checkpoint (the table file now reflects every record).
+     * Records still buffered are dropped as well.
+     *
+     * @throws IOException if the log cannot be truncated
+     */
+    public synchronized void truncate() throws IOException {
+        buffer.clear();
+        pending = 0;
+        records = 0;
+        ch.truncate(0);
+        ch.position(0);
+        ch.force(true);
+    } // truncate
+
+    /************************************************************************************
+     * Return the LSN of the last record appended.
+     *
+     * @return the last LSN
+     */
+    public synchronized long lsn() {
+        return lsn;
+    } // lsn
+
+    /************************************************************************************
+     * Return the number of records in the log since it was last truncated.
+     *
+     * @return the record count
+     */
+    public synchronized long records() {
+        return records;
+    } // records
+
+    /************************************************************************************
+     * Return the number of group commits performed.
+     *
+     * @return the number of forces of the log
+     */
+    public synchronized long syncs() {
+        return syncs;
+    } // syncs
+
+    /************************************************************************************
+     * Commit the pending records and close the log.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public void close() throws IOException {
+        if (timer != null)
+            timer.shutdownNow();
+        synchronized (this) {
+            commit();
+            ch.close();
+        } // synchronized
+    } // close
+
+    /************************************************************************************
+     * Replay the records of the log at the given path whose LSNs follow afterLsn (the
+     * LSN reflected in the table file). A missing log has nothing to replay.
+     *
+     * @param path     the path of the log file
+     * @param domain   the attribute domains of the logged tuples
+     * @param afterLsn the LSN already reflected in the table
+     * @param redo     the receiver of the records to reapply
+     * @return the LSN of the last record replayed (afterLsn if none)
+     * @throws IOException if the log cannot be read
+     */
+    public static long replay(String path, Class[] domain, long afterLsn, Redo redo) throws IOException {
+        if (!Files.exists(Paths.get(path)))
+            return afterLsn;
+        long[] last = { afterLsn };
+        try (FileChannel in = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            scan(in, domain, (l, op, before, after) -> {
+                if (l > afterLsn) {
+                    redo.apply(l, op, before, after);
+                    last[0] = l;
+                } // if
+            });
+        } // try
+        return last[0];
+    } // replay
+
+    // ----------------------------------------------------------------------------------
+    // Private Methods
+    // ----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Write the buffered records to the channel (without forcing them).
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            ch.write(buffer);
+        buffer.clear();
+    } // drain
+
+    /************************************************************************************
+     * Read the valid records of a log from its start, in large chunks.
+     *
+     * @param in     the channel to read
+     * @param domain the attribute domains of the logged tuples
+     * @param redo   the receiver of each valid record
+     * @return the file position just past the last valid record
+     */
+    private static long scan(FileChannel in, Class[] domain, Redo redo) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long pos = 0, size = in.size();
+        Op[] ops = Op.values();
+        CRC32 crc = new CRC32();
+
+        while (pos < size) {
+            buf.clear();
+            in.read(buf, pos);
+            buf.flip();
+            int off = 0;
+            for (;;) {
+                if (buf.limit() - off < RECORD_HEADER)
+                    break;
+                int len = buf.getInt(off);
+                int total = RECORD_HEADER + len + 4;
+                if (len < 0 || pos + off + total > size)
+                    return pos + off; // torn record
+                if (total > buf.capacity()) {
+                    buf = ByteBuffer.allocateDirect(total);
+                    break;
+                } // if
+                if (buf.limit() - off < total)
+                    break;
+
+                crc.reset();
+                crc.update(buf.duplicate().position(off + 4).limit(off + RECORD_HEADER + len));
+                int op = buf.get(off + 12);
+                if ((int) crc.getValue() != buf.getInt(off + RECORD_HEADER + len) || op < 0 || op >= ops.length)
+                    return pos + off; // corrupt record
+
+                Comparable[] before = null, after = null;
+                int at = off + RECORD_HEADER;
+                if (ops[op] != Op.INSERT)
+                    at = PageFile.decodeTuple(buf, at, domain, before = new Comparable[domain.length]);
+                if (ops[op] != Op.DELETE)
+                    PageFile.decodeTuple(buf, at, domain, after = new Comparable[domain.length]);
+                redo.apply(buf.getLong(off + 4), ops[op], before, after);
+                off += total;
+            } // for
+            if (off == 0 && buf.limit() - off < RECORD_HEADER)
+                return pos; // a fragment too short to be a record
+            pos += off;
+        } // while
+        return pos;
+    } // scan
+
+} // WriteAheadLog class